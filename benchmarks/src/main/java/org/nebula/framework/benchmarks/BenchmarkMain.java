@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Runs the benchmarks with the JMH command line options, and writes the results as json to
+ * target/jmh-result-&lt;version&gt;.json unless -rf or -rff is given, so that the results of the
+ * releases can be compared.
+ */
+public class BenchmarkMain {
+
+  public static void main(String[] args) throws Exception {
+
+    CommandLineOptions options = new CommandLineOptions(args);
+
+    if (options.shouldHelp() || options.shouldList() || options.shouldListProfilers()
+        || options.shouldListResultFormats() || options.shouldListWithParams()) {
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+
+    OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(options);
+
+    if (!options.getResultFormat().hasValue()) {
+      builder.resultFormat(ResultFormatType.JSON);
+    }
+
+    if (!options.getResult().hasValue()) {
+      new File("target").mkdirs();
+      builder.result("target/jmh-result-" + getVersion() + ".json");
+    }
+
+    new Runner(builder.build()).run();
+  }
+
+  private static String getVersion() throws Exception {
+    Properties properties = new Properties();
+
+    InputStream in = BenchmarkMain.class.getResourceAsStream("/benchmarks.properties");
+    try {
+      properties.load(in);
+    } finally {
+      in.close();
+    }
+
+    return properties.getProperty("version");
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.client;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.request.PollActivityRequest;
+import org.nebula.framework.client.request.StartActivityRequest;
+import org.nebula.framework.model.ActivityProfile;
+import org.nebula.framework.model.Input;
+import org.nebula.framework.model.MethodProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the signed http requests of the REST client without sending them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestClientBenchmark {
+
+  private StubRestClient client;
+
+  private PollActivityRequest pollActivityRequest;
+
+  private GetEventsRequest getEventsRequest;
+
+  private StartActivityRequest startActivityRequest;
+
+  @Setup
+  public void setUp() {
+    client = new StubRestClient();
+
+    pollActivityRequest = new PollActivityRequest();
+    pollActivityRequest.setActivity("GreetingActivity");
+    pollActivityRequest.setVersion("1.0");
+    pollActivityRequest.setRealms(Arrays.asList("realm-1", "realm-2"));
+
+    getEventsRequest = new GetEventsRequest();
+    getEventsRequest.setInstanceId("domain-nebula-569bdf4c-1e73-4565-b29f-b9741e68e2f4");
+    getEventsRequest.setPageNo(3);
+    getEventsRequest.setPageSize(50);
+
+    ActivityProfile activityProfile = new ActivityProfile();
+    activityProfile.setActivity("GreetingActivity");
+    activityProfile.setVersion("1.0");
+
+    MethodProfile methodProfile = new MethodProfile();
+    methodProfile.setName("greet");
+    methodProfile.setParameterTypes(Arrays.asList("java.lang.String"));
+    methodProfile.setReturnType("java.lang.String");
+
+    Input input = new Input();
+    input.setInputs(new String[]{"\"Hello, Nebula\""});
+
+    startActivityRequest = new StartActivityRequest();
+    startActivityRequest.setActivityProfile(activityProfile);
+    startActivityRequest.setMethodProfile(methodProfile);
+    startActivityRequest.setRealms(Arrays.asList("realm-1"));
+    startActivityRequest.setInput(input);
+    startActivityRequest.setRegistrationId("domain-nebula-a40f1523-6a84-482f-a227-ec8cd5715833");
+    startActivityRequest.setInstanceId("domain-nebula-569bdf4c-1e73-4565-b29f-b9741e68e2f4");
+    startActivityRequest.setEventId(12);
+  }
+
+  @Benchmark
+  public HttpRequestBase createPollActivityGet() throws Exception {
+    return client.createGet(pollActivityRequest);
+  }
+
+  @Benchmark
+  public HttpRequestBase createGetEventsGet() throws Exception {
+    return client.createGet(getEventsRequest);
+  }
+
+  @Benchmark
+  public HttpRequestBase createStartActivityPost() throws Exception {
+    return client.createPost(startActivityRequest);
+  }
+
+  /**
+   * The client building the requests of the REST clients, without a transport.
+   */
+  private static class StubRestClient extends AbstractNebulaRestClient {
+
+    StubRestClient() {
+      super("nebula", "nebula-secret-key", "localhost", 8080, "/nebula",
+            DEFAULT_CONNECTION_TIMEOUT_SECS, DEFAULT_SOCKET_TIMEOUT_SECS);
+    }
+
+    public <T> T post(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> T get(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> T delete(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
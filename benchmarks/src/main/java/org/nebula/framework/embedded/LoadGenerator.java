@@ -0,0 +1,257 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded;
+
+import org.nebula.framework.activity.ActivityClientImpl;
+import org.nebula.framework.activity.ActivityWorker;
+import org.nebula.framework.annotation.Activity;
+import org.nebula.framework.annotation.Start;
+import org.nebula.framework.annotation.Workflow;
+import org.nebula.framework.client.NebulaClient;
+import org.nebula.framework.client.NebulaRestClient;
+import org.nebula.framework.core.Configuration;
+import org.nebula.framework.core.Promise;
+import org.nebula.framework.metrics.DefaultMetricsRegistry;
+import org.nebula.framework.metrics.LatencyHistogram;
+import org.nebula.framework.metrics.MetricNames;
+import org.nebula.framework.model.ActivityProfile;
+import org.nebula.framework.model.MethodProfile;
+import org.nebula.framework.model.WorkflowProfile;
+import org.nebula.framework.workflow.WorkflowClientImpl;
+import org.nebula.framework.workflow.WorkflowWorker;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drives concurrent workflows through a workflow and an activity worker against an {@link
+ * EmbeddedNebulaServer}, and reports the workflows per second and the latencies of the decisions
+ * and of the activity tasks. Each workflow runs a chain of activities echoing their input.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.nebula.framework.embedded.LoadGenerator \
+ *     -workflows 10000 -concurrency 100 -activities 2 -pollThreads 2 -executionThreads 20 [-http]
+ * </pre>
+ *
+ * -http sends the requests through the NebulaRestClient and the {@link EmbeddedHttpServer} rather
+ * than in-process.
+ */
+public class LoadGenerator {
+
+  private final static List<String> REALMS = Arrays.asList("load");
+
+  private final static String VERSION = "1.0";
+
+  private int workflows = 10000;
+
+  //the workflows running at a time.
+  private int concurrency = 100;
+
+  //the activities run one after another by each workflow.
+  private int activities = 2;
+
+  private int pollThreads = 2;
+
+  private int executionThreads = 20;
+
+  private boolean http = false;
+
+  public static void main(String[] args) throws Exception {
+    LoadGenerator generator = new LoadGenerator();
+    generator.parse(args);
+    generator.run();
+
+    //the heartbeats of the workers don't stop on interrupt, so exit rather than wait for them.
+    System.exit(0);
+  }
+
+  private void parse(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if ("-http".equals(arg)) {
+        http = true;
+      } else if (i + 1 < args.length && "-workflows".equals(arg)) {
+        workflows = Integer.parseInt(args[++i]);
+      } else if (i + 1 < args.length && "-concurrency".equals(arg)) {
+        concurrency = Integer.parseInt(args[++i]);
+      } else if (i + 1 < args.length && "-activities".equals(arg)) {
+        activities = Integer.parseInt(args[++i]);
+      } else if (i + 1 < args.length && "-pollThreads".equals(arg)) {
+        pollThreads = Integer.parseInt(args[++i]);
+      } else if (i + 1 < args.length && "-executionThreads".equals(arg)) {
+        executionThreads = Integer.parseInt(args[++i]);
+      } else {
+        throw new IllegalArgumentException("Unknown option " + arg + ", the options are"
+                                           + " -workflows, -concurrency, -activities,"
+                                           + " -pollThreads, -executionThreads and -http.");
+      }
+    }
+
+    if (workflows < 1 || concurrency < 1 || activities < 0) {
+      throw new IllegalArgumentException(
+          "The workflows and concurrency should be positive, the activities not negative.");
+    }
+  }
+
+  private void run() throws Exception {
+
+    EmbeddedNebulaServer server = new EmbeddedNebulaServer();
+    server.setRetainCompletedHistories(false);
+    server.start();
+
+    NebulaClient nebulaClient = new EmbeddedNebulaClient(server, "load");
+
+    if (http) {
+      EmbeddedHttpServer httpServer = new EmbeddedHttpServer(server, 0, "");
+      httpServer.start();
+
+      //a connection for each long poll and each running task of the two workers.
+      int connections = 4 * (pollThreads + executionThreads);
+      nebulaClient = new NebulaRestClient("load", "loadSecret", "localhost", httpServer.getPort(), "",
+                                          5, 60, connections);
+    }
+
+    DefaultMetricsRegistry metrics = new DefaultMetricsRegistry();
+
+    Configuration configuration = new Configuration();
+    configuration.setPollWaitSecs(1);
+    configuration.setPollThreads(pollThreads);
+    configuration.setMaxExecutionThreads(executionThreads);
+    configuration.setMetricsRegistry(metrics);
+
+    WorkflowWorker workflowWorker = new WorkflowWorker(nebulaClient, configuration);
+    workflowWorker.add(LoadWorkflowImpl.class, REALMS);
+    workflowWorker.start();
+
+    ActivityWorker activityWorker = new ActivityWorker(nebulaClient, configuration);
+    activityWorker.add(LoadActivityImpl.class, REALMS);
+    activityWorker.start();
+
+    LoadWorkflowClient workflowClient = new LoadWorkflowClient(nebulaClient);
+
+    System.out.println("Running " + workflows + " workflows of " + activities
+                       + " activities, " + concurrency + " at a time, "
+                       + (http ? "over http" : "in-process") + ".");
+
+    long start = System.nanoTime();
+
+    for (int i = 0; i < workflows; i++) {
+      while (server.getRunningWorkflows() >= concurrency) {
+        Thread.sleep(1);
+      }
+      workflowClient.run(activities);
+    }
+
+    while (server.getCompletedWorkflows() < workflows) {
+      Thread.sleep(1);
+    }
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.println(String.format("%d workflows in %.2f s: %.1f workflows/s", workflows,
+                                     seconds, workflows / seconds));
+
+    report("decision", metrics.histogram(
+        MetricNames.WORKFLOW_DECISION + MetricNames.profile("LoadWorkflow", VERSION)));
+    report("activity schedule-to-start", metrics.histogram(
+        MetricNames.ACTIVITY_SCHEDULE_TO_START + MetricNames.profile("LoadActivity", VERSION)));
+    report("activity start-to-close", metrics.histogram(
+        MetricNames.ACTIVITY_START_TO_CLOSE + MetricNames.profile("LoadActivity", VERSION)));
+  }
+
+  private static void report(String name, LatencyHistogram histogram) {
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    System.out.println(String.format(
+        "%s latency of %d: p50=%.3f ms, p99=%.3f ms, p99.9=%.3f ms, max=%.3f ms", name,
+        snapshot.getCount(), snapshot.getPercentileMicros(50) / 1000.0,
+        snapshot.getPercentileMicros(99) / 1000.0, snapshot.getPercentileMicros(99.9) / 1000.0,
+        snapshot.getMaxMicros() / 1000.0));
+  }
+
+  @Workflow(name = "LoadWorkflow", version = VERSION)
+  public interface LoadWorkflow {
+
+    @Start
+    void run(int activities);
+  }
+
+  public static class LoadWorkflowImpl implements LoadWorkflow {
+
+    private LoadActivityClient activityClient = new LoadActivityClient();
+
+    public void run(int activities) {
+      //each activity waits for the result of the previous one.
+      Promise<String> result = new Promise<String>("load");
+      for (int i = 0; i < activities; i++) {
+        result = activityClient.echo(result);
+      }
+    }
+  }
+
+  public static class LoadWorkflowClient extends WorkflowClientImpl {
+
+    public LoadWorkflowClient(NebulaClient nebulaClient) {
+      super(nebulaClient, profile(), REALMS);
+    }
+
+    public void run(int activities) {
+      startWorkflow("run", new String[]{"int"}, new Object[]{activities});
+    }
+
+    private static WorkflowProfile profile() {
+      WorkflowProfile profile = new WorkflowProfile();
+      profile.setName("LoadWorkflow");
+      profile.setVersion(VERSION);
+      return profile;
+    }
+  }
+
+  @Activity(name = "LoadActivity", version = VERSION, lifecycle = Activity.Lifecycle.SINGLETON)
+  public interface LoadActivity {
+
+    String echo(String input);
+  }
+
+  public static class LoadActivityImpl implements LoadActivity {
+
+    public String echo(String input) {
+      return input;
+    }
+  }
+
+  public static class LoadActivityClient extends ActivityClientImpl {
+
+    private final static ActivityProfile PROFILE = new ActivityProfile();
+
+    private final static MethodProfile ECHO = new MethodProfile();
+
+    static {
+      PROFILE.setActivity("LoadActivity");
+      PROFILE.setVersion(VERSION);
+
+      ECHO.setName("echo");
+      ECHO.setParameterTypes(Arrays.asList("java.lang.String"));
+      ECHO.setReturnType("java.lang.String");
+    }
+
+    public Promise<String> echo(Promise<String> input) {
+      return scheduleActivity(PROFILE, ECHO, new Promise[]{input});
+    }
+  }
+
+}
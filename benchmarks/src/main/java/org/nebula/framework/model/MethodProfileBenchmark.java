@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the implementation method of a polled task by its method profile, which is a fresh
+ * instance deserialized from the response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodProfileBenchmark {
+
+  private final static int METHODS = 20;
+
+  private Map<MethodProfile, Integer> methods = new HashMap<MethodProfile, Integer>();
+
+  private MethodProfile polled;
+
+  private MethodProfile registered;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < METHODS; i++) {
+      methods.put(create("method" + i), i);
+    }
+
+    registered = create("method" + (METHODS - 1));
+    polled = create("method" + (METHODS - 1));
+  }
+
+  @Benchmark
+  public int hashCodeOf() {
+    return polled.hashCode();
+  }
+
+  @Benchmark
+  public boolean equalsTo() {
+    return polled.equals(registered);
+  }
+
+  @Benchmark
+  public Integer lookup() {
+    return methods.get(polled);
+  }
+
+  private static MethodProfile create(String name) {
+    MethodProfile profile = new MethodProfile();
+    profile.setName(name);
+    profile.setParameterTypes(Arrays.asList("java.lang.String",
+                                            "java.util.List<java.lang.String>",
+                                            "int"));
+    profile.setReturnType("java.util.Map<java.lang.String,java.lang.Integer>");
+    return profile;
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.utils;
+
+import org.nebula.framework.model.Input;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The json conversions of the inputs of the activities and workflows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilsBenchmark {
+
+  //the canonical type isn't the param itself, the json results can't hold the commas of a param.
+  @Param({"string", "list", "map"})
+  private String type;
+
+  private String canonical;
+
+  private String json;
+
+  private Input input;
+
+  @Setup
+  public void setUp() {
+    if ("list".equals(type)) {
+      canonical = "java.util.List<java.lang.String>";
+      json = JsonUtils.toJson(Arrays.asList("order-1", "order-2", "order-3"));
+    } else if ("map".equals(type)) {
+      canonical = "java.util.Map<java.lang.String,java.lang.Integer>";
+      Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+      map.put("quantity", 3);
+      map.put("price", 1999);
+      json = JsonUtils.toJson(map);
+    } else {
+      canonical = "java.lang.String";
+      json = JsonUtils.toJson("customer-1234");
+    }
+
+    input = new Input();
+    input.setInputs(new String[]{json, json, json});
+  }
+
+  @Benchmark
+  public Object constructFromCanonical() {
+    return JsonUtils.constructFromCanonical(json, canonical);
+  }
+
+  @Benchmark
+  public String toJsonInput() {
+    return JsonUtils.toJson(input);
+  }
+
+}
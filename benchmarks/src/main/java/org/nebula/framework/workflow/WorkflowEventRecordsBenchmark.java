@@ -0,0 +1,155 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.workflow;
+
+import org.nebula.framework.client.NebulaClient;
+import org.nebula.framework.client.Request;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.event.ActivityCompletedEvent;
+import org.nebula.framework.event.ActivityScheduledEvent;
+import org.nebula.framework.event.Event;
+import org.nebula.framework.event.WorkflowScheduledEvent;
+import org.nebula.framework.model.Input;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a history of activities the way the Decider does: the workflow scheduled event first,
+ * then one activity replay per scheduled activity, with the pages of events served from memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowEventRecordsBenchmark {
+
+  private final static int PAGE_SIZE = 50;
+
+  @Param({"100", "1000", "10000"})
+  private int events;
+
+  private List<Event> history;
+
+  private NebulaClient client;
+
+  @Setup
+  public void setUp() {
+    history = createHistory(events);
+    client = new PagingClient();
+  }
+
+  @Benchmark
+  public int replay() {
+    WorkflowEventRecords records =
+        new WorkflowEventRecords(client, "1", PAGE_SIZE, events + PAGE_SIZE);
+
+    records.workflowReplayer().replay();
+
+    WorkflowEventRecords.ActivityReplayer activityReplayer = records.activityReplayer();
+
+    int completed = 0;
+    for (int i = 0; i < events / 2; i++) {
+      activityReplayer.replay();
+      if (activityReplayer.isActivityCompletedReplayed()) {
+        completed++;
+      }
+    }
+
+    return completed;
+  }
+
+  /**
+   * @return the workflow scheduled event followed by the scheduled and completed activities.
+   */
+  static List<Event> createHistory(int size) {
+    List<Event> history = new ArrayList<Event>(size);
+
+    WorkflowScheduledEvent scheduled = new WorkflowScheduledEvent(1, 0);
+    scheduled.setInstanceId("1");
+    history.add(scheduled);
+
+    long timestamp = System.currentTimeMillis();
+
+    int eventId = 2;
+    while (history.size() < size) {
+      ActivityScheduledEvent activityScheduled = new ActivityScheduledEvent(eventId, eventId - 1);
+      activityScheduled.setTimestamp(timestamp++);
+      activityScheduled.setInput(input("\"request-" + eventId + "\""));
+      history.add(activityScheduled);
+
+      ActivityCompletedEvent completed = new ActivityCompletedEvent(eventId + 1, eventId);
+      completed.setTimestamp(timestamp++);
+      completed.setInput(input("{\"status\":\"OK\",\"value\":" + eventId + "}"));
+      history.add(completed);
+
+      eventId += 2;
+    }
+
+    return history.subList(0, size);
+  }
+
+  private static Input input(String json) {
+    Input input = new Input();
+    input.setInputs(new String[]{json});
+    return input;
+  }
+
+  private class PagingClient implements NebulaClient {
+
+    public String getUser() {
+      return "benchmark";
+    }
+
+    public <T> T get(Request request) throws Exception {
+      int pageNo = ((GetEventsRequest) request).getPageNo();
+
+      int from = (pageNo - 1) * PAGE_SIZE;
+
+      GetEventsResponse response = new GetEventsResponse();
+      response.setPageNo(pageNo);
+      response.setTotal(history.size());
+      response.setEvents(new ArrayList<Event>(
+          history.subList(from, Math.min(from + PAGE_SIZE, history.size()))));
+      return (T) response;
+    }
+
+    public <T> T post(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> T delete(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
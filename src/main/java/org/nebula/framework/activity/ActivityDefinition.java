@@ -16,6 +16,8 @@
 
 package org.nebula.framework.activity;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+
 import org.nebula.framework.annotation.Activity;
 import org.nebula.framework.core.MethodProfileFactory;
 import org.nebula.framework.model.ActivityProfile;
@@ -26,14 +28,30 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import static org.nebula.framework.utils.JsonUtils.readersForCanonical;
+
 public class ActivityDefinition {
 
   private Class activityImplementation;
 
   private Map<MethodProfile, Method> activityMethods = new HashMap<MethodProfile, Method>();
 
+  //the methods of the implementation resolved once, so the invocation skips the interface lookup
+  //and the access check.
+  private Map<MethodProfile, Method>
+      implementationMethods =
+      new HashMap<MethodProfile, Method>();
+
+  private ActivityInstanceProvider instanceProvider;
+
+  private Map<MethodProfile, ObjectReader[]>
+      parameterReaders =
+      new HashMap<MethodProfile, ObjectReader[]>();
+
   private ActivityProfile activityProfile;
 
+  private boolean local;
+
   public ActivityDefinition(Class activityImplementation) {
 
     if (activityImplementation == null) {
@@ -53,6 +71,26 @@ public class ActivityDefinition {
     return activityMethods.get(methodProfile);
   }
 
+  /**
+   * @return the accessible method of the implementation, null if the method profile doesn't
+   * belong to the activity.
+   */
+  public Method getImplementationMethod(MethodProfile methodProfile) {
+    return implementationMethods.get(methodProfile);
+  }
+
+  public ActivityInstanceProvider getInstanceProvider() {
+    return instanceProvider;
+  }
+
+  /**
+   * @return the readers of the parameters built on adding the activity, null if the method
+   * profile doesn't belong to the activity.
+   */
+  public ObjectReader[] getParameterReaders(MethodProfile methodProfile) {
+    return parameterReaders.get(methodProfile);
+  }
+
   public Set<MethodProfile> getMethodProfiles() {
     return activityMethods.keySet();
   }
@@ -61,6 +99,10 @@ public class ActivityDefinition {
     return activityProfile;
   }
 
+  public boolean isLocal() {
+    return local;
+  }
+
   private void process() {
 
     Activity activity = null;
@@ -86,6 +128,10 @@ public class ActivityDefinition {
 
     if (activity != null) {
       activityProfile = buildActivityProfile(interfaze, activity);
+      local = activity.local();
+
+      instanceProvider = ActivityInstanceProvider.create(activityImplementation,
+                                                         activity.lifecycle());
 
       for (Method method : interfaze.getMethods()) {
 
@@ -93,12 +139,26 @@ public class ActivityDefinition {
             .create(method);
 
         activityMethods.put(methodProfile, method);
+        implementationMethods.put(methodProfile, resolveImplementationMethod(method));
+        parameterReaders.put(methodProfile, readersForCanonical(methodProfile.getParameterTypes()));
       }
 
       ensureAtLeastOneMethod();
     }
   }
 
+  private Method resolveImplementationMethod(Method method) {
+    try {
+      Method implementationMethod =
+          activityImplementation.getMethod(method.getName(), method.getParameterTypes());
+      //the implementation class may be not public.
+      implementationMethod.setAccessible(true);
+      return implementationMethod;
+    } catch (Exception e) {
+      return method;
+    }
+  }
+
   private void ensureAtLeastOneMethod() {
     if (activityMethods.size() == 0) {
       throw new RuntimeException(
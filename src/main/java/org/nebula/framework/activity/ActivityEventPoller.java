@@ -19,8 +19,10 @@ package org.nebula.framework.activity;
 import org.nebula.framework.client.NebulaClient;
 import org.nebula.framework.client.Request;
 import org.nebula.framework.client.Response;
+import org.nebula.framework.client.request.BatchPollActivityRequest;
 import org.nebula.framework.client.request.PollActivityRequest;
 import org.nebula.framework.client.response.PollActivityResponse;
+import org.nebula.framework.core.Bulkhead;
 import org.nebula.framework.core.Configuration;
 import org.nebula.framework.core.EventPoller;
 import org.nebula.framework.core.NebulaException;
@@ -29,10 +31,22 @@ import java.util.List;
 
 public class ActivityEventPoller extends EventPoller<ActivityDefinition, PollActivityResponse> {
 
+  private final ActivityMetrics metrics;
+
   public ActivityEventPoller(NebulaClient nebulaClient,
                              ActivityDefinition activityDefinition, List<String> realms,
                              Configuration configuration) {
     super(nebulaClient, activityDefinition, realms, configuration);
+    this.metrics = new ActivityMetrics(configuration.getMetricsRegistry(),
+                                       activityDefinition.getActivityProfile());
+  }
+
+  public ActivityEventPoller(NebulaClient nebulaClient,
+                             ActivityDefinition activityDefinition, List<String> realms,
+                             Configuration configuration, Bulkhead bulkhead) {
+    super(nebulaClient, activityDefinition, realms, configuration, bulkhead);
+    this.metrics = new ActivityMetrics(configuration.getMetricsRegistry(),
+                                       activityDefinition.getActivityProfile());
   }
 
   @Override
@@ -45,6 +59,18 @@ public class ActivityEventPoller extends EventPoller<ActivityDefinition, PollAct
     return request;
   }
 
+  @Override
+  protected Request createBatchPollRequest(ActivityDefinition activityDefinition,
+                                           List<String> realms, int maxTasks) {
+    BatchPollActivityRequest request = new BatchPollActivityRequest();
+    request.setActivity(activityDefinition.getActivityProfile().getActivity());
+    request.setVersion(activityDefinition.getActivityProfile().getVersion());
+    request.setRealms(realms);
+    request.setMaxTasks(maxTasks);
+
+    return request;
+  }
+
   @Override
   protected PollActivityResponse processResponse(PollActivityResponse response) {
     if (Response.Status.SUCCESS == response.getStatus()) {
@@ -58,6 +84,8 @@ public class ActivityEventPoller extends EventPoller<ActivityDefinition, PollAct
   protected Runnable createNodeHandler(NebulaClient nebulaClient,
                                        ActivityDefinition activityDefinition,
                                        Configuration configuration, PollActivityResponse response) {
-    return new ActivityHandler(nebulaClient, activityDefinition, response);
+    return new ActivityHandler(nebulaClient, activityDefinition, response,
+                               configuration.getPayloadOffloader(),
+                               metrics);
   }
 }
@@ -16,12 +16,15 @@
 
 package org.nebula.framework.activity;
 
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nebula.framework.client.NebulaClient;
 import org.nebula.framework.client.Response;
 import org.nebula.framework.client.request.CompleteActivityRequest;
 import org.nebula.framework.client.response.PollActivityResponse;
+import org.nebula.framework.core.PayloadOffloader;
+import org.nebula.framework.metrics.MetricsRegistry;
 import org.nebula.framework.model.Input;
 import org.nebula.framework.retry.FixedBackoffRetryPolicy;
 import org.nebula.framework.retry.RetryException;
@@ -30,9 +33,9 @@ import org.nebula.framework.retry.RetryPolicy;
 import org.nebula.framework.utils.Validate;
 
 import java.lang.reflect.Method;
-import java.util.List;
 
-import static org.nebula.framework.utils.JsonUtils.constructFromCanonical;
+import static org.nebula.framework.utils.JsonUtils.readValue;
+import static org.nebula.framework.utils.JsonUtils.readersForCanonical;
 import static org.nebula.framework.utils.JsonUtils.toJson;
 
 public class ActivityHandler implements Runnable {
@@ -45,18 +48,62 @@ public class ActivityHandler implements Runnable {
 
   private PollActivityResponse response;
 
+  private PayloadOffloader payloadOffloader;
+
+  private ActivityMetrics metrics;
+
+  //the task is started once it's polled, so its start-to-close includes the queue wait.
+  private long polledNanos;
+
   public ActivityHandler(NebulaClient nebualClient,
                          ActivityDefinition activityDefinition,
                          PollActivityResponse response) {
+    this(nebualClient, activityDefinition, response, null);
+  }
+
+  /**
+   * @param payloadOffloader resolves the arguments and offloads the result, null if the payloads
+   *                         are inline.
+   */
+  public ActivityHandler(NebulaClient nebualClient,
+                         ActivityDefinition activityDefinition,
+                         PollActivityResponse response, PayloadOffloader payloadOffloader) {
+    this(nebualClient, activityDefinition, response, payloadOffloader, MetricsRegistry.NOOP);
+  }
+
+  /**
+   * @param metricsRegistry records the execution time of the activity methods, the retries
+   *                        completing the activities and the latency histograms of the activity.
+   */
+  public ActivityHandler(NebulaClient nebualClient,
+                         ActivityDefinition activityDefinition,
+                         PollActivityResponse response, PayloadOffloader payloadOffloader,
+                         MetricsRegistry metricsRegistry) {
+    this(nebualClient, activityDefinition, response, payloadOffloader,
+         new ActivityMetrics(metricsRegistry, response.getActivityProfile()));
+  }
+
+  /**
+   * @param metrics the metrics of the activity, shared by the tasks of the activity.
+   */
+  public ActivityHandler(NebulaClient nebualClient,
+                         ActivityDefinition activityDefinition,
+                         PollActivityResponse response, PayloadOffloader payloadOffloader,
+                         ActivityMetrics metrics) {
     this.nebualClient = nebualClient;
     this.activityDefinition = activityDefinition;
     this.response = response;
+    this.payloadOffloader = payloadOffloader;
+    this.metrics = metrics;
+    this.polledNanos = System.nanoTime();
   }
 
   public void run() {
 
     try {
 
+      recordScheduleToStart();
+
       Method activityMethod = findActivityMethod();
 
       Object[] args = constructArguments();
@@ -67,6 +114,8 @@ public class ActivityHandler implements Runnable {
 
       completeActivity(response, result);
 
+      metrics.getStartToClose().record(System.nanoTime() - polledNanos);
+
     } catch (Exception e) {
       log.error("Failed to handle the activity ", e);
       //If any exception is thrown, this activity will be polled and be handled again after some time.
@@ -76,14 +125,32 @@ public class ActivityHandler implements Runnable {
 
 
   private Object invokeActivityMethod(Method activityMethod, Object[] args) throws Exception {
-    return activityMethod.invoke(activityDefinition
-                                     .getActivityImplementation().newInstance(), args);
+
+    ActivityInstanceProvider instanceProvider = activityDefinition.getInstanceProvider();
+
+    Object instance = instanceProvider.acquire();
+    long start = System.nanoTime();
+    try {
+      return activityMethod.invoke(instance, args);
+    } finally {
+      metrics.getExecutionTimer(response.getMethodProfile().getName())
+          .record(System.nanoTime() - start);
+      instanceProvider.release(instance);
+    }
+  }
+
+  private void recordScheduleToStart() {
+    //measured against the clock of the server, so the skew of the clocks is included.
+    if (response.getScheduledTime() > 0) {
+      long millis = Math.max(0, System.currentTimeMillis() - response.getScheduledTime());
+      metrics.getScheduleToStart().record(millis * 1000000);
+    }
   }
 
   private Method findActivityMethod() {
 
     Method activityMethod = activityDefinition
-        .getActivityMethod(response.getMethodProfile());
+        .getImplementationMethod(response.getMethodProfile());
 
     Validate.notNull(activityMethod, "There is no activity method for "
                                      + response.getMethodProfile());
@@ -96,15 +163,21 @@ public class ActivityHandler implements Runnable {
     Input input = response.getInput();
     String[] inputs = input.getInputs();
 
-    return constructArguments(inputs, response.getMethodProfile().getParameterTypes());
+    ObjectReader[] readers = activityDefinition.getParameterReaders(response.getMethodProfile());
+
+    if (readers == null) {
+      readers = readersForCanonical(response.getMethodProfile().getParameterTypes());
+    }
+
+    return constructArguments(inputs, readers);
   }
 
-  private Object[] constructArguments(String[] inputs, List<String> types) {
+  private Object[] constructArguments(String[] inputs, ObjectReader[] readers) {
     Object[] args = new Object[inputs.length];
 
     for (int i = 0; i < inputs.length; i++) {
 
-      args[i] = constructFromCanonical(inputs[i], types.get(i));
+      args[i] = readValue(PayloadOffloader.resolve(payloadOffloader, inputs[i]), readers[i]);
 
     }
     return args;
@@ -117,7 +190,13 @@ public class ActivityHandler implements Runnable {
     RetryPolicy<Response> retryPolicy = createFixedBackoffRetryPolicy();
     retryPolicy.retry(
         new RetryExecutor<Response>() {
+          private boolean attempted = false;
+
           public Response tryIt() throws RetryException {
+            if (attempted) {
+              metrics.getCompleteRetries().increment(1);
+            }
+            attempted = true;
             return completeActivity(request);
           }
         });
@@ -136,7 +215,7 @@ public class ActivityHandler implements Runnable {
     request.setEventId(response.getEventId());
 
     Input input = new Input();
-    input.setInputs(new String[]{toJson(result)});
+    input.setInputs(PayloadOffloader.offload(payloadOffloader, new String[]{toJson(result)}));
     request.setInput(input);
 
     return request;
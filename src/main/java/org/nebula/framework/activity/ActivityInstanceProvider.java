@@ -0,0 +1,119 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.activity;
+
+import org.nebula.framework.annotation.Activity;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Provides the instances of an activity implementation by its {@link Activity.Lifecycle}.
+ */
+public abstract class ActivityInstanceProvider {
+
+  private final Class activityImplementation;
+
+  protected ActivityInstanceProvider(Class activityImplementation) {
+    this.activityImplementation = activityImplementation;
+  }
+
+  public static ActivityInstanceProvider create(Class activityImplementation,
+                                                Activity.Lifecycle lifecycle) {
+    switch (lifecycle) {
+      case SINGLETON:
+        return new Singleton(activityImplementation);
+      case POOLED:
+        return new Pooled(activityImplementation);
+      default:
+        return new PerTask(activityImplementation);
+    }
+  }
+
+  /**
+   * Take an instance for a task, which should be released after the task.
+   */
+  public abstract Object acquire() throws Exception;
+
+  public abstract void release(Object instance);
+
+  protected Object newInstance() throws Exception {
+    return activityImplementation.newInstance();
+  }
+
+  private static class PerTask extends ActivityInstanceProvider {
+
+    PerTask(Class activityImplementation) {
+      super(activityImplementation);
+    }
+
+    public Object acquire() throws Exception {
+      return newInstance();
+    }
+
+    public void release(Object instance) {
+    }
+  }
+
+  private static class Singleton extends ActivityInstanceProvider {
+
+    private volatile Object instance;
+
+    Singleton(Class activityImplementation) {
+      super(activityImplementation);
+    }
+
+    public Object acquire() throws Exception {
+      Object result = instance;
+      if (result == null) {
+        synchronized (this) {
+          if (instance == null) {
+            instance = newInstance();
+          }
+          result = instance;
+        }
+      }
+      return result;
+    }
+
+    public void release(Object instance) {
+    }
+  }
+
+  /**
+   * The pool grows to the number of the concurrent tasks, which the poller already bounds.
+   */
+  private static class Pooled extends ActivityInstanceProvider {
+
+    private final Queue<Object> idleInstances = new ConcurrentLinkedQueue<Object>();
+
+    Pooled(Class activityImplementation) {
+      super(activityImplementation);
+    }
+
+    public Object acquire() throws Exception {
+      Object instance = idleInstances.poll();
+      return instance != null ? instance : newInstance();
+    }
+
+    public void release(Object instance) {
+      if (instance != null) {
+        idleInstances.offer(instance);
+      }
+    }
+  }
+
+}
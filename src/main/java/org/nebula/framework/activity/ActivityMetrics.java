@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.activity;
+
+import org.nebula.framework.metrics.Counter;
+import org.nebula.framework.metrics.Histogram;
+import org.nebula.framework.metrics.MetricNames;
+import org.nebula.framework.metrics.MetricsRegistry;
+import org.nebula.framework.metrics.Timer;
+import org.nebula.framework.model.ActivityProfile;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The metrics of an activity, resolved once per activity so that the tasks don't build the metric
+ * names.
+ */
+public class ActivityMetrics {
+
+  private final MetricsRegistry metricsRegistry;
+
+  //activity:version following the prefixes of the names.
+  private final String profileName;
+
+  private final Histogram scheduleToStart;
+
+  private final Histogram startToClose;
+
+  private final Counter completeRetries;
+
+  //the timers of the activity methods by the method name.
+  private final ConcurrentMap<String, Timer> executionTimers =
+      new ConcurrentHashMap<String, Timer>();
+
+  public ActivityMetrics(MetricsRegistry metricsRegistry, ActivityProfile activityProfile) {
+    this.metricsRegistry = metricsRegistry;
+    this.profileName = MetricNames.profile(activityProfile.getActivity(),
+                                           activityProfile.getVersion());
+    this.scheduleToStart =
+        metricsRegistry.histogram(MetricNames.ACTIVITY_SCHEDULE_TO_START + profileName);
+    this.startToClose =
+        metricsRegistry.histogram(MetricNames.ACTIVITY_START_TO_CLOSE + profileName);
+    this.completeRetries = metricsRegistry.counter(MetricNames.ACTIVITY_COMPLETE_RETRIES);
+  }
+
+  public Histogram getScheduleToStart() {
+    return scheduleToStart;
+  }
+
+  public Histogram getStartToClose() {
+    return startToClose;
+  }
+
+  public Counter getCompleteRetries() {
+    return completeRetries;
+  }
+
+  public Timer getExecutionTimer(String methodName) {
+    Timer timer = executionTimers.get(methodName);
+    if (timer == null) {
+      //a race creates the same timer twice, the registry returns the same instance.
+      timer = metricsRegistry.timer(MetricNames.ACTIVITY_EXECUTION + profileName + "."
+                                    + methodName);
+      executionTimers.put(methodName, timer);
+    }
+    return timer;
+  }
+}
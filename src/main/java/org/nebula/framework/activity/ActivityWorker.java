@@ -18,7 +18,9 @@ package org.nebula.framework.activity;
 
 import org.nebula.framework.client.NebulaClient;
 import org.nebula.framework.core.ActivityNodeRegistry;
+import org.nebula.framework.core.Bulkhead;
 import org.nebula.framework.core.Configuration;
+import org.nebula.framework.core.EventPoller;
 import org.nebula.framework.core.NodeRegistry;
 import org.nebula.framework.core.NodeWorker;
 
@@ -43,10 +45,11 @@ public class ActivityWorker extends NodeWorker<ActivityDefinition> {
     return new ActivityDefinitionRealm(activityDefinition, realms);
   }
 
-  protected Runnable createEvenPoller(NebulaClient nebulaClient,
-                                      ActivityDefinition activityDefinition, List<String> realms,
-                                      Configuration configuration) {
-    return new ActivityEventPoller(nebulaClient, activityDefinition, realms, configuration);
+  protected EventPoller createEvenPoller(NebulaClient nebulaClient,
+                                         ActivityDefinition activityDefinition, List<String> realms,
+                                         Configuration configuration, Bulkhead bulkhead) {
+    return new ActivityEventPoller(nebulaClient, activityDefinition, realms, configuration,
+                                   bulkhead);
   }
 
   protected NodeRegistry createNodeRegistry(NebulaClient nebulaClient) {
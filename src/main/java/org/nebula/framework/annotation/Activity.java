@@ -30,4 +30,34 @@ public @interface Activity {
   String name() default "";
 
   String version() default "1.0";
+
+  /**
+   * How the instances of the activity implementation are created for the tasks.
+   */
+  Lifecycle lifecycle() default Lifecycle.PER_TASK;
+
+  /**
+   * Run the activity inline in the decision task of the workflow worker it's added to, see
+   * {@link org.nebula.framework.workflow.WorkflowWorker#addLocalActivity(Class)}. Only the result
+   * is recorded in the history and it's replayed without running the activity again.
+   *
+   * For the short activities only, since the decision waits for them. The activity may run again
+   * if the decision fails before its result is recorded.
+   */
+  boolean local() default false;
+
+  enum Lifecycle {
+    /**
+     * A new instance for each task.
+     */
+    PER_TASK,
+    /**
+     * One instance for all the tasks, so the implementation should be thread safe.
+     */
+    SINGLETON,
+    /**
+     * An instance is used by one task at a time and reused by the next tasks.
+     */
+    POOLED
+  }
 }
@@ -0,0 +1,547 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.client;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.nebula.framework.client.ContentCounters.Counter;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.core.Authorization;
+import org.nebula.framework.event.BinaryEventCodec;
+import org.nebula.framework.metrics.MetricNames;
+import org.nebula.framework.metrics.MetricsRegistry;
+import org.nebula.framework.metrics.Timer;
+import org.nebula.framework.utils.ContentCodec;
+import org.nebula.framework.utils.JacksonContentCodec;
+import org.nebula.framework.utils.QueryStringWriter;
+import org.nebula.framework.utils.RequestMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.nebula.framework.utils.JsonUtils.toJson;
+
+/**
+ * Builds the signed http requests and reads the responses for the REST clients, leaving the
+ * http transport to the subclasses.
+ */
+public abstract class AbstractNebulaRestClient implements NebulaClient {
+
+  private final static Log logger = LogFactory.getLog(AbstractNebulaRestClient.class);
+
+  protected final static int DEFAULT_MAX_TOTAL_CONNECTIONS = 200;
+  protected final static int DEFAULT_CONNECTION_TIMEOUT_SECS = 30;
+  protected final static int DEFAULT_SOCKET_TIMEOUT_SECS = 30;
+  //the socket waits a bit longer than the server holds a long poll.
+  private final static int LONG_POLL_SOCKET_MARGIN_SECS = 5;
+
+  private final static ContentCodec JSON = JacksonContentCodec.JSON;
+
+  private final static String ACCEPT_ENCODING = "gzip, deflate";
+
+  private RequestConfig requestConfig;
+
+  private RequestMapper requestMapper;
+  private HttpHost target;
+  private String accessId;
+  private String secretKey;
+
+  private boolean binaryEvents = true;
+
+  private Authorization.SignatureMethod signatureMethod = Authorization.SignatureMethod.MD5;
+
+  private ContentCodec contentCodec = JSON;
+
+  private String accept = JSON.getContentType();
+
+  //0 means the request bodies aren't compressed.
+  private int compressionThreshold = 0;
+
+  private final ContentCounters contentCounters = new ContentCounters();
+
+  private MetricsRegistry metricsRegistry = MetricsRegistry.NOOP;
+
+  //resolved once per request class, so a request doesn't build the metric names.
+  private final ConcurrentMap<Class, RequestMetrics> requestMetrics =
+      new ConcurrentHashMap<Class, RequestMetrics>();
+
+  protected AbstractNebulaRestClient(String accessId, String secretKey, String hostname,
+                                     int port, String contextPath, int connectionTimeoutInSecs,
+                                     int socketTimeoutInSecs) {
+    this.accessId = accessId;
+    this.secretKey = secretKey;
+    this.target = new HttpHost(hostname, port);
+
+    requestConfig = RequestConfig.custom()
+        .setConnectionRequestTimeout(connectionTimeoutInSecs * 1000)
+        .setConnectTimeout(connectionTimeoutInSecs * 1000)
+        .setSocketTimeout(socketTimeoutInSecs * 1000).build();
+
+    requestMapper = new RequestMapper(contextPath);
+  }
+
+  protected HttpClientContext createPreemptiveBasicAuthentication() {
+    CredentialsProvider credsProvider = new BasicCredentialsProvider();
+    credsProvider.setCredentials(AuthScope.ANY,
+                                 new UsernamePasswordCredentials(accessId, secretKey));
+
+    AuthCache authCache = new BasicAuthCache();
+    authCache.put(target, new BasicScheme());
+
+    // Add AuthCache to the execution context
+    HttpClientContext context = HttpClientContext.create();
+    context.setCredentialsProvider(credsProvider);
+    context.setAuthCache(authCache);
+
+    return context;
+  }
+
+  protected HttpPost createPost(Request request) throws Exception {
+
+    request.setAccessId(accessId);
+
+    Class requestClass = request.getClass();
+
+    String uri = requestMapper.getUri(requestClass);
+
+    HttpPost httpPost = new HttpPost(uri);
+    httpPost.setHeader(Request.AUTHORIZATION_HEADER,
+                       request.toSignedSignature(secretKey, signatureMethod));
+
+    httpPost.setConfig(requestConfig);
+    httpPost.setHeader("Accept", accept);
+    httpPost.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+
+    long start = System.nanoTime();
+
+    byte[] body = contentCodec.write(request);
+    byte[] wireBody = body;
+
+    if (compressionThreshold > 0 && body.length >= compressionThreshold) {
+      wireBody = gzip(body);
+    }
+
+    ByteArrayEntity entity =
+        new ByteArrayEntity(wireBody, ContentType.create(contentCodec.getContentType()));
+    if (wireBody != body) {
+      entity.setContentEncoding("gzip");
+    } else if (contentCodec == JSON) {
+      entity.setContentEncoding("UTF-8");
+    }
+    httpPost.setEntity(entity);
+
+    RequestMetrics metrics = getRequestMetrics(requestClass);
+    metrics.contentCounter.sent(body.length, wireBody.length);
+    metrics.serialize.record(System.nanoTime() - start);
+    metrics.sentBytes.increment(body.length);
+
+    if (logger.isDebugEnabled()) {
+      logger.debug("post request" + requestClass.getSimpleName() + ", to " + uri + " with : "
+                   + toJson(request));
+    }
+
+    return httpPost;
+  }
+
+  protected HttpGet createGet(Request request) throws Exception {
+
+    request.setAccessId(accessId);
+
+    Class requestClass = request.getClass();
+
+    String uri = requestMapper.getUri(requestClass);
+
+    String uriWithQueryString = QueryStringWriter.write(uri, request);
+    HttpGet httpGet = new HttpGet(uriWithQueryString);
+
+    httpGet.setConfig(requestConfig(request));
+
+    httpGet.setHeader(Request.AUTHORIZATION_HEADER,
+                      request.toSignedSignature(secretKey, signatureMethod));
+    httpGet.addHeader("Content-Type", "application/json");
+
+    if (binaryEvents && request instanceof GetEventsRequest) {
+      //the server answers with the other types if it doesn't support the binary events.
+      httpGet.addHeader("Accept", BinaryEventCodec.MEDIA_TYPE + ", " + accept);
+    } else {
+      httpGet.addHeader("Accept", accept);
+    }
+    httpGet.addHeader("Accept-Encoding", ACCEPT_ENCODING);
+
+    logger.debug(
+        "get request: " + requestClass.getSimpleName() + ", queryString: " + uriWithQueryString);
+
+    return httpGet;
+  }
+
+  protected HttpDelete createDelete(Request request) throws Exception {
+
+    request.setAccessId(accessId);
+
+    Class requestClass = request.getClass();
+
+    String uri = requestMapper.getUri(requestClass);
+
+    String uriWithDeleteString = QueryStringWriter.write(uri, request);
+
+    HttpDelete httpDelete = new HttpDelete(uriWithDeleteString);
+    httpDelete.setConfig(requestConfig);
+
+    httpDelete.setHeader(Request.AUTHORIZATION_HEADER,
+                         request.toSignedSignature(secretKey, signatureMethod));
+    httpDelete.addHeader("Content-Type", "application/json");
+    httpDelete.addHeader("Accept", accept);
+    httpDelete.addHeader("Accept-Encoding", ACCEPT_ENCODING);
+
+    return httpDelete;
+  }
+
+  protected Class getResponseClass(Request request) {
+    return requestMapper.getResponse(request.getClass());
+  }
+
+  /**
+   * @throws IllegalArgumentException if the server rejects the request as a bad request.
+   */
+  protected <T> T toResponse(HttpResponse res, Request request) throws Exception {
+
+    HttpEntity entity = res.getEntity();
+
+    int statusCode = res.getStatusLine().getStatusCode();
+
+    if (entity == null) {
+      logger.error("Error: no content of status " + statusCode);
+      throw new Exception("error");
+    }
+
+    CountingInputStream wire = new CountingInputStream(entity.getContent());
+    CountingInputStream content = new CountingInputStream(decompress(wire, entity));
+
+    long start = System.nanoTime();
+
+    try {
+      if (statusCode == HttpStatus.SC_OK && isBinaryEvents(entity)) {
+
+        byte[] bytes = toByteArray(content);
+
+        logger.debug("binary events content of " + bytes.length + " bytes");
+
+        return (T) GetEventsResponse.fromBinary(bytes);
+      }
+
+      if (statusCode == HttpStatus.SC_OK) {
+
+        Class responseClass = getResponseClass(request);
+
+        ContentCodec codec = getCodec(entity);
+
+        logger.debug("read " + responseClass.getSimpleName() + " as " + codec.getContentType());
+
+        //parse the body as it arrives rather than building the string first.
+        return (T) codec.read(content, responseClass);
+      }
+
+      String message = new String(toByteArray(content), getCharset(entity));
+
+      if (statusCode == HttpStatus.SC_BAD_REQUEST) {
+        logger.error("Illegal argument:" + message);
+        throw new IllegalArgumentException(message);
+      } else {
+        logger.error("Error:" + message);
+
+        // TODO: more specific info
+        throw new Exception("error");
+      }
+    } finally {
+      RequestMetrics metrics = getRequestMetrics(request.getClass());
+      metrics.contentCounter.received(content.getCount(), wire.getCount());
+      metrics.deserialize.record(System.nanoTime() - start);
+      metrics.receivedBytes.increment(content.getCount());
+      //releases the connection for the next request.
+      try {
+        content.close();
+      } catch (IOException e) {
+        logger.warn("Failed to close the response content.", e);
+      }
+    }
+  }
+
+  private RequestMetrics getRequestMetrics(Class requestClass) {
+    RequestMetrics metrics = requestMetrics.get(requestClass);
+    if (metrics == null) {
+      //a race creates the same metrics twice, the registries return the same instances.
+      metrics = new RequestMetrics(requestClass.getSimpleName());
+      requestMetrics.put(requestClass, metrics);
+    }
+    return metrics;
+  }
+
+  private static InputStream decompress(InputStream in, HttpEntity entity) throws IOException {
+    Header contentEncoding = entity.getContentEncoding();
+    String encoding = contentEncoding == null ? null : contentEncoding.getValue();
+
+    if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+      return new GZIPInputStream(in);
+    } else if ("deflate".equalsIgnoreCase(encoding)) {
+      return new DeflateInputStream(in);
+    }
+    return in;
+  }
+
+  private static Charset getCharset(HttpEntity entity) {
+    ContentType contentType = ContentType.get(entity);
+    Charset charset = contentType == null ? null : contentType.getCharset();
+    return charset == null ? Charset.forName("UTF-8") : charset;
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(bytes);
+    gzip.close();
+    return out.toByteArray();
+  }
+
+  private static byte[] toByteArray(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  //json unless the server answers with the configured codec.
+  private ContentCodec getCodec(HttpEntity entity) {
+    Header contentType = entity.getContentType();
+    if (contentCodec != JSON && contentType != null && contentType.getValue() != null
+        && contentType.getValue().startsWith(contentCodec.getContentType())) {
+      return contentCodec;
+    }
+    return JSON;
+  }
+
+  private static boolean isBinaryEvents(HttpEntity entity) {
+    Header contentType = entity == null ? null : entity.getContentType();
+    return contentType != null && contentType.getValue() != null
+           && contentType.getValue().startsWith(BinaryEventCodec.MEDIA_TYPE);
+  }
+
+  private RequestConfig requestConfig(Request request) {
+
+    if (request instanceof LongPollRequest) {
+
+      int socketTimeout =
+          (((LongPollRequest) request).getWaitSecs() + LONG_POLL_SOCKET_MARGIN_SECS) * 1000;
+
+      if (socketTimeout > requestConfig.getSocketTimeout()) {
+        return RequestConfig.copy(requestConfig).setSocketTimeout(socketTimeout).build();
+      }
+    }
+
+    return requestConfig;
+  }
+
+  protected HttpHost getTarget() {
+    return target;
+  }
+
+  public String getUser() {
+    return accessId;
+  }
+
+  public RequestMapper getRequestMapper() {
+    return requestMapper;
+  }
+
+  public void setRequestMapper(RequestMapper requestMapper) {
+    this.requestMapper = requestMapper;
+  }
+
+  public ContentCodec getContentCodec() {
+    return contentCodec;
+  }
+
+  /**
+   * Send the requests with the codec and ask for the responses in it, with a fallback to json for
+   * the servers which don't support it. Json by default.
+   */
+  public void setContentCodec(ContentCodec contentCodec) {
+    if (contentCodec == null) {
+      throw new IllegalArgumentException("The contentCodec can't be null.");
+    }
+
+    this.contentCodec = contentCodec;
+    this.accept = contentCodec == JSON ? JSON.getContentType()
+                                       : contentCodec.getContentType() + ", "
+                                         + JSON.getContentType() + ";q=0.5";
+  }
+
+  public int getCompressionThreshold() {
+    return compressionThreshold;
+  }
+
+  /**
+   * Gzip the request bodies of at least the threshold bytes, the server has to accept the gzip
+   * Content-Encoding. 0 by default, which disables the compression.
+   */
+  public void setCompressionThreshold(int compressionThreshold) {
+    if (compressionThreshold < 0) {
+      throw new IllegalArgumentException("The compressionThreshold can't be negative.");
+    }
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  /**
+   * @return the bytes of the bodies per request type.
+   */
+  public ContentCounters getContentCounters() {
+    return contentCounters;
+  }
+
+  public MetricsRegistry getMetricsRegistry() {
+    return metricsRegistry;
+  }
+
+  /**
+   * Record the time encoding and decoding the bodies and their bytes per request type, e.g. into
+   * the registry of the worker configuration. {@link MetricsRegistry#NOOP} by default.
+   */
+  public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+    if (metricsRegistry == null) {
+      throw new IllegalArgumentException("The metricsRegistry can't be null.");
+    }
+    this.metricsRegistry = metricsRegistry;
+    requestMetrics.clear();
+  }
+
+  public Authorization.SignatureMethod getSignatureMethod() {
+    return signatureMethod;
+  }
+
+  /**
+   * Sign the requests with the method, MD5 by default for the servers which don't verify the
+   * HMAC_SHA256.
+   */
+  public void setSignatureMethod(Authorization.SignatureMethod signatureMethod) {
+    if (signatureMethod == null) {
+      throw new IllegalArgumentException("The signatureMethod can't be null.");
+    }
+    this.signatureMethod = signatureMethod;
+  }
+
+  public boolean isBinaryEvents() {
+    return binaryEvents;
+  }
+
+  /**
+   * Ask for the history events in the {@link BinaryEventCodec#MEDIA_TYPE}, true by default.
+   */
+  public void setBinaryEvents(boolean binaryEvents) {
+    this.binaryEvents = binaryEvents;
+  }
+
+  private static class CountingInputStream extends FilterInputStream {
+
+    private long count = 0;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count++;
+      }
+      return b;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+
+    public boolean markSupported() {
+      return false;
+    }
+
+    long getCount() {
+      return count;
+    }
+  }
+
+  private class RequestMetrics {
+
+    private final Counter contentCounter;
+
+    private final Timer serialize;
+
+    private final Timer deserialize;
+
+    private final org.nebula.framework.metrics.Counter sentBytes;
+
+    private final org.nebula.framework.metrics.Counter receivedBytes;
+
+    private RequestMetrics(String requestType) {
+      contentCounter = contentCounters.getCounter(requestType);
+      serialize = metricsRegistry.timer(MetricNames.CLIENT_SERIALIZE + requestType);
+      deserialize = metricsRegistry.timer(MetricNames.CLIENT_DESERIALIZE + requestType);
+      sentBytes = metricsRegistry.counter(MetricNames.CLIENT_SENT_BYTES + requestType);
+      receivedBytes = metricsRegistry.counter(MetricNames.CLIENT_RECEIVED_BYTES + requestType);
+    }
+  }
+
+}
@@ -37,9 +37,14 @@ public abstract class AbstractRequest implements Request {
   }
 
   public String toSignedSignature(String secretKey) {
+    return toSignedSignature(secretKey, Authorization.SignatureMethod.MD5);
+  }
+
+  public String toSignedSignature(String secretKey,
+                                  Authorization.SignatureMethod signatureMethod) {
     return toSignedSignature(
         Authorization.create().setAccessId(accessId).setRequestType(this.getClass().getSimpleName())
-            .addTimestamp(), secretKey);
+            .setSignatureMethod(signatureMethod).addTimestamp(), secretKey);
   }
 
   protected String toSignedSignature(Authorization authorization, String secretKey){
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.client;
+
+import java.util.concurrent.Future;
+
+/**
+ * The NebulaClient sending the requests without holding a thread while the request is in flight.
+ * The callback may be null.
+ */
+public interface AsyncNebulaClient extends NebulaClient {
+
+  public <T> Future<T> postAsync(Request request, ResponseCallback<T> callback);
+
+  public <T> Future<T> getAsync(Request request, ResponseCallback<T> callback);
+
+  public <T> Future<T> deleteAsync(Request request, ResponseCallback<T> callback);
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The response of a batch poll, which carries up to <code>maxTasks</code> tasks.
+ */
+public abstract class BatchPollResponse<S extends Response> implements Response {
+
+  private List<S> tasks = new ArrayList<S>();
+
+  private Status status;
+
+  public List<S> getTasks() {
+    return tasks;
+  }
+
+  public void setTasks(List<S> tasks) {
+    this.tasks = tasks;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(Status status) {
+    this.status = status;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The bytes of the bodies sent and received per request type, before and after the compression.
+ */
+public class ContentCounters {
+
+  private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+
+  /**
+   * @param requestType the simple name of the request class.
+   */
+  public Counter getCounter(String requestType) {
+    Counter counter = counters.get(requestType);
+    if (counter == null) {
+      Counter created = new Counter();
+      counter = counters.putIfAbsent(requestType, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    return counter;
+  }
+
+  /**
+   * @return a snapshot of the counters keyed by the request type.
+   */
+  public Map<String, Counter> getCounters() {
+    return new HashMap<String, Counter>(counters);
+  }
+
+  public static class Counter {
+
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong sentWireBytes = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicLong receivedWireBytes = new AtomicLong();
+
+    void sent(long bytes, long wireBytes) {
+      sentBytes.addAndGet(bytes);
+      sentWireBytes.addAndGet(wireBytes);
+    }
+
+    void received(long bytes, long wireBytes) {
+      receivedBytes.addAndGet(bytes);
+      receivedWireBytes.addAndGet(wireBytes);
+    }
+
+    /**
+     * @return the bytes of the request bodies before the compression.
+     */
+    public long getSentBytes() {
+      return sentBytes.get();
+    }
+
+    public long getSentWireBytes() {
+      return sentWireBytes.get();
+    }
+
+    /**
+     * @return the bytes of the response bodies after the decompression.
+     */
+    public long getReceivedBytes() {
+      return receivedBytes.get();
+    }
+
+    public long getReceivedWireBytes() {
+      return receivedWireBytes.get();
+    }
+
+    public String toString() {
+      return "sent=" + sentBytes + "/" + sentWireBytes + ", received=" + receivedBytes + "/"
+             + receivedWireBytes;
+    }
+  }
+
+}
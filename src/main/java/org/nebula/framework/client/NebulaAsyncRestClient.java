@@ -0,0 +1,243 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.client;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.NHttpConnection;
+import org.apache.http.nio.protocol.HttpAsyncRequestExecutor;
+import org.apache.http.nio.reactor.IOReactorException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The REST client on the non-blocking I/O: a few I/O threads serve all the requests in flight, so
+ * the number of the outstanding requests is bounded by the connections rather than the threads.
+ *
+ * The client starts its I/O threads on creation, call {@link #close()} to stop them.
+ */
+public class NebulaAsyncRestClient extends AbstractNebulaRestClient
+    implements AsyncNebulaClient, Closeable {
+
+  private final static Log logger = LogFactory.getLog(NebulaAsyncRestClient.class);
+
+  private CloseableHttpAsyncClient client;
+
+  public NebulaAsyncRestClient(String accessId, String secretKey, String hostname,
+                               int port) {
+    this(accessId, secretKey, hostname, port, "");
+  }
+
+  public NebulaAsyncRestClient(String accessId, String secretKey, String hostname,
+                               int port, String contextPath) {
+    this(accessId, secretKey, hostname, port, contextPath, DEFAULT_CONNECTION_TIMEOUT_SECS,
+         DEFAULT_SOCKET_TIMEOUT_SECS, DEFAULT_MAX_TOTAL_CONNECTIONS);
+  }
+
+  public NebulaAsyncRestClient(String accessId, String secretKey, String hostname,
+                               int port, String contextPath, int connectionTimeoutInSecs,
+                               int socketTimeoutInSecs, int maxTotalConnections) {
+    super(accessId, secretKey, hostname, port, contextPath, connectionTimeoutInSecs,
+          socketTimeoutInSecs);
+
+    PoolingNHttpClientConnectionManager cm;
+    try {
+      cm = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
+    } catch (IOReactorException e) {
+      throw new IllegalStateException("Failed to create the I/O reactor.", e);
+    }
+    cm.setMaxTotal(maxTotalConnections);
+    cm.setDefaultMaxPerRoute(maxTotalConnections);
+
+    client = HttpAsyncClients.custom().setConnectionManager(cm).build();
+    client.start();
+  }
+
+  public <T> T post(Request request) throws Exception {
+    return await(this.<T>postAsync(request, null));
+  }
+
+  public <T> T get(Request request) throws Exception {
+    return await(this.<T>getAsync(request, null));
+  }
+
+  public <T> T delete(Request request) throws Exception {
+    return await(this.<T>deleteAsync(request, null));
+  }
+
+  public <T> Future<T> postAsync(Request request, ResponseCallback<T> callback) {
+    ExchangeFuture<T> future = new ExchangeFuture<T>(adapt(callback));
+    try {
+      execute(createPost(request), request, future);
+    } catch (Exception e) {
+      future.failed(e);
+    }
+    return future;
+  }
+
+  public <T> Future<T> getAsync(Request request, ResponseCallback<T> callback) {
+    ExchangeFuture<T> future = new ExchangeFuture<T>(adapt(callback));
+    try {
+      execute(createGet(request), request, future);
+    } catch (Exception e) {
+      future.failed(e);
+    }
+    return future;
+  }
+
+  public <T> Future<T> deleteAsync(Request request, ResponseCallback<T> callback) {
+    ExchangeFuture<T> future = new ExchangeFuture<T>(adapt(callback));
+    try {
+      execute(createDelete(request), request, future);
+    } catch (Exception e) {
+      future.failed(e);
+    }
+    return future;
+  }
+
+  public void close() throws IOException {
+    client.close();
+  }
+
+  private <T> void execute(final HttpRequestBase httpRequest, final Request request,
+                           final ExchangeFuture<T> future) {
+
+    FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+      public void completed(HttpResponse res) {
+        T response;
+        try {
+          response = toResponse(res, request);
+        } catch (Exception e) {
+          future.failed(e);
+          return;
+        }
+        future.completed(response);
+      }
+
+      public void failed(Exception e) {
+        //the cancelled exchange fails once its connection is shut down.
+        if (!future.isCancelled()) {
+          logger.error("Failed to execute http request.", e);
+          future.failed(e);
+        }
+      }
+
+      public void cancelled() {
+        future.cancel(true);
+      }
+    };
+
+    HttpClientContext context = createPreemptiveBasicAuthentication();
+
+    future.setExchange(context, client.execute(getTarget(), httpRequest, context, callback));
+  }
+
+  private static <T> T await(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Cancelling the future aborts the exchange too. The future of the HttpAsyncClient doesn't stop
+   * the exchange in flight, so its handler is cancelled, which discards the pooled connection.
+   */
+  private static class ExchangeFuture<T> extends BasicFuture<T> {
+
+    private volatile HttpClientContext context;
+
+    private volatile Future<HttpResponse> exchange;
+
+    private ExchangeFuture(FutureCallback<T> callback) {
+      super(callback);
+    }
+
+    private void setExchange(HttpClientContext context, Future<HttpResponse> exchange) {
+      this.context = context;
+      this.exchange = exchange;
+
+      //cancelled before the exchange was started.
+      if (isCancelled()) {
+        abort();
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+      if (cancelled && exchange != null) {
+        abort();
+      }
+      return cancelled;
+    }
+
+    private void abort() {
+      //the handler of the exchange won't use a connection leased later.
+      exchange.cancel(true);
+
+      //the handler releases its connection once cancelled.
+      HttpConnection connection = context.getConnection();
+      if (connection instanceof NHttpConnection) {
+        Object handler = ((NHttpConnection) connection).getContext()
+            .getAttribute(HttpAsyncRequestExecutor.HTTP_HANDLER);
+        if (handler instanceof Cancellable) {
+          ((Cancellable) handler).cancel();
+        }
+      }
+    }
+  }
+
+  private static <T> FutureCallback<T> adapt(final ResponseCallback<T> callback) {
+    if (callback == null) {
+      return null;
+    }
+
+    return new FutureCallback<T>() {
+      public void completed(T response) {
+        callback.completed(response);
+      }
+
+      public void failed(Exception e) {
+        callback.failed(e);
+      }
+
+      public void cancelled() {
+        callback.failed(new IllegalStateException("The request is cancelled."));
+      }
+    };
+  }
+
+}
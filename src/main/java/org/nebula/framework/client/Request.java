@@ -16,6 +16,8 @@
 
 package org.nebula.framework.client;
 
+import org.nebula.framework.core.Authorization;
+
 public interface Request {
 
   static final String AUTHORIZATION_HEADER = "Nebula-Authorization";
@@ -25,4 +27,6 @@ public interface Request {
   String getAccessId();
 
   String toSignedSignature(String secretKey);
+
+  String toSignedSignature(String secretKey, Authorization.SignatureMethod signatureMethod);
 }
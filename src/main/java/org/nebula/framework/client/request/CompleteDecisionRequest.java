@@ -20,6 +20,8 @@ package org.nebula.framework.client.request;
 import org.nebula.framework.client.AbstractRequest;
 import org.nebula.framework.core.Authorization;
 
+import java.util.List;
+
 public class CompleteDecisionRequest extends AbstractRequest {
 
   private String registrationId;
@@ -28,6 +30,9 @@ public class CompleteDecisionRequest extends AbstractRequest {
   private String realm;
   private String realmActId;
 
+  //the commands decided in the decision, null if they are already sent one by one.
+  private List<DecisionCommand> commands;
+
   public String getRegistrationId() {
     return registrationId;
   }
@@ -60,6 +65,14 @@ public class CompleteDecisionRequest extends AbstractRequest {
     this.realmActId = realmActId;
   }
 
+  public List<DecisionCommand> getCommands() {
+    return commands;
+  }
+
+  public void setCommands(List<DecisionCommand> commands) {
+    this.commands = commands;
+  }
+
   protected String toSignedSignature(Authorization authorization, String secretKey) {
     return authorization.setRegistrationId(registrationId).setInstanceId(instanceId).toSignedSignature(secretKey);
   }
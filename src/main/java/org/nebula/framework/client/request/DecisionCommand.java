@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.client.request;
+
+/**
+ * A command decided by the workflow and sent along with the {@link CompleteDecisionRequest}. The
+ * server applies the commands in order; a command with the eventId {@link #PRECEDING_COMMAND}
+ * follows the event created by the previous command.
+ *
+ * A timer is not a command, since the workflow needs the id of the timer in the decision.
+ */
+public class DecisionCommand {
+
+  public final static int PRECEDING_COMMAND = -1;
+
+  public enum CommandType {
+    StartActivity, CancelTimer, RecordLocalActivity
+  }
+
+  private CommandType commandType;
+
+  private StartActivityRequest startActivity;
+
+  private CancelTimerRequest cancelTimer;
+
+  private RecordLocalActivityRequest recordLocalActivity;
+
+  public static DecisionCommand startActivity(StartActivityRequest request) {
+    DecisionCommand command = new DecisionCommand();
+    command.setCommandType(CommandType.StartActivity);
+    command.setStartActivity(request);
+    return command;
+  }
+
+  public static DecisionCommand cancelTimer(CancelTimerRequest request) {
+    DecisionCommand command = new DecisionCommand();
+    command.setCommandType(CommandType.CancelTimer);
+    command.setCancelTimer(request);
+    return command;
+  }
+
+  public static DecisionCommand recordLocalActivity(RecordLocalActivityRequest request) {
+    DecisionCommand command = new DecisionCommand();
+    command.setCommandType(CommandType.RecordLocalActivity);
+    command.setRecordLocalActivity(request);
+    return command;
+  }
+
+  public CommandType getCommandType() {
+    return commandType;
+  }
+
+  public void setCommandType(CommandType commandType) {
+    this.commandType = commandType;
+  }
+
+  public StartActivityRequest getStartActivity() {
+    return startActivity;
+  }
+
+  public void setStartActivity(StartActivityRequest startActivity) {
+    this.startActivity = startActivity;
+  }
+
+  public CancelTimerRequest getCancelTimer() {
+    return cancelTimer;
+  }
+
+  public void setCancelTimer(CancelTimerRequest cancelTimer) {
+    this.cancelTimer = cancelTimer;
+  }
+
+  public RecordLocalActivityRequest getRecordLocalActivity() {
+    return recordLocalActivity;
+  }
+
+  public void setRecordLocalActivity(RecordLocalActivityRequest recordLocalActivity) {
+    this.recordLocalActivity = recordLocalActivity;
+  }
+
+}
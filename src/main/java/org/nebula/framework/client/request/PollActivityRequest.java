@@ -17,15 +17,18 @@
 package org.nebula.framework.client.request;
 
 import org.nebula.framework.client.AbstractRequest;
+import org.nebula.framework.client.LongPollRequest;
 import org.nebula.framework.core.Authorization;
 
 import java.util.List;
 
-public class PollActivityRequest extends AbstractRequest {
+public class PollActivityRequest extends AbstractRequest implements LongPollRequest {
 
   private String activity;
   private String version;
   private List<String> realms;
+  private int waitSecs;
+  private int maxTasks = 1;
 
   public String getActivity() {
     return activity;
@@ -51,6 +54,22 @@ public class PollActivityRequest extends AbstractRequest {
     this.realms = realms;
   }
 
+  public int getWaitSecs() {
+    return waitSecs;
+  }
+
+  public void setWaitSecs(int waitSecs) {
+    this.waitSecs = waitSecs;
+  }
+
+  public int getMaxTasks() {
+    return maxTasks;
+  }
+
+  public void setMaxTasks(int maxTasks) {
+    this.maxTasks = maxTasks;
+  }
+
   protected String toSignedSignature(Authorization authorization, String secretKey) {
     return authorization.addField("activity", activity).addField("version", version).toSignedSignature(secretKey);
   }
@@ -17,13 +17,16 @@
 package org.nebula.framework.client.request;
 
 import org.nebula.framework.client.AbstractRequest;
+import org.nebula.framework.client.LongPollRequest;
 import org.nebula.framework.core.Authorization;
 
 import java.util.List;
 
-public class PollWorkflowRequest extends AbstractRequest {
+public class PollWorkflowRequest extends AbstractRequest implements LongPollRequest {
 
   private List<String> realms;
+  private int waitSecs;
+  private int maxTasks = 1;
 
   public List<String> getRealms() {
     return realms;
@@ -33,6 +36,22 @@ public class PollWorkflowRequest extends AbstractRequest {
     this.realms = realms;
   }
 
+  public int getWaitSecs() {
+    return waitSecs;
+  }
+
+  public void setWaitSecs(int waitSecs) {
+    this.waitSecs = waitSecs;
+  }
+
+  public int getMaxTasks() {
+    return maxTasks;
+  }
+
+  public void setMaxTasks(int maxTasks) {
+    this.maxTasks = maxTasks;
+  }
+
   protected String toSignedSignature(Authorization authorization, String secretKey) {
     return authorization.toSignedSignature(secretKey);
   }
@@ -18,10 +18,15 @@ package org.nebula.framework.client.response;
 
 import org.nebula.framework.client.Response;
 
+import java.util.List;
+
 public class CompleteDecisionResponse implements Response {
 
   private String instanceId;
 
+  //the ids of the events created for the commands of the request, in the same order.
+  private List<Integer> eventIds;
+
   public String getInstanceId() {
     return instanceId;
   }
@@ -30,5 +35,12 @@ public class CompleteDecisionResponse implements Response {
     this.instanceId = instanceId;
   }
 
-}
+  public List<Integer> getEventIds() {
+    return eventIds;
+  }
 
+  public void setEventIds(List<Integer> eventIds) {
+    this.eventIds = eventIds;
+  }
+
+}
@@ -17,6 +17,7 @@
 package org.nebula.framework.client.response;
 
 import org.nebula.framework.client.Response;
+import org.nebula.framework.event.BinaryEventCodec;
 import org.nebula.framework.event.Event;
 
 import java.util.List;
@@ -60,4 +61,27 @@ public class GetEventsResponse implements Response {
     this.total = total;
   }
 
+  /**
+   * Encode the page as the body of the {@link BinaryEventCodec#MEDIA_TYPE}.
+   */
+  public byte[] toBinary() {
+    BinaryEventCodec.EventWriter writer = new BinaryEventCodec.EventWriter();
+    writer.writeInt(pageNo);
+    writer.writeInt(size);
+    writer.writeInt(total);
+    writer.writeEvents(events);
+    return writer.toByteArray();
+  }
+
+  public static GetEventsResponse fromBinary(byte[] bytes) {
+    BinaryEventCodec.EventReader reader = new BinaryEventCodec.EventReader(bytes);
+
+    GetEventsResponse response = new GetEventsResponse();
+    response.setPageNo(reader.readInt());
+    response.setSize(reader.readInt());
+    response.setTotal(reader.readInt());
+    response.setEvents(reader.readEvents());
+    return response;
+  }
+
 }
@@ -32,6 +32,9 @@ public class PollActivityResponse implements Response {
   private String realmActId;
   private int eventId;
 
+  //the time the activity was scheduled in milliseconds, 0 if the server doesn't tell it.
+  private long scheduledTime;
+
   private Status status;
 
   public String getRegistrationId() {
@@ -98,6 +101,14 @@ public class PollActivityResponse implements Response {
     this.eventId = eventId;
   }
 
+  public long getScheduledTime() {
+    return scheduledTime;
+  }
+
+  public void setScheduledTime(long scheduledTime) {
+    this.scheduledTime = scheduledTime;
+  }
+
   public Status getStatus() {
     return status;
   }
@@ -21,7 +21,9 @@ import org.apache.commons.logging.LogFactory;
 import org.nebula.framework.utils.HashUtils;
 
 import java.util.Map;
+import java.util.Queue;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class Authorization {
 
@@ -34,11 +36,24 @@ public class Authorization {
   private final static String TIMESTAMP_FLAG = "timestamp";
   private final static String SIGNATURE_FLAG = "signature";
   private final static String SALT_FLAG = "salt";
+  private final static String SIGNATURE_METHOD_FLAG = "signatureMethod";
 
   private final static int SECRETKEY_MIN_LENGTH = 6;
 
+  //the string to sign is built in pooled buffers, only the signed signature is allocated. They
+  //are pooled rather than kept per thread so that the virtual threads reuse them too.
+  private final static Queue<Buffers> BUFFERS = new ConcurrentLinkedQueue<Buffers>();
+
   private Map<String, Object> fields = new TreeMap<String, Object>();
 
+  /**
+   * MD5 is the salted digest the servers have always verified, HMAC_SHA256 is signed in the
+   * signature so that the server knows how to verify it.
+   */
+  public enum SignatureMethod {
+    MD5, HMAC_SHA256
+  }
+
   private Authorization(){}
 
   public static Authorization create(){
@@ -107,6 +122,27 @@ public class Authorization {
     return this;
   }
 
+  public SignatureMethod getSignatureMethod() {
+    String signatureMethod = getField(SIGNATURE_METHOD_FLAG);
+    return signatureMethod == null ? SignatureMethod.MD5 : SignatureMethod.valueOf(signatureMethod);
+  }
+
+  /**
+   * The MD5 isn't put in the fields, so its signature stays the same as before.
+   */
+  public Authorization setSignatureMethod(SignatureMethod signatureMethod) {
+    if (signatureMethod == null) {
+      throw new IllegalArgumentException("The signatureMethod can't be null");
+    }
+
+    if (signatureMethod == SignatureMethod.MD5) {
+      fields.remove(SIGNATURE_METHOD_FLAG);
+    } else {
+      addField(SIGNATURE_METHOD_FLAG, signatureMethod.name());
+    }
+    return this;
+  }
+
   public Authorization addTimestamp() {
     addField(TIMESTAMP_FLAG, System.currentTimeMillis());
     return this;
@@ -131,11 +167,18 @@ public class Authorization {
 
   public String toSignedSignature(String secretKey) {
 
-    String stringToSign = toStringToSign(secretKey);
+    Buffers buffers = acquireBuffers();
+    try {
+      StringBuilder sb = buffers.builder;
 
-    String signature = hashWithSalt(stringToSign, secretKey);
+      appendStringToSign(sb, secretKey);
 
-    return new StringBuilder(stringToSign).append(SIGNATURE_FLAG).append("=").append(signature).toString();
+      appendSignature(sb, secretKey, buffers.hex);
+
+      return sb.toString();
+    } finally {
+      BUFFERS.offer(buffers);
+    }
 
   }
 
@@ -147,35 +190,71 @@ public class Authorization {
       throw new IllegalArgumentException("The accessId can't be blank");
     }
 
-    String stringToSign = toStringToSign(secretKey);
+    Buffers buffers = acquireBuffers();
+    try {
+      StringBuilder sb = buffers.builder;
 
-    String expectedSignature = hashWithSalt(stringToSign, secretKey);
+      appendStringToSign(sb, secretKey);
 
-    String actualSignature = getField(SIGNATURE_FLAG);
+      //the expected signature follows its name.
+      int start = sb.length() + SIGNATURE_FLAG.length() + 1;
+
+      appendSignature(sb, secretKey, buffers.hex);
+
+      String actualSignature = getField(SIGNATURE_FLAG);
+
+      if(actualSignature == null || !equals(sb, start, actualSignature)) {
+        log.error("The expectedSignature " + sb.substring(start) + " and actualSignature "
+                  + actualSignature + " doesn't match");
+        throw new SecurityException("The request signature is incorrect.");
+      }
 
-    if(expectedSignature == null || actualSignature == null || !expectedSignature.equals(actualSignature)) {
-      log.error("The expectedSignature " + expectedSignature + " and actualSignature " + actualSignature + " doesn't match");
-      throw new SecurityException("The request signature is incorrect.");
+      return true;
+    } finally {
+      BUFFERS.offer(buffers);
     }
 
-    return true;
+  }
+
+  //compares all the chars, so the time doesn't tell how much of the signature matches.
+  private static boolean equals(StringBuilder sb, int start, String signature) {
+    if (sb.length() - start != signature.length()) {
+      return false;
+    }
 
+    int diff = 0;
+    for (int i = 0; i < signature.length(); i++) {
+      diff |= sb.charAt(start + i) ^ signature.charAt(i);
+    }
+    return diff == 0;
   }
 
-  private String hashWithSalt(String stringToSign, String secretKey){
-    StringBuilder sb = new StringBuilder(stringToSign);
-    sb.append(SALT_FLAG).append("=").append(secretKey);
-    return HashUtils.md5(sb.toString());
+  /**
+   * Append the signature field after the string to sign in the builder.
+   */
+  private void appendSignature(StringBuilder sb, String secretKey, char[] hex) {
+
+    int length = sb.length();
+
+    int hexLength;
+
+    if (getSignatureMethod() == SignatureMethod.HMAC_SHA256) {
+      hexLength = HashUtils.hmacSha256Hex(sb, 0, length, secretKey, hex);
+    } else {
+      sb.append(SALT_FLAG).append("=").append(secretKey);
+      hexLength = HashUtils.md5Hex(sb, 0, sb.length(), hex);
+      sb.setLength(length);
+    }
+
+    sb.append(SIGNATURE_FLAG).append("=").append(hex, 0, hexLength);
   }
 
-  private String toStringToSign(String secretKey){
+  private void appendStringToSign(StringBuilder sb, String secretKey){
 
     if(secretKey==null || secretKey.trim().length() < SECRETKEY_MIN_LENGTH) {
       throw new IllegalArgumentException("The secretKey must not less than " + SECRETKEY_MIN_LENGTH);
     }
 
-    StringBuilder sb = new StringBuilder();
-
     for (Map.Entry<String, Object> entry : fields.entrySet()) {
       String key = entry.getKey();
       Object value = entry.getValue();
@@ -184,8 +263,23 @@ public class Authorization {
         sb.append(key).append("=").append(value).append("&");
       }
     }
+  }
+
+  private static Buffers acquireBuffers() {
+    Buffers buffers = BUFFERS.poll();
+    if (buffers == null) {
+      return new Buffers();
+    }
+
+    buffers.builder.setLength(0);
+    return buffers;
+  }
+
+  private static class Buffers {
+
+    private final StringBuilder builder = new StringBuilder(256);
 
-    return sb.toString();
+    private final char[] hex = new char[64];
   }
 
-}
\ No newline at end of file
+}
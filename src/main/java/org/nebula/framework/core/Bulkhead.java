@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.core;
+
+import org.nebula.framework.metrics.Timer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the tasks of one node definition running on an executor which may be shared with other
+ * node definitions. A permit is taken before a task is polled and released once the task is
+ * handled, so the tasks of one definition can't starve the others.
+ *
+ * The bulkheads of a worker may share the worker permits, which cap the tasks of all the
+ * definitions: a task takes one of both.
+ */
+public class Bulkhead {
+
+  private final ExecutorService executor;
+
+  private final Semaphore permits;
+
+  //shared by the bulkheads of the worker, null if the worker isn't capped.
+  private final Semaphore workerPermits;
+
+  private final int limit;
+
+  //records the time the tasks wait in the queue of the executor, null if not recorded.
+  private final Timer queueWaitTimer;
+
+  public Bulkhead(ExecutorService executor, int limit) {
+    this(executor, limit, null);
+  }
+
+  public Bulkhead(ExecutorService executor, int limit, Timer queueWaitTimer) {
+    this(executor, limit, queueWaitTimer, null);
+  }
+
+  /**
+   * @param workerPermits the permits shared by the bulkheads of the worker, null for none.
+   */
+  public Bulkhead(ExecutorService executor, int limit, Timer queueWaitTimer,
+                  Semaphore workerPermits) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("The limit should be positive.");
+    }
+
+    this.executor = executor;
+    this.limit = limit;
+    this.permits = new Semaphore(limit);
+    this.queueWaitTimer = queueWaitTimer;
+    this.workerPermits = workerPermits;
+  }
+
+  /**
+   * Wait for one permit, then take the other free permits up to max.
+   *
+   * @return the number of the acquired permits, 0 if no permit is free within the timeout.
+   */
+  public int acquire(int max, long timeout, TimeUnit unit) throws InterruptedException {
+
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+    if (!permits.tryAcquire(timeout, unit)) {
+      return 0;
+    }
+
+    if (workerPermits != null
+        && !workerPermits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+      permits.release();
+      return 0;
+    }
+
+    int acquired = 1;
+
+    while (acquired < max && permits.tryAcquire()) {
+      if (workerPermits != null && !workerPermits.tryAcquire()) {
+        permits.release();
+        break;
+      }
+      acquired++;
+    }
+
+    return acquired;
+  }
+
+  public void release(int count) {
+    permits.release(count);
+    if (workerPermits != null) {
+      workerPermits.release(count);
+    }
+  }
+
+  /**
+   * Execute the task with a permit already acquired. The permit is released after the task.
+   */
+  public void execute(final Runnable task) {
+    final long queued = queueWaitTimer == null ? 0 : System.nanoTime();
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          if (queueWaitTimer != null) {
+            queueWaitTimer.record(System.nanoTime() - queued);
+          }
+          try {
+            task.run();
+          } finally {
+            release(1);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      release(1);
+      throw e;
+    }
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return the number of the tasks which are running or waiting in the queue.
+   */
+  public int getInFlightTasks() {
+    return limit - permits.availablePermits();
+  }
+
+  /**
+   * @return the number of the tasks waiting in the queue of the executor, which includes the
+   * tasks of the other node definitions sharing the executor.
+   */
+  public int getQueuedTasks() {
+    if (executor instanceof ThreadPoolExecutor) {
+      return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+    return 0;
+  }
+
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+}
@@ -20,12 +20,17 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /**
+ * The elements are kept in the memory up to the capacity. With a {@link CacheSpill}, the oldest
+ * half of the elements is moved to the spill once the memory is full, and the elements are read
+ * across both tiers by their index.
+ *
  * Not thread safe.
  */
 public class Cache<T> implements Iterable<T> {
 
   private CacheLoader<T> loader;
 
+  //the elements from the index spilled on.
   private T[] elements;
 
   //number of elements in the cache.
@@ -33,6 +38,11 @@ public class Cache<T> implements Iterable<T> {
 
   private int capacity;
 
+  private CacheSpill<T> spill;
+
+  //number of the oldest elements moved to the spill.
+  private int spilled = 0;
+
   public Cache() {
     this(null, 16);
   }
@@ -46,6 +56,13 @@ public class Cache<T> implements Iterable<T> {
   }
 
   public Cache(CacheLoader<T> loader, int capacity) {
+    this(loader, capacity, null);
+  }
+
+  /**
+   * @param spill null if the cache is bounded by the capacity.
+   */
+  public Cache(CacheLoader<T> loader, int capacity, CacheSpill<T> spill) {
 
     if (capacity <= 0) {
       throw new IllegalArgumentException("The capacity must be greater than 0");
@@ -54,6 +71,7 @@ public class Cache<T> implements Iterable<T> {
     this.loader = loader;
     this.elements = (T[]) new Object[capacity];
     this.capacity = capacity;
+    this.spill = spill;
   }
 
   public boolean isEmpty() {
@@ -69,15 +87,55 @@ public class Cache<T> implements Iterable<T> {
       throw new IllegalArgumentException("The element can't be null.");
     }
 
-    if (size >= capacity) {
-      throw new IllegalStateException("The size " + size + " exceed the capacity.");
+    if (size - spilled >= capacity) {
+      if (spill == null) {
+        throw new IllegalStateException("The size " + size + " exceed the capacity.");
+      }
+      spillOldest();
     }
 
-    elements[size] = element;
+    elements[size - spilled] = element;
 
     size++;
   }
 
+  /**
+   * @return the number of the elements moved to the spill.
+   */
+  public int getSpilled() {
+    return spilled;
+  }
+
+  /**
+   * Release the spill if any.
+   */
+  public void close() {
+    if (spill != null) {
+      spill.close();
+    }
+  }
+
+  private void spillOldest() {
+
+    int count = Math.max(1, capacity / 2);
+
+    for (int i = 0; i < count; i++) {
+      spill.append(elements[i]);
+    }
+
+    System.arraycopy(elements, count, elements, 0, capacity - count);
+
+    for (int i = capacity - count; i < capacity; i++) {
+      elements[i] = null;
+    }
+
+    spilled += count;
+  }
+
+  private T element(int index) {
+    return index < spilled ? spill.read(index) : elements[index - spilled];
+  }
+
   public T get(int index) {
     rangeCheck(index);
 
@@ -87,7 +145,7 @@ public class Cache<T> implements Iterable<T> {
       }
     }
 
-    return elements[index];
+    return element(index);
   }
 
   private void rangeCheck(int index) {
@@ -96,6 +154,15 @@ public class Cache<T> implements Iterable<T> {
     }
   }
 
+  /**
+   * Load the next batch of elements from the loader.
+   *
+   * @return false if the loader has no more elements.
+   */
+  public boolean loadMore() {
+    return load();
+  }
+
   private boolean load() {
     boolean loaded = false;
     if (loader != null) {
@@ -135,11 +202,11 @@ public class Cache<T> implements Iterable<T> {
         throw new NoSuchElementException();
       }
 
-      return elements[i++];
+      return element(i++);
     }
 
     public T current() {
-      return elements[i];
+      return element(i);
     }
 
   }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.core;
+
+/**
+ * The second tier of a {@link Cache}: holds the oldest elements evicted from the memory. The
+ * elements are appended in order and read by their index.
+ */
+public interface CacheSpill<T> {
+
+  public void append(T element);
+
+  public T read(int index);
+
+  public int size();
+
+  /**
+   * Release the resources, e.g. delete the file.
+   */
+  public void close();
+
+}
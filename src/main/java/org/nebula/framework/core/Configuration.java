@@ -16,6 +16,9 @@
 
 package org.nebula.framework.core;
 
+import org.nebula.framework.metrics.DefaultMetricsRegistry;
+import org.nebula.framework.metrics.MetricsRegistry;
+
 public class Configuration {
 
   private int heartbeatInSeconds = 30;
@@ -27,6 +30,41 @@ public class Configuration {
   private int pollThreads = 1;
   private int maxExecutionThreads = 5;
 
+  //caps the tasks handled at once by all the node definitions of a worker, also on the virtual
+  //threads. 0 means the sum of the execution threads of the node definitions in the worker.
+  private int maxWorkerExecutionThreads = 0;
+
+  //runs the pollers and the tasks on the virtual threads if the JVM supports them.
+  private boolean virtualThreads = false;
+
+  //0 means the server answers the poll immediately.
+  private int pollWaitSecs = 0;
+  private int maxPollBackoffSecs = 16;
+
+  //more than 1 enables the batch poll.
+  private int maxPollTasks = 1;
+
+  //moves the oldest events to a temporary file once maxEventsCache is reached.
+  private boolean spillEvents = true;
+
+  //null means java.io.tmpdir.
+  private String eventsSpillDirectory;
+
+  //0 means the pages of events are fetched one by one as the replay needs them.
+  private int eventsPrefetchPages = 0;
+
+  //sends the commands of a decision in the CompleteDecisionRequest.
+  private boolean batchDecisionCommands = false;
+
+  //0 means the sticky decision is disabled.
+  private int maxStickyWorkflows = 0;
+
+  //null means the inputs and results are always inline.
+  private PayloadOffloader payloadOffloader;
+
+  //the metrics of the pollers, the executors, the decisions and the activities.
+  private MetricsRegistry metricsRegistry = new DefaultMetricsRegistry();
+
   public int getHeartbeatInSeconds() {
     return heartbeatInSeconds;
   }
@@ -93,4 +131,146 @@ public class Configuration {
     }
     this.maxExecutionThreads = maxExecutionThreads;
   }
+
+  public int getMaxWorkerExecutionThreads() {
+    return maxWorkerExecutionThreads;
+  }
+
+  public void setMaxWorkerExecutionThreads(int maxWorkerExecutionThreads) {
+    if (maxWorkerExecutionThreads < 0) {
+      throw new IllegalArgumentException("The maxWorkerExecutionThreads can't be negative.");
+    }
+    this.maxWorkerExecutionThreads = maxWorkerExecutionThreads;
+  }
+
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /**
+   * Run the pollers and the polled tasks on the virtual threads (Java 21+). The concurrent tasks
+   * of a node definition are still limited by its maxExecutionThreads, which can then be much
+   * larger for the I/O-bound activities.
+   */
+  public void setVirtualThreads(boolean virtualThreads) {
+    this.virtualThreads = virtualThreads;
+  }
+
+  public boolean isSpillEvents() {
+    return spillEvents;
+  }
+
+  /**
+   * Move the oldest events of a history larger than maxEventsCache to a memory-mapped temporary
+   * file rather than failing the decision.
+   */
+  public void setSpillEvents(boolean spillEvents) {
+    this.spillEvents = spillEvents;
+  }
+
+  public String getEventsSpillDirectory() {
+    return eventsSpillDirectory;
+  }
+
+  public void setEventsSpillDirectory(String eventsSpillDirectory) {
+    this.eventsSpillDirectory = eventsSpillDirectory;
+  }
+
+  public int getEventsPrefetchPages() {
+    return eventsPrefetchPages;
+  }
+
+  /**
+   * Fetch up to eventsPrefetchPages pages of events ahead of the replay once the first page tells
+   * the total. It takes effect with an {@link org.nebula.framework.client.AsyncNebulaClient}.
+   */
+  public void setEventsPrefetchPages(int eventsPrefetchPages) {
+    if (eventsPrefetchPages < 0) {
+      throw new IllegalArgumentException("The eventsPrefetchPages can't be negative.");
+    }
+    this.eventsPrefetchPages = eventsPrefetchPages;
+  }
+
+  public boolean isBatchDecisionCommands() {
+    return batchDecisionCommands;
+  }
+
+  /**
+   * Send the activities started and the timers cancelled in a decision along with the
+   * CompleteDecisionRequest in one round-trip. The server should support the commands.
+   */
+  public void setBatchDecisionCommands(boolean batchDecisionCommands) {
+    this.batchDecisionCommands = batchDecisionCommands;
+  }
+
+  public int getMaxStickyWorkflows() {
+    return maxStickyWorkflows;
+  }
+
+  public void setMaxStickyWorkflows(int maxStickyWorkflows) {
+    if (maxStickyWorkflows < 0) {
+      throw new IllegalArgumentException("The maxStickyWorkflows can't be negative.");
+    }
+    this.maxStickyWorkflows = maxStickyWorkflows;
+  }
+
+  public PayloadOffloader getPayloadOffloader() {
+    return payloadOffloader;
+  }
+
+  /**
+   * Pass the inputs and results above the threshold of the offloader by reference, the same store
+   * has to be configured for the WorkflowClient and all the workers.
+   */
+  public void setPayloadOffloader(PayloadOffloader payloadOffloader) {
+    this.payloadOffloader = payloadOffloader;
+  }
+
+  public MetricsRegistry getMetricsRegistry() {
+    return metricsRegistry;
+  }
+
+  /**
+   * Record the metrics of the workers into the registry, e.g. {@link MetricsRegistry#NOOP} to
+   * drop them. The metrics of a REST client are recorded into the registry set on the client.
+   */
+  public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+    if (metricsRegistry == null) {
+      throw new IllegalArgumentException("The metricsRegistry can't be null.");
+    }
+    this.metricsRegistry = metricsRegistry;
+  }
+
+  public int getPollWaitSecs() {
+    return pollWaitSecs;
+  }
+
+  public void setPollWaitSecs(int pollWaitSecs) {
+    if (pollWaitSecs < 0) {
+      throw new IllegalArgumentException("The pollWaitSecs can't be negative.");
+    }
+    this.pollWaitSecs = pollWaitSecs;
+  }
+
+  public int getMaxPollBackoffSecs() {
+    return maxPollBackoffSecs;
+  }
+
+  public void setMaxPollBackoffSecs(int maxPollBackoffSecs) {
+    if (maxPollBackoffSecs < 1) {
+      throw new IllegalArgumentException("The maxPollBackoffSecs should be positive.");
+    }
+    this.maxPollBackoffSecs = maxPollBackoffSecs;
+  }
+
+  public int getMaxPollTasks() {
+    return maxPollTasks;
+  }
+
+  public void setMaxPollTasks(int maxPollTasks) {
+    if (maxPollTasks < 1) {
+      throw new IllegalArgumentException("The maxPollTasks should be positive.");
+    }
+    this.maxPollTasks = maxPollTasks;
+  }
 }
@@ -18,25 +18,40 @@ package org.nebula.framework.core;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nebula.framework.client.AsyncNebulaClient;
+import org.nebula.framework.client.BatchPollResponse;
+import org.nebula.framework.client.LongPollRequest;
 import org.nebula.framework.client.NebulaClient;
 import org.nebula.framework.client.Request;
 import org.nebula.framework.client.Response;
-import org.nebula.framework.retry.ExponentialBackoffRetryPolicy;
-import org.nebula.framework.retry.FixedBackoffRetryPolicy;
-import org.nebula.framework.retry.RetryException;
-import org.nebula.framework.retry.RetryExecutor;
-import org.nebula.framework.retry.RetryPolicy;
-
+import org.nebula.framework.client.ResponseCallback;
+import org.nebula.framework.metrics.Counter;
+import org.nebula.framework.metrics.MetricNames;
+import org.nebula.framework.metrics.MetricsRegistry;
+import org.nebula.framework.metrics.Timer;
+import org.nebula.framework.retry.AdaptiveBackoff;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class EventPoller<E, S extends Response> implements Runnable {
 
   private final static Log log = LogFactory.getLog(EventPoller.class);
 
+  private final static long MIN_POLL_BACKOFF_MILLIS = 100;
+
+  private final static long BATCH_POLL_RETRY_MILLIS = 60 * 1000;
+
+  private final static long PERMIT_WAIT_MILLIS = 1000;
+
   private NebulaClient nebulaClient;
 
   private E nodeDefinition;
@@ -45,100 +60,438 @@ public abstract class EventPoller<E, S extends Response> implements Runnable {
 
   private Configuration configuration;
 
-  private ExecutorService nodeExecutor;
+  //One permit per execution slot. The poller only polls when it holds a permit, and the permit is
+  //released once the task is handled.
+  private Bulkhead bulkhead;
+
+  //true if the executor is created by the poller rather than shared by the worker.
+  private boolean ownsExecutor;
+
+  private AdaptiveBackoff backoff;
+
+  private volatile boolean shouldRun = true;
+
+  //set by an asynchronous poll which got no task, so that the next poll backs off first.
+  private volatile boolean backoffRequired;
 
-  private RetryPolicy<S> retryPolicy;
+  private volatile long batchPollDisabledUntil = 0;
 
-  private boolean shouldRun = true;
+  private AtomicLong pollCount = new AtomicLong();
 
-  private long count;
+  private AtomicLong emptyPollCount = new AtomicLong();
+
+  private AtomicLong failedPollCount = new AtomicLong();
+
+  private AtomicLong pollLatencyNanos = new AtomicLong();
+
+  //resolved once per poll request class, so a poll doesn't build the metric names.
+  private final ConcurrentMap<Class, PollMetrics> pollMetrics =
+      new ConcurrentHashMap<Class, PollMetrics>();
 
   public EventPoller(NebulaClient nebulaClient,
                      E nodeDefinition,
                      List<String> realms,
                      Configuration configuration) {
+    this(nebulaClient, nodeDefinition, realms, configuration,
+         new Bulkhead(createNodeExecutor(configuration, configuration.getMaxExecutionThreads()),
+                      configuration.getMaxExecutionThreads(),
+                      configuration.getMetricsRegistry().timer(MetricNames.QUEUE_WAIT)));
+    this.ownsExecutor = true;
+  }
+
+  /**
+   * Create the poller handling the tasks on the executor of the bulkhead, which may be shared
+   * with the pollers of the other node definitions.
+   */
+  public EventPoller(NebulaClient nebulaClient,
+                     E nodeDefinition,
+                     List<String> realms,
+                     Configuration configuration,
+                     Bulkhead bulkhead) {
+    if (bulkhead == null) {
+      throw new IllegalArgumentException("The bulkhead can't be null.");
+    }
+
     this.nebulaClient = nebulaClient;
     this.nodeDefinition = nodeDefinition;
     this.realms = realms;
     this.configuration = configuration;
+    this.bulkhead = bulkhead;
+
+    this.backoff = new AdaptiveBackoff(MIN_POLL_BACKOFF_MILLIS,
+                                       configuration.getMaxPollBackoffSecs() * 1000L);
+  }
 
-    int maxExecutionThreads = configuration.getMaxExecutionThreads();
+  /**
+   * @param threads the number of the threads.
+   * @return the executor handling the polled tasks. The queue never holds more tasks than the
+   * permits, so it needn't be bounded.
+   */
+  public static ThreadPoolExecutor createNodeExecutor(int threads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
 
-    this.nodeExecutor = new ThreadPoolExecutor(1, maxExecutionThreads, 60L,
-                                               TimeUnit.SECONDS,
-                                               new ArrayBlockingQueue<Runnable>(maxExecutionThreads,
-                                                                                true),
-                                               new ThreadPoolExecutor.CallerRunsPolicy());
+  /**
+   * @param threads the number of the platform threads, ignored by the virtual threads.
+   * @return the virtual thread executor if it is configured and supported by the JVM.
+   */
+  public static ExecutorService createNodeExecutor(Configuration configuration, int threads) {
+    if (configuration.isVirtualThreads()) {
+      if (VirtualThreads.isSupported()) {
+        return VirtualThreads.newExecutor();
+      }
+      log.warn("The virtual threads are not supported by the JVM, use the platform threads.");
+    }
+    return createNodeExecutor(threads);
   }
 
   public void stop() {
     shouldRun = false;
-    retryPolicy.cancel();
+    backoff.cancel();
+
+    if (ownsExecutor) {
+      bulkhead.getExecutor().shutdown();
+    }
   }
 
   public long getPollCount() {
-    return count;
+    return pollCount.get();
   }
 
-  public void run() {
+  /**
+   * @return the number of the polls which returned without a task.
+   */
+  public long getEmptyPollCount() {
+    return emptyPollCount.get();
+  }
 
-    while (shouldRun) {
+  public long getFailedPollCount() {
+    return failedPollCount.get();
+  }
 
-      count++;
+  public double getEmptyPollRatio() {
+    long polls = pollCount.get();
+    return polls == 0 ? 0 : 1.0 * emptyPollCount.get() / polls;
+  }
 
-      final Request request = createPollRequest(nodeDefinition, realms);
+  public double getAveragePollLatencyMillis() {
+    long polls = pollCount.get();
+    return polls == 0 ? 0 : pollLatencyNanos.get() / 1000000.0 / polls;
+  }
 
-      try {
-        log.debug("EventPoller start to poll...");
+  /**
+   * @return the number of the polled tasks which are running or waiting in the queue.
+   */
+  public int getInFlightTasks() {
+    return bulkhead.getInFlightTasks();
+  }
+
+  public int getQueuedTasks() {
+    return bulkhead.getQueuedTasks();
+  }
+
+  public Bulkhead getBulkhead() {
+    return bulkhead;
+  }
 
-        retryPolicy = createRetryPolicy();
+  /**
+   * With an {@link AsyncNebulaClient} the poller doesn't wait for the response: every poll in
+   * flight holds its execution permits, so the outstanding polls are bounded by the bulkhead
+   * rather than the poll threads.
+   */
+  public void run() {
 
-        S response = retryPolicy.retry(
-            new RetryExecutor<S>() {
-              public S tryIt() throws RetryException {
-                return poll(request);
-              }
-            });
+    while (shouldRun) {
 
-        nodeExecutor
-            .execute(createNodeHandler(nebulaClient, nodeDefinition, configuration, response));
+      int acquired = acquirePermits();
 
-      } catch (Exception e) {
-        log.error("Failed to poll workflow", e);
+      if (acquired == 0) {
+        continue;
+      }
+
+      if (backoffRequired) {
+        backoffRequired = false;
+        backoff.backoff();
+      }
+
+      log.debug("EventPoller start to poll...");
+
+      if (nebulaClient instanceof AsyncNebulaClient) {
+        pollAsync(acquired);
+      } else if (dispatch(acquired, poll(acquired))) {
+        backoff.backoff();
       }
     }
   }
 
   protected abstract Request createPollRequest(E nodeDefinition, List<String> realms);
 
+  /**
+   * Create the request polling up to maxTasks tasks in one round-trip.
+   *
+   * @return null if the batch poll is not supported.
+   */
+  protected Request createBatchPollRequest(E nodeDefinition, List<String> realms, int maxTasks) {
+    return null;
+  }
+
   protected abstract S processResponse(S response);
 
   protected abstract Runnable createNodeHandler(NebulaClient nebulaClient, E nodeDefinition,
                                                 Configuration configuration, S response);
 
-  private S poll(Request request) {
+  /**
+   * Wait until at least one execution slot is free, then take the other free slots up to the
+   * configured maxPollTasks.
+   *
+   * @return the number of the acquired permits, 0 if the poller is stopped.
+   */
+  private int acquirePermits() {
+
+    try {
+      while (shouldRun) {
+        int acquired = bulkhead.acquire(configuration.getMaxPollTasks(), PERMIT_WAIT_MILLIS,
+                                        TimeUnit.MILLISECONDS);
+        if (acquired > 0) {
+          return acquired;
+        }
+      }
+    } catch (InterruptedException e) {
+      shouldRun = false;
+    }
+
+    return 0;
+  }
+
+  private void execute(S response) {
+
+    Runnable nodeHandler;
+
+    try {
+      nodeHandler = createNodeHandler(nebulaClient, nodeDefinition, configuration, response);
+    } catch (Exception e) {
+      bulkhead.release(1);
+      log.error("Failed to create the node handler", e);
+      return;
+    }
+
+    try {
+      //the bulkhead releases the permit after the handler, or if the executor rejects it.
+      bulkhead.execute(nodeHandler);
+    } catch (Exception e) {
+      log.error("Failed to execute the node handler", e);
+    }
+  }
+
+  /**
+   * Release the permits not used by the tasks, then execute the tasks.
+   *
+   * @param tasks null if the poll failed.
+   * @return true if the poller should back off before the next poll.
+   */
+  private boolean dispatch(int acquired, List<S> tasks) {
+
+    int count = tasks == null ? 0 : tasks.size();
+
+    bulkhead.release(acquired - count);
+
+    if (count == 0) {
+      return isBackoffRequired(tasks);
+    }
+
+    backoff.reset();
+
+    for (S task : tasks) {
+      execute(task);
+    }
+
+    return false;
+  }
+
+  /**
+   * @return the request of the batch poll, null if the batch poll isn't used.
+   */
+  private Request createBatchPollRequest(int maxTasks) {
+    if (maxTasks > 1 && System.currentTimeMillis() >= batchPollDisabledUntil) {
+      return createBatchPollRequest(nodeDefinition, realms, maxTasks);
+    }
+    return null;
+  }
+
+  private void disableBatchPoll(Exception e) {
+    //e.g. the server doesn't support the batch poll, so fall back to the single-task poll.
+    log.warn("Failed to batch poll, fall back to the single-task poll.", e);
+    batchPollDisabledUntil = System.currentTimeMillis() + BATCH_POLL_RETRY_MILLIS;
+  }
+
+  /**
+   * @return null if the poll failed.
+   */
+  private List<S> poll(int maxTasks) {
+
+    Request request = createBatchPollRequest(maxTasks);
+
+    if (request != null) {
+      long start = begin(request);
+      try {
+        return end(request, start, toTasks(nebulaClient.get(request), true, maxTasks));
+      } catch (Exception e) {
+        end(request, start, null);
+        disableBatchPoll(e);
+      }
+    }
+
+    request = createPollRequest(nodeDefinition, realms);
+
+    long start = begin(request);
     try {
-      S response = nebulaClient.get(request);
-      return processResponse(response);
+      return end(request, start, toTasks(nebulaClient.get(request), false, 1));
     } catch (Exception e) {
-      //ignore the exception since RetryException will be thrown eventually.
+      log.error("Failed to poll " + request.getClass().getSimpleName(), e);
+      return end(request, start, null);
+    }
+  }
+
+  private void pollAsync(final int maxTasks) {
+
+    Request batchRequest = createBatchPollRequest(maxTasks);
+
+    final boolean batch = batchRequest != null;
+    final Request request = batch ? batchRequest : createPollRequest(nodeDefinition, realms);
+
+    final long start = begin(request);
+
+    ((AsyncNebulaClient) nebulaClient).getAsync(request, new ResponseCallback<Object>() {
+      public void completed(Object response) {
+        List<S> tasks;
+        try {
+          tasks = toTasks(response, batch, maxTasks);
+        } catch (Exception e) {
+          failed(e);
+          return;
+        }
+        complete(maxTasks, end(request, start, tasks));
+      }
+
+      public void failed(Exception e) {
+        if (batch) {
+          disableBatchPoll(e);
+        } else {
+          log.error("Failed to poll " + request.getClass().getSimpleName(), e);
+        }
+        complete(maxTasks, end(request, start, null));
+      }
+    });
+  }
+
+  private void complete(int acquired, List<S> tasks) {
+    //set before the permits are released, otherwise the next poll may be sent without the backoff.
+    if (isBackoffRequired(tasks)) {
+      backoffRequired = true;
+    }
+
+    dispatch(acquired, tasks);
+  }
+
+  /**
+   * @param tasks null if the poll failed.
+   */
+  private boolean isBackoffRequired(List<S> tasks) {
+    //An empty long poll already waited on the server, so poll again immediately.
+    return tasks == null || (tasks.isEmpty() && configuration.getPollWaitSecs() == 0);
+  }
+
+  private long begin(Request request) {
+    if (request instanceof LongPollRequest) {
+      ((LongPollRequest) request).setWaitSecs(configuration.getPollWaitSecs());
+    }
+
+    pollCount.incrementAndGet();
+
+    return System.nanoTime();
+  }
+
+  private List<S> end(Request request, long start, List<S> tasks) {
+    long latency = System.nanoTime() - start;
+    pollLatencyNanos.addAndGet(latency);
+
+    PollMetrics metrics = pollMetrics(request);
+
+    metrics.latency.record(latency);
+
+    if (tasks == null) {
+      failedPollCount.incrementAndGet();
+      metrics.failed.increment(1);
+    } else if (tasks.isEmpty()) {
+      emptyPollCount.incrementAndGet();
+      metrics.empty.increment(1);
+    }
+
+    return tasks;
+  }
+
+  private PollMetrics pollMetrics(Request request) {
+    PollMetrics metrics = pollMetrics.get(request.getClass());
+    if (metrics == null) {
+      //a race creates the same metrics twice, the registry returns the same instances.
+      metrics = new PollMetrics(configuration.getMetricsRegistry(),
+                                request.getClass().getSimpleName());
+      pollMetrics.put(request.getClass(), metrics);
+    }
+    return metrics;
+  }
+
+  /**
+   * @return the successful tasks of the response, at most maxTasks.
+   */
+  private List<S> toTasks(Object response, boolean batch, int maxTasks) {
+
+    if (!batch) {
+      try {
+        return Collections.singletonList(processResponse((S) response));
+      } catch (NebulaException e) {
+        //processResponse rejects the response without a task.
+        return Collections.emptyList();
+      }
     }
 
-    throw new RetryException();
+    BatchPollResponse<S> batchResponse = (BatchPollResponse<S>) response;
+
+    List<S> tasks = new ArrayList<S>();
+
+    if (batchResponse.getStatus() == Response.Status.SUCCESS && batchResponse.getTasks() != null) {
+      for (S task : batchResponse.getTasks()) {
+        if (tasks.size() == maxTasks) {
+          log.warn("The batch poll returned more than " + maxTasks + " tasks.");
+          break;
+        }
+        try {
+          tasks.add(processResponse(task));
+        } catch (NebulaException e) {
+          log.warn("Ignore the task which is not success.");
+        }
+      }
+    }
+
+    return tasks;
   }
 
-  private RetryPolicy<S> createRetryPolicy() {
+  private static class PollMetrics {
 
-    int maxIntervalSecs = 64;
+    private final Timer latency;
 
-    FixedBackoffRetryPolicy<S> fixedBackoffPolicy =
-        new FixedBackoffRetryPolicy<S>(maxIntervalSecs, Integer.MAX_VALUE);
+    private final Counter failed;
 
-    //maxRetries = 6, maxIntervalSecs = 64;
-    ExponentialBackoffRetryPolicy<S>
-        policy = new ExponentialBackoffRetryPolicy<S>(2, 7, fixedBackoffPolicy);
+    private final Counter empty;
 
-    return policy;
+    private PollMetrics(MetricsRegistry metricsRegistry, String requestType) {
+      latency = metricsRegistry.timer(MetricNames.POLL_LATENCY + requestType);
+      failed = metricsRegistry.counter(MetricNames.POLL_FAILED + requestType);
+      empty = metricsRegistry.counter(MetricNames.POLL_EMPTY + requestType);
+    }
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stores the payloads as files of a local directory, named by the SHA-256 of the content so that
+ * a payload passed again is stored once. Meant for the tests and the single host deployments, the
+ * workers of several hosts need a store they all reach.
+ */
+public class FilePayloadStore implements PayloadStore {
+
+  private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final File directory;
+
+  public FilePayloadStore(File directory) {
+    if (directory == null) {
+      throw new IllegalArgumentException("The directory can't be null.");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Failed to create the directory " + directory);
+    }
+    this.directory = directory;
+  }
+
+  public String put(String payload) {
+    byte[] bytes = payload.getBytes(UTF_8);
+
+    String key = sha256(bytes);
+
+    File file = new File(directory, key);
+    if (file.exists()) {
+      return key;
+    }
+
+    //write aside and rename, so a reader never sees a partial payload.
+    try {
+      File temp = File.createTempFile(key, ".tmp", directory);
+      OutputStream out = new FileOutputStream(temp);
+      try {
+        out.write(bytes);
+      } finally {
+        out.close();
+      }
+
+      if (!temp.renameTo(file) && !file.exists()) {
+        temp.delete();
+        throw new IllegalStateException("Failed to store the payload " + file);
+      }
+      temp.delete();
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to store the payload " + file, e);
+    }
+
+    return key;
+  }
+
+  public String get(String key) {
+    File file = new File(directory, key);
+
+    if (!file.getParentFile().equals(directory) || !file.isFile()) {
+      throw new IllegalStateException("There is no payload of the key " + key);
+    }
+
+    try {
+      InputStream in = new FileInputStream(file);
+      try {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+          out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), UTF_8);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read the payload " + file, e);
+    }
+  }
+
+  private static String sha256(byte[] bytes) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+      char[] chars = new char[digest.length * 2];
+      for (int i = 0; i < digest.length; i++) {
+        chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+        chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+      }
+      return new String(chars);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
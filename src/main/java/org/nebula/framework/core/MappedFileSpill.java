@@ -0,0 +1,211 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.core;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spills the elements into a temporary file mapped into the memory segment by segment. Each
+ * element is written as its length and the bytes of its codec; an element never spans two
+ * segments, so a segment is started early for an element which doesn't fit.
+ *
+ * The pages of the mapped file are managed by the OS, so the elements don't take the heap.
+ *
+ * Not thread safe.
+ */
+public class MappedFileSpill<T> implements CacheSpill<T> {
+
+  private final static Log log = LogFactory.getLog(MappedFileSpill.class);
+
+  public final static int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+  //the spill files of a live worker are closed long before, see deleteStaleFiles.
+  public final static long STALE_FILE_MILLIS = 24 * 60 * 60 * 1000L;
+
+  private final static String FILE_PREFIX = "nebula-spill-";
+
+  private final Codec<T> codec;
+
+  private final File directory;
+
+  private final int segmentSize;
+
+  private File file;
+
+  private RandomAccessFile randomAccessFile;
+
+  private List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+  //the position of an element is the segment index in the high 32 bits and the offset in the low.
+  private long[] positions = new long[64];
+
+  private int size = 0;
+
+  //the position in the file where the next segment starts.
+  private long fileLength = 0;
+
+  public MappedFileSpill(Codec<T> codec) {
+    this(codec, null, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * @param directory the directory of the temporary file, null for java.io.tmpdir.
+   */
+  public MappedFileSpill(Codec<T> codec, File directory, int segmentSize) {
+    if (codec == null) {
+      throw new IllegalArgumentException("The codec can't be null.");
+    }
+    if (segmentSize < 8) {
+      throw new IllegalArgumentException("The segmentSize is too small.");
+    }
+
+    this.codec = codec;
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Delete the spill files left in the directory by a worker which didn't close them, e.g. it
+   * crashed. The files are deleted by {@link #close()} otherwise.
+   *
+   * @param directory the directory of the spill files, null for java.io.tmpdir.
+   * @param maxAgeMillis the files modified more recently are kept, since they may be in use.
+   * @return the number of the files deleted.
+   */
+  public static int deleteStaleFiles(File directory, long maxAgeMillis) {
+    if (directory == null) {
+      directory = new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return 0;
+    }
+
+    long modifiedBefore = System.currentTimeMillis() - maxAgeMillis;
+
+    int deleted = 0;
+    for (File file : files) {
+      if (file.getName().startsWith(FILE_PREFIX) && file.isFile()
+          && file.lastModified() < modifiedBefore) {
+        if (file.delete()) {
+          deleted++;
+        } else {
+          log.warn("Failed to delete the stale spill file " + file);
+        }
+      }
+    }
+
+    if (deleted > 0) {
+      log.info("Deleted " + deleted + " stale spill files from " + directory);
+    }
+
+    return deleted;
+  }
+
+  public void append(T element) {
+
+    byte[] bytes = codec.encode(element);
+
+    int length = bytes.length + 4;
+
+    MappedByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+
+    if (segment == null || segment.remaining() < length) {
+      segment = newSegment(Math.max(segmentSize, length));
+    }
+
+    if (size == positions.length) {
+      positions = Arrays.copyOf(positions, size * 2);
+    }
+    positions[size] = ((long) (segments.size() - 1) << 32) | segment.position();
+
+    segment.putInt(bytes.length);
+    segment.put(bytes);
+
+    size++;
+  }
+
+  public T read(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+
+    long position = positions[index];
+
+    ByteBuffer segment = segments.get((int) (position >>> 32)).duplicate();
+    segment.position((int) position);
+
+    byte[] bytes = new byte[segment.getInt()];
+    segment.get(bytes);
+
+    return codec.decode(bytes);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void close() {
+    segments.clear();
+    size = 0;
+
+    if (randomAccessFile != null) {
+      try {
+        randomAccessFile.close();
+      } catch (IOException e) {
+        log.warn("Failed to close the spill file " + file, e);
+      }
+      randomAccessFile = null;
+    }
+
+    if (file != null && !file.delete()) {
+      log.warn("Failed to delete the spill file " + file);
+    }
+    file = null;
+  }
+
+  private MappedByteBuffer newSegment(int length) {
+    try {
+      if (randomAccessFile == null) {
+        file = File.createTempFile(FILE_PREFIX, ".bin", directory);
+        randomAccessFile = new RandomAccessFile(file, "rw");
+      }
+
+      MappedByteBuffer segment =
+          randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, fileLength, length);
+
+      fileLength += length;
+      segments.add(segment);
+
+      return segment;
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to map the spill file " + file, e);
+    }
+  }
+
+}
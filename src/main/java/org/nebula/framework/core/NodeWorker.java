@@ -19,11 +19,14 @@ package org.nebula.framework.core;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nebula.framework.client.NebulaClient;
+import org.nebula.framework.metrics.MetricNames;
 
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 public abstract class NodeWorker<E> {
@@ -40,7 +43,16 @@ public abstract class NodeWorker<E> {
 
   private volatile boolean isStarted = false;
 
-  private ExecutorService nodeExecutor;
+  //runs the pollers of all the node definitions.
+  private ExecutorService pollerExecutor;
+
+  //runs the polled tasks of all the node definitions, each definition is limited by its bulkhead.
+  private ExecutorService handlerExecutor;
+
+  //caps the tasks of all the node definitions, null if their limits fit the worker.
+  private Semaphore workerPermits;
+
+  private List<EventPoller> eventPollers = new ArrayList<EventPoller>();
 
   private ExecutorService heartbeatExecutor;
 
@@ -61,11 +73,32 @@ public abstract class NodeWorker<E> {
    *                                  worker; or if the realms is null or empty.
    */
   public synchronized void add(Class nodeImplementation, List<String> realms) {
+    add(nodeImplementation, realms, 0);
+  }
+
+  /**
+   * Add the node implementation with its own limit of the concurrent tasks.
+   *
+   * @param maxExecutionThreads the max number of the tasks of the node implementation running at
+   *                            the same time, 0 means the maxExecutionThreads of the
+   *                            configuration.
+   * @throws IllegalArgumentException if the maxExecutionThreads is negative.
+   * @see #add(Class, java.util.List)
+   */
+  public synchronized void add(Class nodeImplementation, List<String> realms,
+                               int maxExecutionThreads) {
+    if (maxExecutionThreads < 0) {
+      throw new IllegalArgumentException("The maxExecutionThreads can't be negative.");
+    }
+
     E nodeDefinition = createNodeDefinition(nodeImplementation);
 
     checkDuplicate(nodeDefinition);
 
-    nodeDefinitionRealms.add(createNodeDefinitionRealm(nodeDefinition, realms));
+    NodeDefinitionRealm nodeDefinitionRealm = createNodeDefinitionRealm(nodeDefinition, realms);
+    nodeDefinitionRealm.maxExecutionThreads = maxExecutionThreads;
+
+    nodeDefinitionRealms.add(nodeDefinitionRealm);
 
   }
 
@@ -94,7 +127,10 @@ public abstract class NodeWorker<E> {
 //  protected abstract Runnable createEvenPoller(NebulaClient nebulaClient, E definition,
 //                                               List<String> realms, Configuration configuration);
 
-  protected abstract Runnable createEvenPoller(NebulaClient nebulaClient, E nodeDefinition, List<String> realms, Configuration configuration);
+  protected abstract EventPoller createEvenPoller(NebulaClient nebulaClient, E nodeDefinition,
+                                                 List<String> realms,
+                                                 Configuration configuration,
+                                                 Bulkhead bulkhead);
 
   protected abstract NodeRegistry createNodeRegistry(NebulaClient nebulaClient);
 
@@ -121,6 +157,8 @@ public abstract class NodeWorker<E> {
 
       registerAndStartHeatbeat();
 
+      createExecutors();
+
       for (NodeDefinitionRealm nodeDefinitionRealm : nodeDefinitionRealms) {
         startNode(nodeDefinitionRealm);
       }
@@ -134,18 +172,82 @@ public abstract class NodeWorker<E> {
 
   }
 
+  /**
+   * The worker runs pollThreads pollers for each node definition, and at most the sum of the
+   * execution threads of the definitions for the polled tasks unless the
+   * maxWorkerExecutionThreads is configured. The cap is enforced by the worker permits shared by
+   * the bulkheads, so it holds on the virtual threads too.
+   */
+  private void createExecutors() {
+
+    workerPermits = null;
+
+    int executionThreads = 0;
+
+    for (NodeDefinitionRealm nodeDefinitionRealm : nodeDefinitionRealms) {
+      executionThreads += getMaxExecutionThreads(nodeDefinitionRealm);
+    }
+
+    int maxWorkerExecutionThreads = configuration.getMaxWorkerExecutionThreads();
+
+    //the bulkheads would lease more tasks than the threads otherwise, and the tasks would wait in
+    //the queue of the executor.
+    if (maxWorkerExecutionThreads > 0 && executionThreads > maxWorkerExecutionThreads) {
+      executionThreads = maxWorkerExecutionThreads;
+      workerPermits = new Semaphore(maxWorkerExecutionThreads);
+    }
+
+    int pollThreads = configuration.getPollThreads() * nodeDefinitionRealms.size();
+
+    if (configuration.isVirtualThreads() && VirtualThreads.isSupported()) {
+      //the bulkheads and the worker permits limit the tasks instead of the pool size.
+      pollerExecutor = VirtualThreads.newExecutor();
+      handlerExecutor = VirtualThreads.newExecutor();
+
+      log.info("The Node Worker runs " + pollThreads + " pollers on the virtual threads.");
+      return;
+    }
+
+    pollerExecutor = Executors.newFixedThreadPool(pollThreads);
+
+    handlerExecutor = EventPoller.createNodeExecutor(configuration, executionThreads);
+
+    log.info("The Node Worker runs " + pollThreads + " poll threads and " + executionThreads
+             + " execution threads.");
+  }
+
+  private int getMaxExecutionThreads(NodeDefinitionRealm nodeDefinitionRealm) {
+    int maxExecutionThreads = nodeDefinitionRealm.getMaxExecutionThreads();
+    return maxExecutionThreads > 0 ? maxExecutionThreads : configuration.getMaxExecutionThreads();
+  }
+
   protected void startNode(NodeDefinitionRealm nodeDefinitionRealm) {
 
     int pollThreads = configuration.getPollThreads();
 
-    nodeExecutor = Executors
-        .newFixedThreadPool(pollThreads);
+    //the pollers of one node definition share its bulkhead.
+    Bulkhead bulkhead = new Bulkhead(handlerExecutor, getMaxExecutionThreads(nodeDefinitionRealm),
+                                     configuration.getMetricsRegistry()
+                                         .timer(MetricNames.QUEUE_WAIT),
+                                     workerPermits);
 
     for (int i = 0; i < pollThreads; i++) {
-      nodeExecutor.execute(createEvenPoller(nebulaClient, (E)nodeDefinitionRealm.getDefinition(), nodeDefinitionRealm.getRealms(), configuration));
+      EventPoller eventPoller = createEvenPoller(nebulaClient,
+                                                 (E) nodeDefinitionRealm.getDefinition(),
+                                                 nodeDefinitionRealm.getRealms(), configuration,
+                                                 bulkhead);
+      eventPollers.add(eventPoller);
+      pollerExecutor.execute(eventPoller);
     }
   }
 
+  /**
+   * @return the pollers started by the worker, e.g. for reading the poll counters.
+   */
+  public List<EventPoller> getEventPollers() {
+    return eventPollers;
+  }
+
   public void stop() {
 
     if (isStarted) {
@@ -154,8 +256,14 @@ public abstract class NodeWorker<E> {
         registry.cancelRegister();
       }
 
+      for (EventPoller eventPoller : eventPollers) {
+        eventPoller.stop();
+      }
+      eventPollers.clear();
+
       shutdownExecutor(heartbeatExecutor);
-      shutdownExecutor(nodeExecutor);
+      shutdownExecutor(pollerExecutor);
+      shutdownExecutor(handlerExecutor);
     }
 
     isStarted = false;
@@ -192,9 +300,13 @@ public abstract class NodeWorker<E> {
           registry.register((E) nodeDefinitionRealm.getDefinition(),
                             nodeDefinitionRealm.getRealms());
 
-      log.debug(nodeDefinitionRealm.getNodeInfo()
-                + ", registerId=" + registrationId + ", path=" + getClass().getResource("/")
-                    .getPath());
+      if (log.isDebugEnabled()) {
+        //there is no root resource if the worker runs from a jar.
+        URL root = getClass().getResource("/");
+        log.debug(nodeDefinitionRealm.getNodeInfo()
+                  + ", registerId=" + registrationId + ", path=" + (root == null ? null
+                                                                     : root.getPath()));
+      }
 
       heartbeat(heartbeatExecutor, registrationId);
     }
@@ -218,6 +330,7 @@ public abstract class NodeWorker<E> {
 
     private E definition;
     private List<String> realms;
+    private int maxExecutionThreads;
 
     protected NodeDefinitionRealm(E definition, List<String> realms) {
       if (definition == null) {
@@ -238,6 +351,13 @@ public abstract class NodeWorker<E> {
       return realms;
     }
 
+    /**
+     * @return 0 if the node definition uses the maxExecutionThreads of the configuration.
+     */
+    public int getMaxExecutionThreads() {
+      return maxExecutionThreads;
+    }
+
     protected abstract boolean hasDefinition(E definition);
 
     protected abstract String getNodeInfo();
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.core;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves the inputs and results larger than the threshold to the {@link PayloadStore}, and puts a
+ * reference in their place. The reference isn't a valid json, so it can't be taken for a value.
+ *
+ * The references are resolved when the value is cast for a method, the payloads fetched are kept
+ * in a LRU cache bounded by their total length, since the replay casts them again on every
+ * decision.
+ *
+ * Thread safe.
+ */
+public class PayloadOffloader {
+
+  private final static Log log = LogFactory.getLog(PayloadOffloader.class);
+
+  public final static String REFERENCE_PREFIX = "@payload:";
+
+  public final static int DEFAULT_THRESHOLD = 256 * 1024;
+
+  public final static long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+  private final PayloadStore store;
+
+  private final int threshold;
+
+  private final long maxCacheSize;
+
+  private final Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true);
+
+  private long cacheSize = 0;
+
+  public PayloadOffloader(PayloadStore store) {
+    this(store, DEFAULT_THRESHOLD, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * @param threshold    the length of the json from which it's offloaded.
+   * @param maxCacheSize the total length of the payloads cached, 0 to disable the cache.
+   */
+  public PayloadOffloader(PayloadStore store, int threshold, long maxCacheSize) {
+    if (store == null) {
+      throw new IllegalArgumentException("The store can't be null.");
+    }
+    if (threshold <= REFERENCE_PREFIX.length()) {
+      throw new IllegalArgumentException("The threshold is too small.");
+    }
+    if (maxCacheSize < 0) {
+      throw new IllegalArgumentException("The maxCacheSize can't be negative.");
+    }
+
+    this.store = store;
+    this.threshold = threshold;
+    this.maxCacheSize = maxCacheSize;
+  }
+
+  public static boolean isReference(String input) {
+    return input != null && input.startsWith(REFERENCE_PREFIX);
+  }
+
+  /**
+   * @return the json itself if it's below the threshold, otherwise the reference of the payload.
+   */
+  public String offload(String json) {
+    if (json == null || json.length() < threshold) {
+      return json;
+    }
+
+    String key = store.put(json);
+
+    log.debug("Offloaded the payload of " + json.length() + " chars to " + key);
+
+    return REFERENCE_PREFIX + key;
+  }
+
+  public String[] offload(String[] inputs) {
+    String[] offloaded = new String[inputs.length];
+    for (int i = 0; i < inputs.length; i++) {
+      offloaded[i] = offload(inputs[i]);
+    }
+    return offloaded;
+  }
+
+  /**
+   * @return the payload of the reference, or the input itself if it isn't a reference.
+   */
+  public String resolve(String input) {
+    if (!isReference(input)) {
+      return input;
+    }
+
+    String key = input.substring(REFERENCE_PREFIX.length());
+
+    String payload = getCached(key);
+    if (payload == null) {
+      payload = store.get(key);
+      putCached(key, payload);
+    }
+
+    return payload;
+  }
+
+  /**
+   * @throws IllegalStateException if the input is a reference but there is no offloader.
+   */
+  public static String resolve(PayloadOffloader offloader, String input) {
+    if (offloader != null) {
+      return offloader.resolve(input);
+    }
+    if (isReference(input)) {
+      throw new IllegalStateException("No payload store is configured to resolve " + input);
+    }
+    return input;
+  }
+
+  public static String[] offload(PayloadOffloader offloader, String[] inputs) {
+    return offloader == null ? inputs : offloader.offload(inputs);
+  }
+
+  public synchronized long getCacheSize() {
+    return cacheSize;
+  }
+
+  private synchronized String getCached(String key) {
+    return cache.get(key);
+  }
+
+  private synchronized void putCached(String key, String payload) {
+    if (payload.length() > maxCacheSize || cache.containsKey(key)) {
+      return;
+    }
+
+    cache.put(key, payload);
+    cacheSize += payload.length();
+
+    Iterator<String> eldest = cache.values().iterator();
+    while (cacheSize > maxCacheSize) {
+      cacheSize -= eldest.next().length();
+      eldest.remove();
+    }
+  }
+
+}
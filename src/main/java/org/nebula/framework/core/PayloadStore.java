@@ -0,0 +1,34 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.core;
+
+/**
+ * The store of the large payloads which are passed by reference rather than in the history.
+ */
+public interface PayloadStore {
+
+  /**
+   * @return the key to get the payload back.
+   */
+  String put(String payload);
+
+  /**
+   * @throws IllegalStateException if there is no payload of the key.
+   */
+  String get(String key);
+
+}
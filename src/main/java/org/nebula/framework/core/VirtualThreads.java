@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.core;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors starting a virtual thread per task on a JVM supporting them (Java 21+).
+ * The framework is compiled for older JVMs, so the executor is looked up by reflection.
+ */
+public final class VirtualThreads {
+
+  private final static Log log = LogFactory.getLog(VirtualThreads.class);
+
+  private final static Method NEW_EXECUTOR = findNewExecutor(Executors.class);
+
+  private VirtualThreads() {
+  }
+
+  public static boolean isSupported() {
+    return NEW_EXECUTOR != null;
+  }
+
+  /**
+   * @return the executor starting a new virtual thread for each task. The number of the threads
+   * isn't bounded, so the caller limits the concurrent tasks, e.g. by a {@link Bulkhead}.
+   * @throws IllegalStateException if the JVM doesn't support the virtual threads.
+   */
+  public static ExecutorService newExecutor() {
+    if (NEW_EXECUTOR == null) {
+      throw new IllegalStateException("The virtual threads require Java 21 or later.");
+    }
+
+    try {
+      return (ExecutorService) NEW_EXECUTOR.invoke(null);
+    } catch (Exception e) {
+      throw new IllegalStateException("Failed to create the virtual thread executor.", e);
+    }
+  }
+
+  /**
+   * @param executors the class declaring the factory of the virtual thread executor.
+   * @return null if the factory doesn't exist.
+   */
+  static Method findNewExecutor(Class<?> executors) {
+    try {
+      return executors.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      log.debug("The virtual threads are not supported by the JVM.");
+      return null;
+    }
+  }
+
+}
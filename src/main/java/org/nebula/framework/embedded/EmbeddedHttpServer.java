@@ -0,0 +1,279 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nebula.framework.client.Request;
+import org.nebula.framework.client.Response;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.event.BinaryEventCodec;
+import org.nebula.framework.utils.ContentCodec;
+import org.nebula.framework.utils.JacksonContentCodec;
+import org.nebula.framework.utils.JsonUtils;
+import org.nebula.framework.utils.RequestMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves an {@link EmbeddedNebulaServer} over http at the uris of the RequestMapper, so the load
+ * tests include the NebulaRestClient. The bodies are read and written as json or smile by the
+ * content type and the accept headers, the gzip request bodies are inflated, the responses are
+ * gzipped if accepted, and the events are written binary if accepted.
+ */
+public class EmbeddedHttpServer {
+
+  private final static Log log = LogFactory.getLog(EmbeddedHttpServer.class);
+
+  //the smaller responses aren't worth the gzip.
+  private final static int COMPRESSION_THRESHOLD = 1024;
+
+  private final static String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+  private final EmbeddedNebulaServer server;
+
+  private final HttpServer httpServer;
+
+  private final ExecutorService executor;
+
+  /**
+   * @param port 0 binds any free port, see {@link #getPort()}.
+   */
+  public EmbeddedHttpServer(EmbeddedNebulaServer server, int port, String contextPath)
+      throws IOException {
+
+    if (server == null) {
+      throw new IllegalArgumentException("The server can't be null.");
+    }
+
+    this.server = server;
+
+    //the small responses wait for the delayed acks of the client unless nagle is disabled, the
+    //property is read by the first server created in the jvm.
+    if (System.getProperty(NODELAY_PROPERTY) == null) {
+      System.setProperty(NODELAY_PROPERTY, "true");
+    }
+
+    this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+
+    RequestMapper requestMapper = new RequestMapper(contextPath);
+
+    for (Class requestClass : requestMapper.getRequestClasses()) {
+      String uri = requestMapper.getUri(requestClass);
+      httpServer.createContext(uri, new RequestHandler(uri, requestClass));
+    }
+
+    //the long polls hold a thread each.
+    this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+      private final AtomicInteger threads = new AtomicInteger();
+
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "nebula-embedded-http-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    httpServer.setExecutor(executor);
+  }
+
+  public void start() {
+    httpServer.start();
+    log.info("The embedded http server listens on port " + getPort() + ".");
+  }
+
+  public void stop() {
+    httpServer.stop(0);
+    executor.shutdownNow();
+  }
+
+  public int getPort() {
+    return httpServer.getAddress().getPort();
+  }
+
+  private class RequestHandler implements HttpHandler {
+
+    private final String uri;
+
+    private final Class requestClass;
+
+    private RequestHandler(String uri, Class requestClass) {
+      this.uri = uri;
+      this.requestClass = requestClass;
+    }
+
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        //the contexts match the uris by prefix.
+        if (!uri.equals(exchange.getRequestURI().getPath())) {
+          writeError(exchange, 404, "No request mapped to " + exchange.getRequestURI().getPath());
+          return;
+        }
+
+        writeResponse(exchange, server.handle(readRequest(exchange)));
+
+      } catch (IllegalArgumentException e) {
+        writeError(exchange, 400, String.valueOf(e.getMessage()));
+      } catch (Exception e) {
+        log.error("Failed to handle " + exchange.getRequestURI(), e);
+        writeError(exchange, 500, String.valueOf(e.getMessage()));
+      } finally {
+        exchange.close();
+      }
+    }
+
+    private Request readRequest(HttpExchange exchange) throws IOException {
+
+      if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+        return (Request) JsonUtils
+            .convertValue(readQuery(exchange.getRequestURI().getRawQuery()), requestClass);
+      }
+
+      Headers headers = exchange.getRequestHeaders();
+
+      InputStream in = exchange.getRequestBody();
+
+      String encoding = headers.getFirst("Content-Encoding");
+      if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+        in = new GZIPInputStream(in);
+      }
+
+      return (Request) codecOf(headers.getFirst("Content-Type")).read(in, requestClass);
+    }
+
+    private void writeResponse(HttpExchange exchange, Response response) throws IOException {
+
+      Headers headers = exchange.getRequestHeaders();
+      String accept = headers.getFirst("Accept");
+
+      byte[] body;
+      String contentType;
+
+      if (response instanceof GetEventsResponse && accepts(accept,
+                                                           BinaryEventCodec.MEDIA_TYPE)) {
+        body = ((GetEventsResponse) response).toBinary();
+        contentType = BinaryEventCodec.MEDIA_TYPE;
+      } else {
+        ContentCodec codec = codecOf(accept);
+        body = codec.write(response);
+        contentType = codec.getContentType();
+      }
+
+      if (body.length >= COMPRESSION_THRESHOLD && accepts(headers.getFirst("Accept-Encoding"),
+                                                          "gzip")) {
+        body = gzip(body);
+        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      }
+
+      write(exchange, 200, contentType, body);
+    }
+  }
+
+  private static void writeError(HttpExchange exchange, int status, String message)
+      throws IOException {
+    write(exchange, status, "text/plain; charset=UTF-8", message.getBytes("UTF-8"));
+  }
+
+  private static void write(HttpExchange exchange, int status, String contentType, byte[] body)
+      throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, body.length);
+
+    OutputStream out = exchange.getResponseBody();
+    out.write(body);
+    out.close();
+  }
+
+  /**
+   * Read the query string written by the QueryStringWriter, the list elements are named
+   * name[index].
+   */
+  static Map<String, Object> readQuery(String rawQuery) throws UnsupportedEncodingException {
+
+    Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+
+    if (rawQuery == null || rawQuery.length() == 0) {
+      return parameters;
+    }
+
+    for (String pair : rawQuery.split("&")) {
+
+      int equals = pair.indexOf('=');
+      String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), "UTF-8");
+      String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+
+      int bracket = name.indexOf('[');
+
+      if (bracket > 0 && name.endsWith("]")) {
+        int index = Integer.parseInt(name.substring(bracket + 1, name.length() - 1));
+        name = name.substring(0, bracket);
+
+        List<Object> list = (List<Object>) parameters.get(name);
+        if (list == null) {
+          list = new ArrayList<Object>();
+          parameters.put(name, list);
+        }
+        while (list.size() <= index) {
+          list.add(null);
+        }
+        list.set(index, value);
+      } else {
+        parameters.put(name, value);
+      }
+    }
+
+    return parameters;
+  }
+
+  private static ContentCodec codecOf(String contentType) {
+    return accepts(contentType, JacksonContentCodec.SMILE.getContentType())
+           ? JacksonContentCodec.SMILE : JacksonContentCodec.JSON;
+  }
+
+  private static boolean accepts(String header, String value) {
+    return header != null && header.contains(value);
+  }
+
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(bytes);
+    gzip.close();
+    return out.toByteArray();
+  }
+
+}
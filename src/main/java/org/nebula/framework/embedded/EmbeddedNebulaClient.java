@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded;
+
+import org.nebula.framework.client.NebulaClient;
+import org.nebula.framework.client.Request;
+
+/**
+ * Sends the requests to an {@link EmbeddedNebulaServer} in the same JVM. The requests, the
+ * responses and the events are passed by reference rather than serialized, so the load tests
+ * measure the workers without the transport; use the {@link EmbeddedHttpServer} to include it.
+ */
+public class EmbeddedNebulaClient implements NebulaClient {
+
+  private final EmbeddedNebulaServer server;
+
+  private final String user;
+
+  public EmbeddedNebulaClient(EmbeddedNebulaServer server) {
+    this(server, "embedded");
+  }
+
+  public EmbeddedNebulaClient(EmbeddedNebulaServer server, String user) {
+    if (server == null) {
+      throw new IllegalArgumentException("The server can't be null.");
+    }
+    this.server = server;
+    this.user = user;
+  }
+
+  public String getUser() {
+    return user;
+  }
+
+  public <T> T post(Request request) throws Exception {
+    return (T) server.handle(request);
+  }
+
+  public <T> T get(Request request) throws Exception {
+    return (T) server.handle(request);
+  }
+
+  public <T> T delete(Request request) throws Exception {
+    return (T) server.handle(request);
+  }
+
+}
@@ -0,0 +1,969 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nebula.framework.client.Request;
+import org.nebula.framework.client.Response;
+import org.nebula.framework.client.request.BatchPollActivityRequest;
+import org.nebula.framework.client.request.BatchPollWorkflowRequest;
+import org.nebula.framework.client.request.CancelTimerRequest;
+import org.nebula.framework.client.request.CancelWorkflowRequest;
+import org.nebula.framework.client.request.CompleteActivityRequest;
+import org.nebula.framework.client.request.CompleteDecisionRequest;
+import org.nebula.framework.client.request.CompleteWorkflowRequest;
+import org.nebula.framework.client.request.DecisionCommand;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.request.HeartbeatRequest;
+import org.nebula.framework.client.request.PollActivityRequest;
+import org.nebula.framework.client.request.PollWorkflowRequest;
+import org.nebula.framework.client.request.RecordLocalActivityRequest;
+import org.nebula.framework.client.request.RegisterRequest;
+import org.nebula.framework.client.request.ScheduleTimerRequest;
+import org.nebula.framework.client.request.SignalWorkflowRequest;
+import org.nebula.framework.client.request.StartActivityRequest;
+import org.nebula.framework.client.request.StartWorkflowRequest;
+import org.nebula.framework.client.response.BatchPollActivityResponse;
+import org.nebula.framework.client.response.BatchPollWorkflowResponse;
+import org.nebula.framework.client.response.CancelTimerResponse;
+import org.nebula.framework.client.response.CancelWorkflowResponse;
+import org.nebula.framework.client.response.CompleteActivityResponse;
+import org.nebula.framework.client.response.CompleteDecisionResponse;
+import org.nebula.framework.client.response.CompleteWorkflowResponse;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.client.response.HeartbeatResponse;
+import org.nebula.framework.client.response.PollActivityResponse;
+import org.nebula.framework.client.response.PollWorkflowResponse;
+import org.nebula.framework.client.response.RecordLocalActivityResponse;
+import org.nebula.framework.client.response.RegisterResponse;
+import org.nebula.framework.client.response.ScheduleTimerResponse;
+import org.nebula.framework.client.response.SignalWorkflowResponse;
+import org.nebula.framework.client.response.StartActivityResponse;
+import org.nebula.framework.client.response.StartWorkflowResponse;
+import org.nebula.framework.event.ActivityCompletedEvent;
+import org.nebula.framework.event.ActivityScheduledEvent;
+import org.nebula.framework.event.Event;
+import org.nebula.framework.event.LocalActivityCompletedEvent;
+import org.nebula.framework.event.TimerCancelledEvent;
+import org.nebula.framework.event.TimerCompletedEvent;
+import org.nebula.framework.event.TimerScheduledEvent;
+import org.nebula.framework.event.WorkflowCancelledEvent;
+import org.nebula.framework.event.WorkflowCompletedEvent;
+import org.nebula.framework.event.WorkflowScheduledEvent;
+import org.nebula.framework.event.WorkflowSignaledEvent;
+import org.nebula.framework.model.ActivityProfile;
+import org.nebula.framework.model.Input;
+import org.nebula.framework.model.MethodProfile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory stand-in of the Nebula server for the load and soak tests of the workers. It keeps
+ * the histories and the task queues in memory and serves the requests of the RequestMapper, either
+ * in-process through the {@link EmbeddedNebulaClient} or over http through the {@link
+ * EmbeddedHttpServer}. The requests aren't authenticated.
+ *
+ * The decision tasks are routed by the realm of the workflow and the activity tasks by the
+ * activity, the version and the realm. A workflow instance has at most one decision task
+ * outstanding, the events arriving while it runs schedule the next one once it completes. The
+ * tasks not completed within taskTimeoutMillis are delivered again, and the late completion of
+ * a timed out decision task is ignored.
+ */
+public class EmbeddedNebulaServer {
+
+  private final static Log log = LogFactory.getLog(EmbeddedNebulaServer.class);
+
+  private final AtomicInteger eventIds = new AtomicInteger();
+
+  private final AtomicLong instanceIds = new AtomicLong();
+
+  private final AtomicLong registrationIds = new AtomicLong();
+
+  private final AtomicLong taskIds = new AtomicLong();
+
+  private final AtomicLong completedWorkflows = new AtomicLong();
+
+  private final ConcurrentMap<String, Execution> executions =
+      new ConcurrentHashMap<String, Execution>();
+
+  //the registrationId of the workflow node by realm.
+  private final ConcurrentMap<String, String> workflowRegistrations =
+      new ConcurrentHashMap<String, String>();
+
+  private final TaskQueues<Execution> decisionTasks = new TaskQueues<Execution>();
+
+  private final TaskQueues<ActivityTask> activityTasks = new TaskQueues<ActivityTask>();
+
+  //the delivered tasks by realmActId until they are completed or time out.
+  private final ConcurrentMap<String, Execution> runningDecisions =
+      new ConcurrentHashMap<String, Execution>();
+
+  private final ConcurrentMap<String, ActivityTask> runningActivities =
+      new ConcurrentHashMap<String, ActivityTask>();
+
+  //0 means the tasks are never delivered again.
+  private long taskTimeoutMillis = 60000;
+
+  //false drops the history of a workflow once it completes, e.g. for the soak tests.
+  private boolean retainCompletedHistories = true;
+
+  private volatile ScheduledExecutorService scheduler;
+
+  public synchronized void start() {
+
+    if (scheduler != null) {
+      log.warn("The embedded server already started.");
+      return;
+    }
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "nebula-embedded-scheduler");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    if (taskTimeoutMillis > 0) {
+      long period = Math.min(taskTimeoutMillis, 1000);
+      scheduler.scheduleWithFixedDelay(new Runnable() {
+        public void run() {
+          redeliverTimedOutTasks();
+        }
+      }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    log.info("The embedded server started.");
+  }
+
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+      log.info("The embedded server stopped.");
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException if the request is not supported or invalid, e.g. of an
+   *                                  unknown instanceId.
+   * @throws IllegalStateException    if the server isn't started.
+   */
+  public Response handle(Request request) {
+
+    if (request == null) {
+      throw new IllegalArgumentException("The request can't be null.");
+    }
+
+    if (scheduler == null) {
+      throw new IllegalStateException("The embedded server isn't started.");
+    }
+
+    try {
+      //the batch polls first since they extend the polls.
+      if (request instanceof BatchPollWorkflowRequest) {
+        return batchPollWorkflow((BatchPollWorkflowRequest) request);
+      } else if (request instanceof PollWorkflowRequest) {
+        return pollWorkflow((PollWorkflowRequest) request);
+      } else if (request instanceof BatchPollActivityRequest) {
+        return batchPollActivity((BatchPollActivityRequest) request);
+      } else if (request instanceof PollActivityRequest) {
+        return pollActivity((PollActivityRequest) request);
+      } else if (request instanceof GetEventsRequest) {
+        return getEvents((GetEventsRequest) request);
+      } else if (request instanceof StartActivityRequest) {
+        return startActivity((StartActivityRequest) request);
+      } else if (request instanceof CompleteActivityRequest) {
+        return completeActivity((CompleteActivityRequest) request);
+      } else if (request instanceof RecordLocalActivityRequest) {
+        return recordLocalActivity((RecordLocalActivityRequest) request);
+      } else if (request instanceof CompleteDecisionRequest) {
+        return completeDecision((CompleteDecisionRequest) request);
+      } else if (request instanceof ScheduleTimerRequest) {
+        return scheduleTimer((ScheduleTimerRequest) request);
+      } else if (request instanceof CancelTimerRequest) {
+        return cancelTimer((CancelTimerRequest) request);
+      } else if (request instanceof StartWorkflowRequest) {
+        return startWorkflow((StartWorkflowRequest) request);
+      } else if (request instanceof CompleteWorkflowRequest) {
+        return completeWorkflow((CompleteWorkflowRequest) request);
+      } else if (request instanceof SignalWorkflowRequest) {
+        return signalWorkflow((SignalWorkflowRequest) request);
+      } else if (request instanceof CancelWorkflowRequest) {
+        return cancelWorkflow((CancelWorkflowRequest) request);
+      } else if (request instanceof RegisterRequest) {
+        return register((RegisterRequest) request);
+      } else if (request instanceof HeartbeatRequest) {
+        return heartbeat((HeartbeatRequest) request);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while handling " + request, e);
+    }
+
+    throw new IllegalArgumentException(
+        "The request " + request.getClass().getName() + " is not supported.");
+  }
+
+  /**
+   * @return the number of the workflows completed since the server started.
+   */
+  public long getCompletedWorkflows() {
+    return completedWorkflows.get();
+  }
+
+  /**
+   * @return the number of the started workflows not completed yet.
+   */
+  public long getRunningWorkflows() {
+    return instanceIds.get() - completedWorkflows.get();
+  }
+
+  /**
+   * @return the number of the decision and activity tasks waiting for the pollers.
+   */
+  public int getQueuedTasks() {
+    return decisionTasks.size() + activityTasks.size();
+  }
+
+  /**
+   * @return a copy of the history of the workflow, null if it is unknown or dropped.
+   */
+  public List<Event> getHistory(String instanceId) {
+    Execution execution = executions.get(instanceId);
+    if (execution == null) {
+      return null;
+    }
+    synchronized (execution) {
+      return new ArrayList<Event>(execution.events);
+    }
+  }
+
+  public long getTaskTimeoutMillis() {
+    return taskTimeoutMillis;
+  }
+
+  public void setTaskTimeoutMillis(long taskTimeoutMillis) {
+    if (taskTimeoutMillis < 0) {
+      throw new IllegalArgumentException("The taskTimeoutMillis can't be negative.");
+    }
+    this.taskTimeoutMillis = taskTimeoutMillis;
+  }
+
+  public boolean isRetainCompletedHistories() {
+    return retainCompletedHistories;
+  }
+
+  public void setRetainCompletedHistories(boolean retainCompletedHistories) {
+    this.retainCompletedHistories = retainCompletedHistories;
+  }
+
+  private RegisterResponse register(RegisterRequest request) {
+
+    String registrationId = "embedded-" + registrationIds.incrementAndGet();
+
+    RegisterRequest.RegistrationInfo info = request.getRegistrationInfo();
+
+    if (request.getNodeType() == RegisterRequest.NodeType.WORKFLOW && info != null
+        && info.getRealms() != null) {
+      for (String realm : info.getRealms()) {
+        workflowRegistrations.put(realm, registrationId);
+      }
+    }
+
+    log.debug("Registered " + request.getNodeType() + " " + request.getName() + ":"
+              + request.getVersion() + " as " + registrationId);
+
+    RegisterResponse response = new RegisterResponse();
+    response.setRegistrationId(registrationId);
+    return response;
+  }
+
+  private HeartbeatResponse heartbeat(HeartbeatRequest request) {
+    HeartbeatResponse response = new HeartbeatResponse();
+    response.setRegistrationId(request.getRegistrationId());
+    response.setOldStatus(HeartbeatResponse.Status.RUNNING);
+    response.setNewStatus(HeartbeatResponse.Status.RUNNING);
+    return response;
+  }
+
+  private StartWorkflowResponse startWorkflow(StartWorkflowRequest request) {
+
+    String realm = firstRealm(request.getRealms());
+
+    String registrationId = workflowRegistrations.get(realm);
+
+    Execution execution = new Execution(String.valueOf(instanceIds.incrementAndGet()), realm,
+                                        registrationId != null ? registrationId
+                                                               : request.getRegistrationId());
+
+    WorkflowScheduledEvent event = new WorkflowScheduledEvent(0, -1);
+    event.setWorkflowProfile(request.getWorkflowProfile());
+    event.setInput(request.getInput());
+    event.setRealms(request.getRealms());
+    event.setStartProfile(request.getStartProfile());
+    event.setStartMode(request.getStartMode());
+
+    synchronized (execution) {
+      executions.put(execution.instanceId, execution);
+      append(execution, event);
+      scheduleDecision(execution);
+    }
+
+    StartWorkflowResponse response = new StartWorkflowResponse();
+    response.setInstanceId(execution.instanceId);
+    return response;
+  }
+
+  private SignalWorkflowResponse signalWorkflow(SignalWorkflowRequest request) {
+
+    Execution execution = getExecution(request.getInstanceId());
+
+    WorkflowSignaledEvent event = new WorkflowSignaledEvent(0, -1);
+    event.setInput(request.getInput());
+    event.setRealms(request.getRealms());
+    event.setSignalProfile(request.getSignalProfile());
+
+    synchronized (execution) {
+      if (execution.closed) {
+        throw new IllegalArgumentException(
+            "The workflow " + execution.instanceId + " is already completed.");
+      }
+      append(execution, event);
+      scheduleDecision(execution);
+    }
+
+    SignalWorkflowResponse response = new SignalWorkflowResponse();
+    response.setInstanceId(execution.instanceId);
+    return response;
+  }
+
+  private CancelWorkflowResponse cancelWorkflow(CancelWorkflowRequest request) {
+
+    Execution execution = getExecution(request.getInstanceId());
+
+    synchronized (execution) {
+      //the next decision sees the cancellation and completes the workflow.
+      if (!execution.closed) {
+        append(execution, new WorkflowCancelledEvent(0, -1));
+        scheduleDecision(execution);
+      }
+    }
+
+    CancelWorkflowResponse response = new CancelWorkflowResponse();
+    response.setInstanceId(execution.instanceId);
+    return response;
+  }
+
+  private PollWorkflowResponse pollWorkflow(PollWorkflowRequest request)
+      throws InterruptedException {
+
+    List<PollWorkflowResponse> tasks = pollDecisions(request, 1);
+
+    if (tasks.isEmpty()) {
+      PollWorkflowResponse response = new PollWorkflowResponse();
+      response.setStatus(Response.Status.POLL_TIMEOUT);
+      return response;
+    }
+
+    return tasks.get(0);
+  }
+
+  private BatchPollWorkflowResponse batchPollWorkflow(BatchPollWorkflowRequest request)
+      throws InterruptedException {
+
+    BatchPollWorkflowResponse response = new BatchPollWorkflowResponse();
+    response.setTasks(pollDecisions(request, request.getMaxTasks()));
+    response.setStatus(
+        response.getTasks().isEmpty() ? Response.Status.POLL_TIMEOUT : Response.Status.SUCCESS);
+    return response;
+  }
+
+  private List<PollWorkflowResponse> pollDecisions(PollWorkflowRequest request, int maxTasks)
+      throws InterruptedException {
+
+    List<Execution> polled = decisionTasks.poll(validateRealms(request.getRealms()),
+                                                Math.max(1, maxTasks), waitMillis(request));
+
+    List<PollWorkflowResponse> tasks = new ArrayList<PollWorkflowResponse>(polled.size());
+
+    for (Execution execution : polled) {
+      synchronized (execution) {
+        execution.decisionQueued = false;
+
+        //e.g. a timed out decision completed the workflow after the task was delivered again.
+        if (execution.closed) {
+          continue;
+        }
+
+        String taskId = nextTaskId();
+        execution.decisionTaskId = taskId;
+        execution.decisionDeliveredTime = System.currentTimeMillis();
+        runningDecisions.put(taskId, execution);
+
+        PollWorkflowResponse response = new PollWorkflowResponse();
+        response.setRegistrationId(execution.registrationId);
+        response.setInstanceId(execution.instanceId);
+        response.setRealm(execution.realm);
+        response.setRealmActId(taskId);
+        response.setStatus(Response.Status.SUCCESS);
+        tasks.add(response);
+      }
+    }
+
+    return tasks;
+  }
+
+  private GetEventsResponse getEvents(GetEventsRequest request) {
+
+    Execution execution = getExecution(request.getInstanceId());
+
+    GetEventsResponse response = new GetEventsResponse();
+
+    synchronized (execution) {
+      int total = execution.events.size();
+      int pageSize = request.getPageSize() > 0 ? request.getPageSize() : Math.max(1, total);
+      int pageNo = Math.max(1, request.getPageNo());
+
+      int from = (int) Math.min(total, (long) (pageNo - 1) * pageSize);
+      int to = (int) Math.min(total, (long) from + pageSize);
+
+      response.setEvents(new ArrayList<Event>(execution.events.subList(from, to)));
+      response.setPageNo(pageNo);
+      response.setSize(to - from);
+      response.setTotal(total);
+    }
+
+    return response;
+  }
+
+  private CompleteDecisionResponse completeDecision(CompleteDecisionRequest request) {
+
+    Execution execution = getExecution(request.getInstanceId());
+
+    List<Integer> eventIds = new ArrayList<Integer>();
+
+    synchronized (execution) {
+
+      //the late completion of a timed out delivery is ignored, its commands are decided again.
+      if (!isRunningDecision(execution, request.getRealmActId())) {
+        CompleteDecisionResponse response = new CompleteDecisionResponse();
+        response.setInstanceId(execution.instanceId);
+        response.setEventIds(eventIds);
+        return response;
+      }
+
+      if (request.getCommands() != null) {
+
+        int precedingId = DecisionCommand.PRECEDING_COMMAND;
+
+        for (DecisionCommand command : request.getCommands()) {
+          if (command.getCommandType() == DecisionCommand.CommandType.StartActivity) {
+            StartActivityRequest startActivity = command.getStartActivity();
+            precedingId = startActivity(execution, startActivity,
+                                        resolvePrecedingId(startActivity.getEventId(),
+                                                           precedingId));
+          } else if (command.getCommandType()
+                     == DecisionCommand.CommandType.RecordLocalActivity) {
+            RecordLocalActivityRequest recordLocalActivity = command.getRecordLocalActivity();
+            precedingId = recordLocalActivity(execution, recordLocalActivity,
+                                              resolvePrecedingId(recordLocalActivity.getEventId(),
+                                                                 precedingId));
+          } else {
+            precedingId = cancelTimer(execution, command.getCancelTimer().getTimerId());
+          }
+          eventIds.add(precedingId);
+        }
+      }
+
+      endDecision(execution, request.getRealmActId());
+    }
+
+    CompleteDecisionResponse response = new CompleteDecisionResponse();
+    response.setInstanceId(execution.instanceId);
+    response.setEventIds(eventIds);
+    return response;
+  }
+
+  private static int resolvePrecedingId(int eventId, int precedingId) {
+    if (eventId == DecisionCommand.PRECEDING_COMMAND) {
+      if (precedingId == DecisionCommand.PRECEDING_COMMAND) {
+        throw new IllegalArgumentException(
+            "The first command can't refer to the preceding command.");
+      }
+      return precedingId;
+    }
+    return eventId;
+  }
+
+  private CompleteWorkflowResponse completeWorkflow(CompleteWorkflowRequest request) {
+
+    Execution execution = getExecution(request.getInstanceId());
+
+    boolean completed = false;
+
+    synchronized (execution) {
+      if (!execution.closed && isRunningDecision(execution, request.getRealmActId())) {
+        append(execution, new WorkflowCompletedEvent(0, request.getEventId()));
+
+        //closed first, so the events arrived meanwhile don't schedule another decision.
+        execution.closed = true;
+
+        endDecision(execution, request.getRealmActId());
+
+        for (ScheduledFuture timer : execution.timers.values()) {
+          timer.cancel(false);
+        }
+        execution.timers.clear();
+
+        completed = true;
+      }
+    }
+
+    if (completed) {
+      completedWorkflows.incrementAndGet();
+
+      if (!retainCompletedHistories) {
+        executions.remove(execution.instanceId);
+      }
+    }
+
+    CompleteWorkflowResponse response = new CompleteWorkflowResponse();
+    response.setInstanceId(execution.instanceId);
+    return response;
+  }
+
+  private StartActivityResponse startActivity(StartActivityRequest request) {
+
+    Execution execution = getExecution(request.getInstanceId());
+
+    StartActivityResponse response = new StartActivityResponse();
+
+    synchronized (execution) {
+      response.setEventId(startActivity(execution, request, request.getEventId()));
+    }
+
+    return response;
+  }
+
+  private RecordLocalActivityResponse recordLocalActivity(RecordLocalActivityRequest request) {
+
+    Execution execution = getExecution(request.getInstanceId());
+
+    RecordLocalActivityResponse response = new RecordLocalActivityResponse();
+
+    synchronized (execution) {
+      response.setEventId(recordLocalActivity(execution, request, request.getEventId()));
+    }
+
+    return response;
+  }
+
+  private PollActivityResponse pollActivity(PollActivityRequest request)
+      throws InterruptedException {
+
+    List<PollActivityResponse> tasks = pollActivities(request, 1);
+
+    if (tasks.isEmpty()) {
+      PollActivityResponse response = new PollActivityResponse();
+      response.setStatus(Response.Status.POLL_TIMEOUT);
+      return response;
+    }
+
+    return tasks.get(0);
+  }
+
+  private BatchPollActivityResponse batchPollActivity(BatchPollActivityRequest request)
+      throws InterruptedException {
+
+    BatchPollActivityResponse response = new BatchPollActivityResponse();
+    response.setTasks(pollActivities(request, request.getMaxTasks()));
+    response.setStatus(
+        response.getTasks().isEmpty() ? Response.Status.POLL_TIMEOUT : Response.Status.SUCCESS);
+    return response;
+  }
+
+  private List<PollActivityResponse> pollActivities(PollActivityRequest request, int maxTasks)
+      throws InterruptedException {
+
+    List<String> keys = new ArrayList<String>();
+    for (String realm : validateRealms(request.getRealms())) {
+      keys.add(activityKey(request.getActivity(), request.getVersion(), realm));
+    }
+
+    List<ActivityTask> polled = activityTasks.poll(keys, Math.max(1, maxTasks),
+                                                   waitMillis(request));
+
+    List<PollActivityResponse> tasks = new ArrayList<PollActivityResponse>(polled.size());
+
+    for (ActivityTask task : polled) {
+      String taskId = nextTaskId();
+      task.deliveredTime = System.currentTimeMillis();
+      runningActivities.put(taskId, task);
+      tasks.add(task.toResponse(taskId));
+    }
+
+    return tasks;
+  }
+
+  private CompleteActivityResponse completeActivity(CompleteActivityRequest request) {
+
+    CompleteActivityResponse response = new CompleteActivityResponse();
+    response.setInstanceId(request.getInstanceId());
+
+    if (runningActivities.remove(request.getRealmActId()) == null) {
+      log.warn("The activity task " + request.getRealmActId() + " of instanceId "
+               + request.getInstanceId() + " isn't running, e.g. it timed out.");
+      return response;
+    }
+
+    Execution execution = executions.get(request.getInstanceId());
+
+    if (execution == null) {
+      return response;
+    }
+
+    ActivityCompletedEvent event = new ActivityCompletedEvent(0, request.getEventId());
+    event.setActivityProfile(request.getActivityProfile());
+    event.setMethodProfile(request.getMethodProfile());
+    event.setInput(request.getInput());
+
+    synchronized (execution) {
+      if (!execution.closed) {
+        append(execution, event);
+        scheduleDecision(execution);
+      }
+    }
+
+    return response;
+  }
+
+  private ScheduleTimerResponse scheduleTimer(ScheduleTimerRequest request) {
+
+    final Execution execution = getExecution(request.getInstanceId());
+
+    TimerScheduledEvent event = new TimerScheduledEvent(0, request.getEventId());
+    event.setName(request.getName());
+    event.setPeriod(request.getPeriod());
+    event.setRealms(request.getRealms());
+
+    synchronized (execution) {
+      append(execution, event);
+
+      final int timerId = event.getEventId();
+
+      execution.timers.put(timerId, scheduler.schedule(new Runnable() {
+        public void run() {
+          fireTimer(execution, timerId);
+        }
+      }, request.getPeriod(), TimeUnit.SECONDS));
+    }
+
+    ScheduleTimerResponse response = new ScheduleTimerResponse();
+    response.setEventId(event.getEventId());
+    return response;
+  }
+
+  private CancelTimerResponse cancelTimer(CancelTimerRequest request) {
+
+    Execution execution = getExecution(request.getInstanceId());
+
+    CancelTimerResponse response = new CancelTimerResponse();
+    response.setInstanceId(execution.instanceId);
+
+    synchronized (execution) {
+      response.setEventId(cancelTimer(execution, request.getTimerId()));
+    }
+
+    return response;
+  }
+
+  private void fireTimer(Execution execution, int timerId) {
+    synchronized (execution) {
+      if (execution.timers.remove(timerId) != null && !execution.closed) {
+        append(execution, new TimerCompletedEvent(0, timerId));
+        scheduleDecision(execution);
+      }
+    }
+  }
+
+  //the callers hold the lock of the execution.
+  private int startActivity(Execution execution, StartActivityRequest request, int precedingId) {
+
+    ActivityScheduledEvent event = new ActivityScheduledEvent(0, precedingId);
+    event.setActivityProfile(request.getActivityProfile());
+    event.setMethodProfile(request.getMethodProfile());
+    event.setInput(request.getInput());
+
+    append(execution, event);
+
+    String realm = request.getRealms() == null || request.getRealms().isEmpty()
+                   ? execution.realm : request.getRealms().get(0);
+
+    ActivityProfile profile = request.getActivityProfile();
+
+    ActivityTask task = new ActivityTask(execution, profile, request.getMethodProfile(),
+                                         request.getInput(), realm, event);
+
+    activityTasks.offer(activityKey(profile.getActivity(), profile.getVersion(), realm), task);
+
+    return event.getEventId();
+  }
+
+  //the callers hold the lock of the execution. The marker is recorded within the decision, so no
+  //decision is scheduled for it.
+  private int recordLocalActivity(Execution execution, RecordLocalActivityRequest request,
+                                  int precedingId) {
+
+    LocalActivityCompletedEvent event = new LocalActivityCompletedEvent(0, precedingId);
+    event.setActivityProfile(request.getActivityProfile());
+    event.setMethodProfile(request.getMethodProfile());
+    event.setInput(request.getInput());
+
+    append(execution, event);
+
+    return event.getEventId();
+  }
+
+  private int cancelTimer(Execution execution, int timerId) {
+
+    ScheduledFuture timer = execution.timers.remove(timerId);
+    if (timer != null) {
+      timer.cancel(false);
+    }
+
+    TimerCancelledEvent event = new TimerCancelledEvent(0, timerId);
+    append(execution, event);
+
+    return event.getEventId();
+  }
+
+  private void append(Execution execution, Event event) {
+    //the ids are taken under the lock of the execution, so they increase along the history.
+    event.setEventId(eventIds.incrementAndGet());
+    event.setTimestamp(System.currentTimeMillis());
+    event.setInstanceId(execution.instanceId);
+    event.setRegistrationId(execution.registrationId);
+
+    execution.events.add(event);
+  }
+
+  private void scheduleDecision(Execution execution) {
+
+    if (execution.closed) {
+      return;
+    }
+
+    if (execution.decisionTaskId != null) {
+      execution.decisionPending = true;
+    } else if (!execution.decisionQueued) {
+      execution.decisionQueued = true;
+      decisionTasks.offer(execution.realm, execution);
+    }
+  }
+
+  //the callers hold the lock of the execution.
+  private boolean isRunningDecision(Execution execution, String realmActId) {
+
+    if (realmActId == null || !realmActId.equals(execution.decisionTaskId)) {
+      log.warn("The decision task " + realmActId + " of instanceId " + execution.instanceId
+               + " isn't running, e.g. it timed out.");
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * End the running decision and schedule the next one if events arrived meanwhile.
+   */
+  private void endDecision(Execution execution, String realmActId) {
+
+    runningDecisions.remove(realmActId);
+    execution.decisionTaskId = null;
+
+    if (execution.decisionPending) {
+      execution.decisionPending = false;
+      scheduleDecision(execution);
+    }
+  }
+
+  private void redeliverTimedOutTasks() {
+
+    long timedOut = System.currentTimeMillis() - taskTimeoutMillis;
+
+    for (Map.Entry<String, Execution> entry : runningDecisions.entrySet()) {
+      Execution execution = entry.getValue();
+      synchronized (execution) {
+        if (entry.getKey().equals(execution.decisionTaskId)
+            && execution.decisionDeliveredTime < timedOut) {
+          log.warn("The decision task " + entry.getKey() + " of instanceId "
+                   + execution.instanceId + " timed out.");
+          runningDecisions.remove(entry.getKey());
+          execution.decisionTaskId = null;
+          execution.decisionPending = false;
+          scheduleDecision(execution);
+        }
+      }
+    }
+
+    for (Map.Entry<String, ActivityTask> entry : runningActivities.entrySet()) {
+      ActivityTask task = entry.getValue();
+      if (task.deliveredTime < timedOut && runningActivities.remove(entry.getKey(), task)) {
+        log.warn("The activity task " + entry.getKey() + " of instanceId " + task.instanceId
+                 + " timed out.");
+        activityTasks.offer(task.key, task);
+      }
+    }
+  }
+
+  private Execution getExecution(String instanceId) {
+    Execution execution = instanceId == null ? null : executions.get(instanceId);
+    if (execution == null) {
+      throw new IllegalArgumentException("Unknown instanceId " + instanceId);
+    }
+    return execution;
+  }
+
+  private String nextTaskId() {
+    return String.valueOf(taskIds.incrementAndGet());
+  }
+
+  private static long waitMillis(PollWorkflowRequest request) {
+    return request.getWaitSecs() * 1000L;
+  }
+
+  private static long waitMillis(PollActivityRequest request) {
+    return request.getWaitSecs() * 1000L;
+  }
+
+  private static List<String> validateRealms(List<String> realms) {
+    if (realms == null || realms.isEmpty()) {
+      throw new IllegalArgumentException("The realms can't be empty.");
+    }
+    return realms;
+  }
+
+  private static String firstRealm(List<String> realms) {
+    return validateRealms(realms).get(0);
+  }
+
+  private static String activityKey(String activity, String version, String realm) {
+    return activity + ":" + version + "@" + realm;
+  }
+
+  /**
+   * The state of a workflow instance, guarded by its own lock.
+   */
+  private static class Execution {
+
+    private final String instanceId;
+
+    private final String realm;
+
+    private final String registrationId;
+
+    private final List<Event> events = new ArrayList<Event>();
+
+    //the scheduled timers by timerId.
+    private final Map<Integer, ScheduledFuture> timers = new HashMap<Integer, ScheduledFuture>();
+
+    private boolean decisionQueued;
+
+    //the realmActId of the running decision task, null if none is running.
+    private String decisionTaskId;
+
+    private long decisionDeliveredTime;
+
+    //true if events arrived while the decision task runs.
+    private boolean decisionPending;
+
+    private boolean closed;
+
+    private Execution(String instanceId, String realm, String registrationId) {
+      this.instanceId = instanceId;
+      this.realm = realm;
+      this.registrationId = registrationId;
+    }
+  }
+
+  private static class ActivityTask {
+
+    private final String instanceId;
+
+    private final String registrationId;
+
+    private final ActivityProfile activityProfile;
+
+    private final MethodProfile methodProfile;
+
+    private final Input input;
+
+    private final String realm;
+
+    private final String key;
+
+    private final int eventId;
+
+    private final long scheduledTime;
+
+    private volatile long deliveredTime;
+
+    private ActivityTask(Execution execution, ActivityProfile activityProfile,
+                         MethodProfile methodProfile, Input input, String realm,
+                         ActivityScheduledEvent event) {
+      this.instanceId = execution.instanceId;
+      this.registrationId = execution.registrationId;
+      this.activityProfile = activityProfile;
+      this.methodProfile = methodProfile;
+      this.input = input;
+      this.realm = realm;
+      this.key = activityKey(activityProfile.getActivity(), activityProfile.getVersion(), realm);
+      this.eventId = event.getEventId();
+      this.scheduledTime = event.getTimestamp();
+    }
+
+    private PollActivityResponse toResponse(String taskId) {
+      PollActivityResponse response = new PollActivityResponse();
+      response.setRegistrationId(registrationId);
+      response.setInstanceId(instanceId);
+      response.setActivityProfile(activityProfile);
+      response.setMethodProfile(methodProfile);
+      response.setInput(input);
+      response.setRealm(realm);
+      response.setRealmActId(taskId);
+      response.setEventId(eventId);
+      response.setScheduledTime(scheduledTime);
+      response.setStatus(Response.Status.SUCCESS);
+      return response;
+    }
+  }
+
+}
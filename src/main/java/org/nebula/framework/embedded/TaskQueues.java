@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queues of the tasks by their routing key, e.g. the realm of the decision tasks. A poll takes
+ * the tasks of several keys and waits for the first one if the queues are empty.
+ */
+class TaskQueues<T> {
+
+  //the slice a poll of several keys waits on one queue before it checks the others.
+  private final static long MULTI_KEY_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+  private final ConcurrentMap<String, BlockingQueue<T>> queues =
+      new ConcurrentHashMap<String, BlockingQueue<T>>();
+
+  public void offer(String key, T task) {
+    getQueue(key).offer(task);
+  }
+
+  /**
+   * @return at most maxTasks tasks, empty if none arrived within waitMillis.
+   */
+  public List<T> poll(List<String> keys, int maxTasks, long waitMillis)
+      throws InterruptedException {
+
+    List<T> tasks = new ArrayList<T>(Math.min(maxTasks, 16));
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+
+    while (true) {
+
+      for (String key : keys) {
+        getQueue(key).drainTo(tasks, maxTasks - tasks.size());
+        if (tasks.size() >= maxTasks) {
+          return tasks;
+        }
+      }
+
+      long remaining = deadline - System.nanoTime();
+
+      if (!tasks.isEmpty() || remaining <= 0) {
+        return tasks;
+      }
+
+      long wait = keys.size() == 1 ? remaining : Math.min(remaining, MULTI_KEY_WAIT_NANOS);
+
+      T task = getQueue(keys.get(0)).poll(wait, TimeUnit.NANOSECONDS);
+      if (task != null) {
+        tasks.add(task);
+      }
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (BlockingQueue<T> queue : queues.values()) {
+      size += queue.size();
+    }
+    return size;
+  }
+
+  private BlockingQueue<T> getQueue(String key) {
+    BlockingQueue<T> queue = queues.get(key);
+    if (queue == null) {
+      BlockingQueue<T> created = new LinkedBlockingQueue<T>();
+      queue = queues.putIfAbsent(key, created);
+      if (queue == null) {
+        queue = created;
+      }
+    }
+    return queue;
+  }
+
+}
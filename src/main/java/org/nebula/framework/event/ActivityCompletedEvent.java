@@ -31,7 +31,11 @@ public class ActivityCompletedEvent extends Event {
   }
 
   public ActivityCompletedEvent(int eventId, int precedingId) {
-    super(EVENT_TYPE.ActivityCompletedEvent, eventId, precedingId);
+    this(EVENT_TYPE.ActivityCompletedEvent, eventId, precedingId);
+  }
+
+  protected ActivityCompletedEvent(EVENT_TYPE eventType, int eventId, int precedingId) {
+    super(eventType, eventId, precedingId);
   }
 
   public ActivityProfile getActivityProfile() {
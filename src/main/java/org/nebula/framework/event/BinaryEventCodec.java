@@ -0,0 +1,592 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.event;
+
+import org.nebula.framework.client.request.StartWorkflowRequest.StartMode;
+import org.nebula.framework.core.Codec;
+import org.nebula.framework.model.ActivityProfile;
+import org.nebula.framework.model.Input;
+import org.nebula.framework.model.MethodProfile;
+import org.nebula.framework.model.WorkflowProfile;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.nebula.framework.event.Event.EVENT_TYPE;
+
+/**
+ * A compact binary encoding of the events, in place of the json which repeats the class name and
+ * the ids of the instance in every event.
+ *
+ * <ul>
+ * <li>an event starts with the ordinal of its {@link EVENT_TYPE} as the type tag;</li>
+ * <li>the ints are zigzag varints, the timestamp is the delta from the previous event;</li>
+ * <li>the ids, names and types are written once per encoded page and then referred by index;</li>
+ * <li>the inputs are written as they are, they are rarely repeated.</li>
+ * </ul>
+ */
+public class BinaryEventCodec implements Codec<Event> {
+
+  public final static String MEDIA_TYPE = "application/x-nebula-events";
+
+  private final static int VERSION = 1;
+
+  private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final static EVENT_TYPE[] EVENT_TYPES = EVENT_TYPE.values();
+
+  private final static StartMode[] START_MODES = StartMode.values();
+
+  public byte[] encode(Event event) {
+    return encodeAll(Collections.singletonList(event));
+  }
+
+  public Event decode(byte[] bytes) {
+    List<Event> events = decodeAll(bytes);
+    if (events.size() != 1) {
+      throw new IllegalArgumentException("Expected one event but " + events.size());
+    }
+    return events.get(0);
+  }
+
+  public byte[] encodeAll(List<Event> events) {
+    EventWriter writer = new EventWriter();
+    writer.writeEvents(events);
+    return writer.toByteArray();
+  }
+
+  public List<Event> decodeAll(byte[] bytes) {
+    return new EventReader(bytes).readEvents();
+  }
+
+  /**
+   * Writes the events and the varints around them into one page with its own string table.
+   */
+  public static class EventWriter {
+
+    private byte[] buffer = new byte[256];
+
+    private int count = 0;
+
+    private Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    private long timestamp = 0;
+
+    public EventWriter() {
+      writeByte(VERSION);
+    }
+
+    public void writeInt(int value) {
+      writeVarint((value << 1) ^ (value >> 31));
+    }
+
+    public void writeLong(long value) {
+      long zigzag = (value << 1) ^ (value >> 63);
+      while ((zigzag & ~0x7FL) != 0) {
+        writeByte((int) ((zigzag & 0x7F) | 0x80));
+        zigzag >>>= 7;
+      }
+      writeByte((int) zigzag);
+    }
+
+    public void writeEvents(List<Event> events) {
+      if (events == null) {
+        writeInt(-1);
+        return;
+      }
+
+      writeInt(events.size());
+      for (Event event : events) {
+        writeEvent(event);
+      }
+    }
+
+    public byte[] toByteArray() {
+      return Arrays.copyOf(buffer, count);
+    }
+
+    private void writeEvent(Event event) {
+      if (event == null || event.getEventType() == null) {
+        throw new IllegalArgumentException("The event and its eventType can't be null.");
+      }
+
+      writeByte(event.getEventType().ordinal());
+      writeInt(event.getEventId());
+      writeInt(event.getPrecedingId());
+      writeLong(event.getTimestamp() - timestamp);
+      timestamp = event.getTimestamp();
+      writeString(event.getInstanceId());
+      writeString(event.getRegistrationId());
+
+      switch (event.getEventType()) {
+        case ActivityScheduledEvent:
+          ActivityScheduledEvent scheduled = (ActivityScheduledEvent) event;
+          writeActivityProfile(scheduled.getActivityProfile());
+          writeMethodProfile(scheduled.getMethodProfile());
+          writeInput(scheduled.getInput());
+          break;
+        case ActivityStartedEvent:
+          writeActivityProfile(((ActivityStartedEvent) event).getActivityProfile());
+          break;
+        case ActivityCompletedEvent:
+        case LocalActivityCompletedEvent:
+          ActivityCompletedEvent completed = (ActivityCompletedEvent) event;
+          writeActivityProfile(completed.getActivityProfile());
+          writeMethodProfile(completed.getMethodProfile());
+          writeInput(completed.getInput());
+          break;
+        case TimerScheduledEvent:
+          TimerScheduledEvent timer = (TimerScheduledEvent) event;
+          writeString(timer.getName());
+          writeInt(timer.getPeriod());
+          writeStrings(timer.getRealms());
+          break;
+        case WorkflowScheduledEvent:
+          WorkflowScheduledEvent workflow = (WorkflowScheduledEvent) event;
+          writeWorkflowProfile(workflow.getWorkflowProfile());
+          writeInput(workflow.getInput());
+          writeStrings(workflow.getRealms());
+          writeMethodProfile(workflow.getStartProfile());
+          writeInt(workflow.getStartMode() == null ? -1 : workflow.getStartMode().ordinal());
+          break;
+        case WorkflowSignaledEvent:
+          WorkflowSignaledEvent signaled = (WorkflowSignaledEvent) event;
+          writeInput(signaled.getInput());
+          writeStrings(signaled.getRealms());
+          writeMethodProfile(signaled.getSignalProfile());
+          break;
+        default:
+          //the other events have no fields of their own.
+      }
+    }
+
+    private void writeActivityProfile(ActivityProfile profile) {
+      if (writeNull(profile)) {
+        return;
+      }
+      writeString(profile.getActivity());
+      writeString(profile.getVersion());
+    }
+
+    private void writeMethodProfile(MethodProfile profile) {
+      if (writeNull(profile)) {
+        return;
+      }
+      writeString(profile.getName());
+      writeStrings(profile.getParameterTypes());
+      writeString(profile.getReturnType());
+    }
+
+    private void writeWorkflowProfile(WorkflowProfile profile) {
+      if (writeNull(profile)) {
+        return;
+      }
+      writeString(profile.getName());
+      writeString(profile.getVersion());
+      writeByte(profile.isSerial() ? 1 : 0);
+      writeString(profile.getCronExpression());
+    }
+
+    private void writeInput(Input input) {
+      if (writeNull(input)) {
+        return;
+      }
+
+      String[] inputs = input.getInputs();
+      if (inputs == null) {
+        writeInt(-1);
+        return;
+      }
+
+      writeInt(inputs.length);
+      for (String s : inputs) {
+        writeLiteral(s);
+      }
+    }
+
+    private boolean writeNull(Object object) {
+      writeByte(object == null ? 0 : 1);
+      return object == null;
+    }
+
+    private void writeStrings(List<String> list) {
+      if (list == null) {
+        writeInt(-1);
+        return;
+      }
+
+      writeInt(list.size());
+      for (String s : list) {
+        writeString(s);
+      }
+    }
+
+    //0 is null, 1 is a new string of the table followed by its bytes, n is the string n - 2.
+    private void writeString(String s) {
+      if (s == null) {
+        writeVarint(0);
+        return;
+      }
+
+      Integer index = strings.get(s);
+      if (index != null) {
+        writeVarint(index + 2);
+        return;
+      }
+
+      strings.put(s, strings.size());
+      writeVarint(1);
+      writeBytes(s.getBytes(UTF_8));
+    }
+
+    //0 is null, n is a string of n - 1 bytes.
+    private void writeLiteral(String s) {
+      if (s == null) {
+        writeVarint(0);
+        return;
+      }
+
+      byte[] bytes = s.getBytes(UTF_8);
+      writeVarint(bytes.length + 1);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, count, bytes.length);
+      count += bytes.length;
+    }
+
+    private void writeBytes(byte[] bytes) {
+      writeVarint(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, count, bytes.length);
+      count += bytes.length;
+    }
+
+    private void writeVarint(int value) {
+      while ((value & ~0x7F) != 0) {
+        writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      writeByte(value);
+    }
+
+    private void writeByte(int b) {
+      ensureCapacity(1);
+      buffer[count++] = (byte) b;
+    }
+
+    private void ensureCapacity(int length) {
+      if (count + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+      }
+    }
+  }
+
+  /**
+   * Reads a page written by an {@link EventWriter} in the same order.
+   */
+  public static class EventReader {
+
+    private final byte[] buffer;
+
+    private int position;
+
+    private final int limit;
+
+    private List<String> strings = new ArrayList<String>();
+
+    private long timestamp = 0;
+
+    public EventReader(byte[] buffer) {
+      this(buffer, 0, buffer.length);
+    }
+
+    public EventReader(byte[] buffer, int offset, int length) {
+      this.buffer = buffer;
+      this.position = offset;
+      this.limit = offset + length;
+
+      int version = readByte();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported version " + version + " of the events.");
+      }
+    }
+
+    public int readInt() {
+      int zigzag = readVarint();
+      return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    public long readLong() {
+      long zigzag = 0;
+      for (int shift = 0; ; shift += 7) {
+        if (shift >= 64) {
+          throw new IllegalArgumentException("Malformed varint.");
+        }
+        int b = readByte();
+        zigzag |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          break;
+        }
+      }
+      return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    public List<Event> readEvents() {
+      int size = readInt();
+      if (size < 0) {
+        return null;
+      }
+
+      List<Event> events = new ArrayList<Event>(size);
+      for (int i = 0; i < size; i++) {
+        events.add(readEvent());
+      }
+      return events;
+    }
+
+    private Event readEvent() {
+      int tag = readByte();
+      if (tag >= EVENT_TYPES.length) {
+        throw new IllegalArgumentException("Unknown event type " + tag);
+      }
+
+      int eventId = readInt();
+      int precedingId = readInt();
+
+      Event event;
+
+      switch (EVENT_TYPES[tag]) {
+        case ActivityScheduledEvent:
+          event = new ActivityScheduledEvent(eventId, precedingId);
+          break;
+        case ActivityStartedEvent:
+          event = new ActivityStartedEvent(eventId, precedingId);
+          break;
+        case ActivityCompletedEvent:
+          event = new ActivityCompletedEvent(eventId, precedingId);
+          break;
+        case TimerScheduledEvent:
+          event = new TimerScheduledEvent(eventId, precedingId);
+          break;
+        case TimerCancelledEvent:
+          event = new TimerCancelledEvent(eventId, precedingId);
+          break;
+        case TimerCompletedEvent:
+          event = new TimerCompletedEvent(eventId, precedingId);
+          break;
+        case WorkflowScheduledEvent:
+          event = new WorkflowScheduledEvent(eventId, precedingId);
+          break;
+        case WorkflowSignaledEvent:
+          event = new WorkflowSignaledEvent(eventId, precedingId);
+          break;
+        case WorkflowStartedEvent:
+          event = new WorkflowStartedEvent(eventId, precedingId);
+          break;
+        case WorkflowCompletedEvent:
+          event = new WorkflowCompletedEvent(eventId, precedingId);
+          break;
+        case WorkflowCancelledEvent:
+          event = new WorkflowCancelledEvent(eventId, precedingId);
+          break;
+        case LocalActivityCompletedEvent:
+          event = new LocalActivityCompletedEvent(eventId, precedingId);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown event type " + tag);
+      }
+
+      timestamp += readLong();
+      event.setTimestamp(timestamp);
+      event.setInstanceId(readString());
+      event.setRegistrationId(readString());
+
+      switch (event.getEventType()) {
+        case ActivityScheduledEvent:
+          ActivityScheduledEvent scheduled = (ActivityScheduledEvent) event;
+          scheduled.setActivityProfile(readActivityProfile());
+          scheduled.setMethodProfile(readMethodProfile());
+          scheduled.setInput(readInput());
+          break;
+        case ActivityStartedEvent:
+          ((ActivityStartedEvent) event).setActivityProfile(readActivityProfile());
+          break;
+        case ActivityCompletedEvent:
+        case LocalActivityCompletedEvent:
+          ActivityCompletedEvent completed = (ActivityCompletedEvent) event;
+          completed.setActivityProfile(readActivityProfile());
+          completed.setMethodProfile(readMethodProfile());
+          completed.setInput(readInput());
+          break;
+        case TimerScheduledEvent:
+          TimerScheduledEvent timer = (TimerScheduledEvent) event;
+          timer.setName(readString());
+          timer.setPeriod(readInt());
+          timer.setRealms(readStrings());
+          break;
+        case WorkflowScheduledEvent:
+          WorkflowScheduledEvent workflow = (WorkflowScheduledEvent) event;
+          workflow.setWorkflowProfile(readWorkflowProfile());
+          workflow.setInput(readInput());
+          workflow.setRealms(readStrings());
+          workflow.setStartProfile(readMethodProfile());
+          int startMode = readInt();
+          workflow.setStartMode(startMode < 0 ? null : START_MODES[startMode]);
+          break;
+        case WorkflowSignaledEvent:
+          WorkflowSignaledEvent signaled = (WorkflowSignaledEvent) event;
+          signaled.setInput(readInput());
+          signaled.setRealms(readStrings());
+          signaled.setSignalProfile(readMethodProfile());
+          break;
+        default:
+      }
+
+      return event;
+    }
+
+    private ActivityProfile readActivityProfile() {
+      if (readNull()) {
+        return null;
+      }
+      ActivityProfile profile = new ActivityProfile();
+      profile.setActivity(readString());
+      profile.setVersion(readString());
+      return profile;
+    }
+
+    private MethodProfile readMethodProfile() {
+      if (readNull()) {
+        return null;
+      }
+      MethodProfile profile = new MethodProfile();
+      profile.setName(readString());
+      profile.setParameterTypes(readStrings());
+      profile.setReturnType(readString());
+      return profile;
+    }
+
+    private WorkflowProfile readWorkflowProfile() {
+      if (readNull()) {
+        return null;
+      }
+      WorkflowProfile profile = new WorkflowProfile();
+      profile.setName(readString());
+      profile.setVersion(readString());
+      profile.setSerial(readByte() == 1);
+      profile.setCronExpression(readString());
+      return profile;
+    }
+
+    private Input readInput() {
+      if (readNull()) {
+        return null;
+      }
+
+      Input input = new Input();
+
+      int length = readInt();
+      if (length < 0) {
+        input.setInputs(null);
+        return input;
+      }
+
+      String[] inputs = new String[length];
+      for (int i = 0; i < length; i++) {
+        inputs[i] = readLiteral();
+      }
+      input.setInputs(inputs);
+
+      return input;
+    }
+
+    private boolean readNull() {
+      return readByte() == 0;
+    }
+
+    private List<String> readStrings() {
+      int size = readInt();
+      if (size < 0) {
+        return null;
+      }
+
+      List<String> list = new ArrayList<String>(size);
+      for (int i = 0; i < size; i++) {
+        list.add(readString());
+      }
+      return list;
+    }
+
+    private String readString() {
+      int reference = readVarint();
+      if (reference == 0) {
+        return null;
+      }
+
+      if (reference == 1) {
+        String s = readUtf8(readVarint());
+        strings.add(s);
+        return s;
+      }
+
+      if (reference - 2 >= strings.size()) {
+        throw new IllegalArgumentException("Unknown string reference " + reference);
+      }
+      return strings.get(reference - 2);
+    }
+
+    private String readLiteral() {
+      int length = readVarint();
+      return length == 0 ? null : readUtf8(length - 1);
+    }
+
+    private String readUtf8(int length) {
+      if (length < 0 || position + length > limit) {
+        throw new IllegalArgumentException("Truncated events.");
+      }
+      String s = new String(buffer, position, length, UTF_8);
+      position += length;
+      return s;
+    }
+
+    private int readVarint() {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        if (shift >= 32) {
+          throw new IllegalArgumentException("Malformed varint.");
+        }
+        int b = readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+
+    private int readByte() {
+      if (position >= limit) {
+        throw new IllegalArgumentException("Truncated events.");
+      }
+      return buffer[position++] & 0xFF;
+    }
+  }
+
+}
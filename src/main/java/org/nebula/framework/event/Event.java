@@ -96,6 +96,6 @@ public class Event {
     ActivityScheduledEvent, ActivityStartedEvent, ActivityCompletedEvent,
     TimerScheduledEvent, TimerCancelledEvent, TimerCompletedEvent,
     WorkflowScheduledEvent, WorkflowSignaledEvent, WorkflowStartedEvent,
-    WorkflowCompletedEvent, WorkflowCancelledEvent
+    WorkflowCompletedEvent, WorkflowCancelledEvent, LocalActivityCompletedEvent
   }
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.event;
+
+/**
+ * The marker of a local activity run inline by the decision, with the result as the input. There
+ * is no ActivityScheduledEvent before it, the marker is replayed in place of the activity.
+ */
+public class LocalActivityCompletedEvent extends ActivityCompletedEvent {
+
+  public LocalActivityCompletedEvent() {
+    this(0, 0);
+  }
+
+  public LocalActivityCompletedEvent(int eventId, int precedingId) {
+    super(EVENT_TYPE.LocalActivityCompletedEvent, eventId, precedingId);
+  }
+}
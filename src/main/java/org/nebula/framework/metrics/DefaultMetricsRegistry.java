@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The in-process registry keeping the counters, timers and histograms in memory, which can be
+ * read directly or exported by {@link JmxMetricsExporter}.
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+  private final ConcurrentMap<String, DefaultCounter> counters =
+      new ConcurrentHashMap<String, DefaultCounter>();
+
+  private final ConcurrentMap<String, DefaultTimer> timers =
+      new ConcurrentHashMap<String, DefaultTimer>();
+
+  private final ConcurrentMap<String, LatencyHistogram> histograms =
+      new ConcurrentHashMap<String, LatencyHistogram>();
+
+  public DefaultCounter counter(String name) {
+    DefaultCounter counter = counters.get(name);
+    if (counter == null) {
+      DefaultCounter created = new DefaultCounter();
+      counter = counters.putIfAbsent(name, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    return counter;
+  }
+
+  public DefaultTimer timer(String name) {
+    DefaultTimer timer = timers.get(name);
+    if (timer == null) {
+      DefaultTimer created = new DefaultTimer();
+      timer = timers.putIfAbsent(name, created);
+      if (timer == null) {
+        timer = created;
+      }
+    }
+    return timer;
+  }
+
+  public LatencyHistogram histogram(String name) {
+    LatencyHistogram histogram = histograms.get(name);
+    if (histogram == null) {
+      LatencyHistogram created = new LatencyHistogram();
+      histogram = histograms.putIfAbsent(name, created);
+      if (histogram == null) {
+        histogram = created;
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * @return a snapshot of the counters sorted by name.
+   */
+  public Map<String, DefaultCounter> getCounters() {
+    return new TreeMap<String, DefaultCounter>(counters);
+  }
+
+  /**
+   * @return a snapshot of the timers sorted by name.
+   */
+  public Map<String, DefaultTimer> getTimers() {
+    return new TreeMap<String, DefaultTimer>(timers);
+  }
+
+  /**
+   * @return the histograms sorted by name.
+   */
+  public Map<String, LatencyHistogram> getHistograms() {
+    return new TreeMap<String, LatencyHistogram>(histograms);
+  }
+
+  public static class DefaultCounter implements Counter {
+
+    private final AtomicLong count = new AtomicLong();
+
+    public void increment(long delta) {
+      count.addAndGet(delta);
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+  }
+
+  public static class DefaultTimer implements Timer {
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getTotalNanos() {
+      return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+
+    public double getMeanMillis() {
+      long n = count.get();
+      return n == 0 ? 0 : totalNanos.get() / 1000000.0 / n;
+    }
+  }
+
+}
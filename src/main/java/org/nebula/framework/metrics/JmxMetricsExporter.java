@@ -0,0 +1,206 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nebula.framework.metrics.DefaultMetricsRegistry.DefaultCounter;
+import org.nebula.framework.metrics.DefaultMetricsRegistry.DefaultTimer;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exports the metrics of a {@link DefaultMetricsRegistry} as the attributes of one MBean named
+ * org.nebula.framework:type=Metrics,name=&lt;name&gt;. A counter is exported as a Long attribute,
+ * a timer as the attributes &lt;timer&gt;.count, .meanMillis and .maxMillis, a histogram as
+ * &lt;histogram&gt;.count, .p50Millis, .p99Millis, .p999Millis and .maxMillis.
+ *
+ * The attributes are read from the registry when the MBean is queried, so the metrics created
+ * after the registration are exported as well.
+ */
+public class JmxMetricsExporter {
+
+  private final static Log log = LogFactory.getLog(JmxMetricsExporter.class);
+
+  private final static String COUNT = ".count";
+  private final static String MEAN_MILLIS = ".meanMillis";
+  private final static String MAX_MILLIS = ".maxMillis";
+  private final static String P50_MILLIS = ".p50Millis";
+  private final static String P99_MILLIS = ".p99Millis";
+  private final static String P999_MILLIS = ".p999Millis";
+
+  private final DefaultMetricsRegistry registry;
+
+  private final ObjectName objectName;
+
+  private final MBeanServer server;
+
+  public JmxMetricsExporter(DefaultMetricsRegistry registry, String name) {
+    this(registry, name, ManagementFactory.getPlatformMBeanServer());
+  }
+
+  public JmxMetricsExporter(DefaultMetricsRegistry registry, String name, MBeanServer server) {
+    if (registry == null) {
+      throw new IllegalArgumentException("The registry can't be null.");
+    }
+
+    this.registry = registry;
+    this.server = server;
+
+    try {
+      this.objectName = new ObjectName("org.nebula.framework:type=Metrics,name="
+                                       + ObjectName.quote(name));
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Illegal name " + name, e);
+    }
+  }
+
+  public ObjectName getObjectName() {
+    return objectName;
+  }
+
+  public void register() {
+    try {
+      server.registerMBean(new MetricsMBean(), objectName);
+    } catch (Exception e) {
+      throw new IllegalStateException("Failed to register " + objectName, e);
+    }
+  }
+
+  public void unregister() {
+    try {
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (Exception e) {
+      log.warn("Failed to unregister " + objectName, e);
+    }
+  }
+
+  private class MetricsMBean implements DynamicMBean {
+
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+
+      DefaultCounter counter = registry.getCounters().get(attribute);
+      if (counter != null) {
+        return counter.getCount();
+      }
+
+      int dot = attribute.lastIndexOf('.');
+      if (dot > 0) {
+        DefaultTimer timer = registry.getTimers().get(attribute.substring(0, dot));
+        if (timer != null) {
+          String suffix = attribute.substring(dot);
+          if (COUNT.equals(suffix)) {
+            return timer.getCount();
+          } else if (MEAN_MILLIS.equals(suffix)) {
+            return timer.getMeanMillis();
+          } else if (MAX_MILLIS.equals(suffix)) {
+            return timer.getMaxNanos() / 1000000.0;
+          }
+        }
+
+        LatencyHistogram histogram = registry.getHistograms().get(attribute.substring(0, dot));
+        if (histogram != null) {
+          String suffix = attribute.substring(dot);
+          if (COUNT.equals(suffix)) {
+            return histogram.snapshot().getCount();
+          } else if (P50_MILLIS.equals(suffix)) {
+            return histogram.snapshot().getPercentileMicros(50) / 1000.0;
+          } else if (P99_MILLIS.equals(suffix)) {
+            return histogram.snapshot().getPercentileMicros(99) / 1000.0;
+          } else if (P999_MILLIS.equals(suffix)) {
+            return histogram.snapshot().getPercentileMicros(99.9) / 1000.0;
+          } else if (MAX_MILLIS.equals(suffix)) {
+            return histogram.snapshot().getMaxMicros() / 1000.0;
+          }
+        }
+      }
+
+      throw new AttributeNotFoundException(attribute);
+    }
+
+    public AttributeList getAttributes(String[] attributes) {
+      AttributeList list = new AttributeList();
+      for (String attribute : attributes) {
+        try {
+          list.add(new Attribute(attribute, getAttribute(attribute)));
+        } catch (AttributeNotFoundException e) {
+          //skipped like the standard MBeans do.
+        }
+      }
+      return list;
+    }
+
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+      throw new AttributeNotFoundException("The metrics are read only.");
+    }
+
+    public AttributeList setAttributes(AttributeList attributes) {
+      return new AttributeList();
+    }
+
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+      throw new UnsupportedOperationException(actionName);
+    }
+
+    public MBeanInfo getMBeanInfo() {
+
+      List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+
+      for (String name : registry.getCounters().keySet()) {
+        attributes.add(attribute(name, Long.class, "counter"));
+      }
+
+      for (Map.Entry<String, DefaultTimer> entry : registry.getTimers().entrySet()) {
+        attributes.add(attribute(entry.getKey() + COUNT, Long.class, "timer count"));
+        attributes.add(attribute(entry.getKey() + MEAN_MILLIS, Double.class, "timer mean"));
+        attributes.add(attribute(entry.getKey() + MAX_MILLIS, Double.class, "timer max"));
+      }
+
+      for (String name : registry.getHistograms().keySet()) {
+        attributes.add(attribute(name + COUNT, Long.class, "histogram count"));
+        attributes.add(attribute(name + P50_MILLIS, Double.class, "histogram p50"));
+        attributes.add(attribute(name + P99_MILLIS, Double.class, "histogram p99"));
+        attributes.add(attribute(name + P999_MILLIS, Double.class, "histogram p99.9"));
+        attributes.add(attribute(name + MAX_MILLIS, Double.class, "histogram max"));
+      }
+
+      return new MBeanInfo(JmxMetricsExporter.class.getName(), "Nebula framework metrics",
+                           attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                           null, new MBeanOperationInfo[0], null);
+    }
+
+    private MBeanAttributeInfo attribute(String name, Class type, String description) {
+      return new MBeanAttributeInfo(name, type.getName(), description, true, false, false);
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-memory latency histogram with log-linear buckets in microseconds: the values below 32us
+ * are exact, the others fall into 32 buckets per power of two, so a percentile is at most about 3%
+ * above the recorded value. The values above 2^41us (about 25 days) go into the last bucket.
+ *
+ * Recording is lock free, two atomic adds. The snapshots only read the buckets, so they never block
+ * the recording threads, and {@link #intervalSnapshot()} gives the values recorded since its
+ * previous call, e.g. for a scrape every few seconds.
+ */
+public class LatencyHistogram implements Histogram {
+
+  private final static int SUB_BUCKET_BITS = 5;
+
+  private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private final static int MAX_EXPONENT = 40;
+
+  final static int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  private final AtomicLong totalMicros = new AtomicLong();
+
+  //the counts at the previous interval snapshot, guarded by this.
+  private long[] intervalCounts = new long[BUCKETS];
+
+  private long intervalTotalMicros = 0;
+
+  public void record(long nanos) {
+    recordMicros(nanos / 1000);
+  }
+
+  public void recordMicros(long micros) {
+    if (micros < 0) {
+      micros = 0;
+    }
+    counts.incrementAndGet(bucketOf(micros));
+    totalMicros.addAndGet(micros);
+  }
+
+  /**
+   * @return the values recorded since the creation of the histogram.
+   */
+  public Snapshot snapshot() {
+    long[] current = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      current[i] = counts.get(i);
+    }
+    return new Snapshot(current, totalMicros.get());
+  }
+
+  /**
+   * @return the values recorded since the previous call, or since the creation for the first call.
+   */
+  public synchronized Snapshot intervalSnapshot() {
+    long total = totalMicros.get();
+    long[] current = new long[BUCKETS];
+    long[] interval = new long[BUCKETS];
+
+    for (int i = 0; i < BUCKETS; i++) {
+      current[i] = counts.get(i);
+      interval[i] = current[i] - intervalCounts[i];
+    }
+
+    Snapshot snapshot = new Snapshot(interval, total - intervalTotalMicros);
+
+    intervalCounts = current;
+    intervalTotalMicros = total;
+
+    return snapshot;
+  }
+
+  static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+
+    int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+    return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return the largest value of the bucket.
+   */
+  static long highestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+    long lowest = ((long) SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  public static class Snapshot {
+
+    private final long[] counts;
+
+    private final long count;
+
+    private final long totalMicros;
+
+    Snapshot(long[] counts, long totalMicros) {
+      this.counts = counts;
+      this.totalMicros = totalMicros;
+
+      long count = 0;
+      for (long c : counts) {
+        count += c;
+      }
+      this.count = count;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMeanMicros() {
+      return count == 0 ? 0 : 1.0 * totalMicros / count;
+    }
+
+    /**
+     * @param percentile e.g. 99.9
+     * @return the highest value of the bucket holding the percentile, 0 if nothing is recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("The percentile should be within [0, 100].");
+      }
+
+      if (count == 0) {
+        return 0;
+      }
+
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return highestValueOf(i);
+        }
+      }
+      return highestValueOf(counts.length - 1);
+    }
+
+    public long getMaxMicros() {
+      return getPercentileMicros(100);
+    }
+  }
+
+}
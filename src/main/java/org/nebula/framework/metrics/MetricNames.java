@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.metrics;
+
+/**
+ * The names of the metrics recorded by the framework. The names ending with '.' are prefixes
+ * followed by the request type or the node.
+ */
+public final class MetricNames {
+
+  //timer of the polls, followed by the simple name of the poll request.
+  public final static String POLL_LATENCY = "poll.latency.";
+
+  //counter of the polls which returned without a task, followed by the poll request.
+  public final static String POLL_EMPTY = "poll.empty.";
+
+  //counter of the polls which failed, followed by the poll request.
+  public final static String POLL_FAILED = "poll.failed.";
+
+  //timer of the time the polled tasks wait in the queue of the node executor.
+  public final static String QUEUE_WAIT = "executor.queueWait";
+
+  //timer of the time a decision waits for the history events.
+  public final static String DECISION_HISTORY_FETCH = "decision.historyFetch";
+
+  //timer of the time a decision replays the history, without the history fetch.
+  public final static String DECISION_REPLAY = "decision.replay";
+
+  //counter of the commands emitted by the decisions, over the count of decision.replay.
+  public final static String DECISION_COMMANDS = "decision.commands";
+
+  //timer of the activity methods, followed by activity:version.method.
+  public final static String ACTIVITY_EXECUTION = "activity.execution.";
+
+  //counter of the retries completing the activities.
+  public final static String ACTIVITY_COMPLETE_RETRIES = "activity.completeRetries";
+
+  //histogram of the time from scheduling an activity to starting it on the worker, followed by
+  //activity:version. Only recorded if the server tells the scheduled time.
+  public final static String ACTIVITY_SCHEDULE_TO_START = "activity.scheduleToStart.";
+
+  //histogram of the time from polling an activity task to completing it, followed by
+  //activity:version.
+  public final static String ACTIVITY_START_TO_CLOSE = "activity.startToClose.";
+
+  //histogram of the decisions, followed by workflow:version.
+  public final static String WORKFLOW_DECISION = "workflow.decision.";
+
+  //timer of encoding the request bodies, followed by the request.
+  public final static String CLIENT_SERIALIZE = "client.serialize.";
+
+  //timer of reading and decoding the response bodies, followed by the request.
+  public final static String CLIENT_DESERIALIZE = "client.deserialize.";
+
+  //counter of the bytes of the request bodies before the compression, followed by the request.
+  public final static String CLIENT_SENT_BYTES = "client.sentBytes.";
+
+  //counter of the bytes of the response bodies after the decompression, followed by the request.
+  public final static String CLIENT_RECEIVED_BYTES = "client.receivedBytes.";
+
+  private MetricNames() {
+  }
+
+  /**
+   * @return the name of the activity or workflow and its version, e.g. to follow a prefix.
+   */
+  public static String profile(String name, String version) {
+    return name + ":" + version;
+  }
+}
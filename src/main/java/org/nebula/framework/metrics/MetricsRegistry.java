@@ -0,0 +1,39 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.metrics;
+
+/**
+ * The SPI the framework records its metrics with. The counters and timers are looked up by name,
+ * an implementation should return the same instance for the same name.
+ *
+ * @see DefaultMetricsRegistry
+ * @see MetricNames
+ */
+public interface MetricsRegistry {
+
+  /**
+   * Drops all the metrics, e.g. for the tests and the benchmarks.
+   */
+  MetricsRegistry NOOP = new NoopMetricsRegistry();
+
+  Counter counter(String name);
+
+  Timer timer(String name);
+
+  Histogram histogram(String name);
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.metrics;
+
+class NoopMetricsRegistry implements MetricsRegistry {
+
+  private final static Counter COUNTER = new Counter() {
+    public void increment(long delta) {
+    }
+  };
+
+  private final static Timer TIMER = new Timer() {
+    public void record(long nanos) {
+    }
+  };
+
+  private final static Histogram HISTOGRAM = new Histogram() {
+    public void record(long nanos) {
+    }
+  };
+
+  public Counter counter(String name) {
+    return COUNTER;
+  }
+
+  public Timer timer(String name) {
+    return TIMER;
+  }
+
+  public Histogram histogram(String name) {
+    return HISTOGRAM;
+  }
+}
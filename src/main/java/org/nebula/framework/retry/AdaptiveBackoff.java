@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exponential backoff which is kept across the attempts: the interval doubles on every
+ * consecutive failure up to the max interval, and goes back to zero on the first success.
+ *
+ * It waits on a lock rather than a monitor, which doesn't pin a virtual thread to its carrier.
+ */
+public class AdaptiveBackoff {
+
+  private final long minIntervalMillis;
+
+  private final long maxIntervalMillis;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition canceledCondition = lock.newCondition();
+
+  private long intervalMillis = 0;
+
+  private boolean canceled = false;
+
+  public AdaptiveBackoff(long minIntervalMillis, long maxIntervalMillis) {
+    if (minIntervalMillis <= 0) {
+      throw new IllegalArgumentException("The minIntervalMillis should be positive.");
+    }
+
+    this.minIntervalMillis = minIntervalMillis;
+    this.maxIntervalMillis = Math.max(minIntervalMillis, maxIntervalMillis);
+  }
+
+  /**
+   * Wait for the next interval after a failed attempt.
+   */
+  public void backoff() {
+
+    lock.lock();
+    try {
+      intervalMillis =
+          intervalMillis == 0 ? minIntervalMillis : Math.min(intervalMillis * 2, maxIntervalMillis);
+
+      if (!canceled) {
+        try {
+          canceledCondition.await(intervalMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          // Ignore the exception.
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void reset() {
+    lock.lock();
+    try {
+      intervalMillis = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void cancel() {
+    lock.lock();
+    try {
+      canceled = true;
+      canceledCondition.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getIntervalMillis() {
+    lock.lock();
+    try {
+      return intervalMillis;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public boolean isCanceled() {
+    lock.lock();
+    try {
+      return canceled;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
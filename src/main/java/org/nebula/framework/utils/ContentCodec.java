@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.utils;
+
+import java.io.InputStream;
+
+/**
+ * The format of the bodies sent to and read from the nebula server.
+ */
+public interface ContentCodec {
+
+  /**
+   * @return the media type of the Content-Type and Accept headers.
+   */
+  String getContentType();
+
+  byte[] write(Object value);
+
+  /**
+   * Read the value straight from the stream, which is left open.
+   */
+  <T> T read(InputStream in, Class<T> valueType);
+
+}
@@ -16,31 +16,224 @@
 
 package org.nebula.framework.utils;
 
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The digests and macs are pooled with their buffers, and the macs per key too, so that the key
+ * schedule of the HMAC is computed once rather than on every signature. They are pooled rather
+ * than kept per thread so that the virtual threads, which are created per task, reuse them too.
+ */
 public class HashUtils {
 
+  public final static String HMAC_SHA256 = "HmacSHA256";
+
+  private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+  //the keys are the secret keys of the clients, the bound only guards against a flood of them.
+  private final static int MAX_CACHED_KEYS = 1024;
+
+  //the hashing doesn't block, so a pool grows to about the number of the threads hashing at once.
+  private final static Queue<Hasher> MD5 = new ConcurrentLinkedQueue<Hasher>();
+
+  private final static Queue<Hasher> SHA1 = new ConcurrentLinkedQueue<Hasher>();
+
+  private final static ConcurrentMap<String, Queue<Hasher>> macs =
+      new ConcurrentHashMap<String, Queue<Hasher>>();
+
   public static String md5(String input) {
-    return hash(input, "MD5");
+    return hash(input, MD5, "MD5");
   }
 
   public static String sha1(String input) {
-    return hash(input, "SHA1");
+    return hash(input, SHA1, "SHA1");
   }
 
-  private static String hash(String input, String algorithm) {
+  /**
+   * Write the hex of the MD5 of the input range into the chars, the input is encoded with the
+   * default charset like {@link #md5(String)}.
+   *
+   * @return the number of the hex chars, 32.
+   */
+  public static int md5Hex(CharSequence input, int start, int end, char[] hex) {
+    Hasher hasher = acquire(MD5, "MD5");
+    MessageDigest md = hasher.md;
+    byte[] buffer = hasher.asciiBuffer(input, start, end);
+
+    //the ascii is the same bytes in any charset the signatures are made with.
+    if (buffer != null) {
+      md.update(buffer, 0, end - start);
+    } else {
+      md.update(input.subSequence(start, end).toString().getBytes());
+    }
+
+    byte[] digest = hasher.digest;
+    int hexLength;
     try {
-      java.security.MessageDigest md = java.security.MessageDigest.getInstance(algorithm);
-      byte[] array = md.digest(input.getBytes());
-      StringBuffer sb = new StringBuffer();
-      for (int i = 0; i < array.length; ++i) {
-        sb.append(Integer.toHexString((array[i] & 0xFF) | 0x100).substring(1,3));
+      hexLength = toHex(digest, md.digest(digest, 0, digest.length), hex);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+
+    //a failure drops the hasher, which may hold a partial update.
+    MD5.offer(hasher);
+    return hexLength;
+  }
+
+  /**
+   * Write the hex of the HMAC-SHA256 of the UTF-8 input range with the key into the chars.
+   *
+   * @return the number of the hex chars, 64.
+   */
+  public static int hmacSha256Hex(CharSequence input, int start, int end, String key,
+                                  char[] hex) {
+    Queue<Hasher> pool = getMacPool(key);
+    Hasher hasher = pool.poll();
+    if (hasher == null) {
+      hasher = new Hasher(null, createMac(key));
+    }
+
+    Mac mac = hasher.mac;
+    byte[] buffer = hasher.asciiBuffer(input, start, end);
+
+    if (buffer != null) {
+      mac.update(buffer, 0, end - start);
+    } else {
+      mac.update(input.subSequence(start, end).toString().getBytes(UTF_8));
+    }
+
+    byte[] digest = hasher.digest;
+    try {
+      mac.doFinal(digest, 0);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+    int hexLength = toHex(digest, mac.getMacLength(), hex);
+
+    pool.offer(hasher);
+    return hexLength;
+  }
+
+  private static String hash(String input, Queue<Hasher> pool, String algorithm) {
+    if (input == null) {
+      throw new IllegalArgumentException("The input " + input + " or algorithm " + algorithm
+                                         + " is illegal");
+    }
+
+    Hasher hasher = acquire(pool, algorithm);
+    byte[] array = hasher.md.digest(input.getBytes());
+    pool.offer(hasher);
+
+    char[] hex = new char[array.length * 2];
+    return new String(hex, 0, toHex(array, array.length, hex));
+  }
+
+  private static int toHex(byte[] bytes, int length, char[] hex) {
+    for (int i = 0; i < length; i++) {
+      hex[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+      hex[i * 2 + 1] = HEX[bytes[i] & 0xF];
+    }
+    return length * 2;
+  }
+
+  private static Hasher acquire(Queue<Hasher> pool, String algorithm) {
+    Hasher hasher = pool.poll();
+    if (hasher != null) {
+      return hasher;
+    }
+
+    try {
+      return new Hasher(MessageDigest.getInstance(algorithm), null);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("The algorithm " + algorithm + " is illegal", e);
+    }
+  }
+
+  /**
+   * @return the pool of the macs of the key, or a pool of its own once too many keys are cached.
+   */
+  private static Queue<Hasher> getMacPool(String key) {
+    if (key == null) {
+      throw new IllegalArgumentException("The key can't be null.");
+    }
+
+    Queue<Hasher> pool = macs.get(key);
+
+    if (pool == null) {
+      pool = new ConcurrentLinkedQueue<Hasher>();
+
+      if (macs.size() >= MAX_CACHED_KEYS) {
+        return pool;
       }
-      return sb.toString();
-    } catch (Exception e) {
-      //ignore
+
+      Queue<Hasher> existing = macs.putIfAbsent(key, pool);
+      if (existing != null) {
+        pool = existing;
+      }
+    }
+
+    return pool;
+  }
+
+  private static Mac createMac(String key) {
+    try {
+      Mac mac = Mac.getInstance(HMAC_SHA256);
+      mac.init(new SecretKeySpec(key.getBytes(UTF_8), HMAC_SHA256));
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Failed to create the " + HMAC_SHA256, e);
     }
-    throw new IllegalArgumentException("The input "+input+" or algorithm " + algorithm +" is illegal");
   }
 
+  /**
+   * A digest or a mac with the buffers it hashes from and into.
+   */
+  private static class Hasher {
+
+    private final MessageDigest md;
+
+    private final Mac mac;
+
+    private byte[] buffer = new byte[512];
+
+    //large enough for the SHA-256.
+    private final byte[] digest = new byte[32];
+
+    Hasher(MessageDigest md, Mac mac) {
+      this.md = md;
+      this.mac = mac;
+    }
+
+    /**
+     * @return the buffer holding the input range, null if it isn't all ascii.
+     */
+    byte[] asciiBuffer(CharSequence input, int start, int end) {
+      int length = end - start;
+
+      if (buffer.length < length) {
+        buffer = new byte[Math.max(length, buffer.length * 2)];
+      }
 
+      for (int i = 0; i < length; i++) {
+        char c = input.charAt(start + i);
+        if (c >= 0x80) {
+          return null;
+        }
+        buffer[i] = (byte) c;
+      }
+
+      return buffer;
+    }
+  }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.InputStream;
+
+/**
+ * A {@link ContentCodec} of a jackson data format, the binary ones bind the same annotations and
+ * types as the json.
+ */
+public class JacksonContentCodec implements ContentCodec {
+
+  private final static Log log = LogFactory.getLog(JacksonContentCodec.class);
+
+  public final static JacksonContentCodec JSON =
+      new JacksonContentCodec("application/json", JsonUtils.getObjectMapper());
+
+  public final static JacksonContentCodec SMILE =
+      new JacksonContentCodec("application/x-jackson-smile", new ObjectMapper(new SmileFactory()));
+
+  private final String contentType;
+
+  private final ObjectMapper mapper;
+
+  public JacksonContentCodec(String contentType, ObjectMapper mapper) {
+    if (contentType == null || mapper == null) {
+      throw new IllegalArgumentException("The contentType and mapper can't be null.");
+    }
+    this.contentType = contentType;
+    this.mapper = mapper;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public byte[] write(Object value) {
+    try {
+      return mapper.writeValueAsBytes(value);
+    } catch (Exception e) {
+      log.error("Failed to write the object " + value + " as " + contentType);
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  public <T> T read(InputStream in, Class<T> valueType) {
+    try {
+      return mapper.readValue(in, valueType);
+    } catch (Exception e) {
+      log.error("Failed to read " + valueType.getSimpleName() + " from " + contentType);
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  public String toString() {
+    return contentType;
+  }
+
+}
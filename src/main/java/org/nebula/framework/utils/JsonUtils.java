@@ -17,17 +17,36 @@
 package org.nebula.framework.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 public class JsonUtils {
 
   private final static Log log = LogFactory.getLog(JsonUtils.class);
 
   private final static ObjectMapper mapper = new ObjectMapper();
 
+  //the canonical types come from the method profiles, the bound only guards against the bad ones.
+  private final static int MAX_CACHED_READERS = 1024;
+
+  private final static ConcurrentMap<String, ObjectReader>
+      readers =
+      new ConcurrentHashMap<String, ObjectReader>();
+
+  /**
+   * @return the mapper shared by the json bodies and the events, not to be reconfigured.
+   */
+  static ObjectMapper getObjectMapper() {
+    return mapper;
+  }
+
   public final static String toJson(Object obj) {
     try {
       return mapper.writeValueAsString(obj);
@@ -56,12 +75,47 @@ public class JsonUtils {
   }
 
   public static Object constructFromCanonical(String json, String canonical) {
+    return readValue(json, readerForCanonical(canonical));
+  }
+
+  /**
+   * @return the reader of the canonical type, which is cached since parsing the type is costly.
+   */
+  public static ObjectReader readerForCanonical(String canonical) {
+
+    ObjectReader reader = readers.get(canonical);
+
+    if (reader == null) {
+      try {
+        reader = mapper.reader(TypeFactory.defaultInstance().constructFromCanonical(canonical));
+      } catch (Exception e) {
+        log.error("Failed to constructFromCanonical: the canonical " + canonical);
+        throw new IllegalArgumentException(e);
+      }
+
+      if (readers.size() < MAX_CACHED_READERS) {
+        readers.putIfAbsent(canonical, reader);
+      }
+    }
+
+    return reader;
+  }
+
+  public static ObjectReader[] readersForCanonical(List<String> canonicals) {
+    ObjectReader[] readers = new ObjectReader[canonicals.size()];
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = readerForCanonical(canonicals.get(i));
+    }
+    return readers;
+  }
+
+  public static Object readValue(String json, ObjectReader reader) {
     try {
-      return mapper.readValue(json, TypeFactory.defaultInstance().constructFromCanonical(canonical));
+      return reader.readValue(json);
     } catch (Exception e) {
-      log.error("Failed to constructFromCanonical: the json " + json + " and the canonical " + canonical);
+      log.error("Failed to read the json " + json);
       throw new IllegalArgumentException(e);
     }
   }
 
-}
\ No newline at end of file
+}
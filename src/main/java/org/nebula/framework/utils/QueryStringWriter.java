@@ -0,0 +1,183 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.utils;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes the query strings of the GET and DELETE requests, with the same parameters as converting
+ * the request to a map through jackson: the null values are skipped and the element i of a list is
+ * written as key[i].
+ *
+ * The jackson properties of a request class are introspected once, and the parameters are written
+ * straight into a single buffer sized from the uri, with the form encoding of the URIBuilder.
+ */
+public class QueryStringWriter {
+
+  private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final static char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  //room for the parameters of a request besides the uri.
+  private final static int QUERY_STRING_SIZE = 128;
+
+  private final static ConcurrentMap<Class, Property[]> properties =
+      new ConcurrentHashMap<Class, Property[]>();
+
+  private QueryStringWriter() {
+  }
+
+  /**
+   * @return the uri followed by the query string of the request, the uri itself if there is no
+   * parameter.
+   */
+  public static String write(String uri, Object request) {
+
+    StringBuilder sb = new StringBuilder(uri.length() + QUERY_STRING_SIZE);
+    sb.append(uri);
+
+    char separator = '?';
+
+    for (Property property : getProperties(request.getClass())) {
+      Object value = property.getValue(request);
+
+      if (value == null) {
+        continue;
+      }
+
+      if (value instanceof List) {
+        List list = (List) value;
+        for (int i = 0; i < list.size(); i++) {
+          Object element = list.get(i);
+          if (element == null) {
+            continue;
+          }
+          sb.append(separator);
+          //the brackets are encoded like the URIBuilder did.
+          sb.append(property.encodedName).append("%5B").append(i).append("%5D=");
+          encode(toText(element), sb);
+          separator = '&';
+        }
+      } else {
+        sb.append(separator).append(property.encodedName).append('=');
+        encode(toText(value), sb);
+        separator = '&';
+      }
+    }
+
+    return sb.toString();
+  }
+
+  private static Property[] getProperties(Class clazz) {
+
+    Property[] result = properties.get(clazz);
+
+    if (result == null) {
+      ObjectMapper mapper = JsonUtils.getObjectMapper();
+
+      BeanDescription description =
+          mapper.getSerializationConfig().introspect(mapper.constructType(clazz));
+
+      List<Property> list = new ArrayList<Property>();
+      for (BeanPropertyDefinition definition : description.findProperties()) {
+        AnnotatedMember accessor = definition.getAccessor();
+        //getClass() isn't serialized by jackson.
+        if (!definition.couldSerialize() || accessor.getDeclaringClass() == Object.class) {
+          continue;
+        }
+        accessor.fixAccess();
+        list.add(new Property(definition.getName(), accessor));
+      }
+
+      result = list.toArray(new Property[list.size()]);
+      properties.putIfAbsent(clazz, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * @return the text of the value as it would be after converting it to a map.
+   */
+  private static String toText(Object value) {
+    if (value instanceof String) {
+      return (String) value;
+    }
+    if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+      return value.toString();
+    }
+    return String.valueOf(JsonUtils.convertValue(value, Object.class));
+  }
+
+  /**
+   * Form encoding: the alphanumerics and "_-.*" are kept, a blank is written as '+'.
+   */
+  static void encode(String s, StringBuilder sb) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+          || c == '_' || c == '-' || c == '.' || c == '*') {
+        sb.append(c);
+      } else if (c == ' ') {
+        sb.append('+');
+      } else if (c < 0x80) {
+        appendEscaped(c, sb);
+      } else {
+        int end = i + 1;
+        while (end < s.length() && s.charAt(end) >= 0x80) {
+          end++;
+        }
+        for (byte b : s.substring(i, end).getBytes(UTF_8)) {
+          appendEscaped(b & 0xff, sb);
+        }
+        i = end - 1;
+      }
+    }
+  }
+
+  private static void appendEscaped(int b, StringBuilder sb) {
+    sb.append('%').append(HEX[b >> 4]).append(HEX[b & 0x0f]);
+  }
+
+  private static class Property {
+
+    private final String encodedName;
+
+    private final AnnotatedMember accessor;
+
+    Property(String name, AnnotatedMember accessor) {
+      StringBuilder sb = new StringBuilder(name.length());
+      encode(name, sb);
+      this.encodedName = sb.toString();
+      this.accessor = accessor;
+    }
+
+    Object getValue(Object request) {
+      return accessor.getValue(request);
+    }
+  }
+
+}
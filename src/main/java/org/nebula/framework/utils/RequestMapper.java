@@ -16,6 +16,8 @@
 
 package org.nebula.framework.utils;
 
+import org.nebula.framework.client.request.BatchPollActivityRequest;
+import org.nebula.framework.client.request.BatchPollWorkflowRequest;
 import org.nebula.framework.client.request.CancelTimerRequest;
 import org.nebula.framework.client.request.CancelWorkflowRequest;
 import org.nebula.framework.client.request.CompleteActivityRequest;
@@ -25,11 +27,14 @@ import org.nebula.framework.client.request.GetEventsRequest;
 import org.nebula.framework.client.request.HeartbeatRequest;
 import org.nebula.framework.client.request.PollActivityRequest;
 import org.nebula.framework.client.request.PollWorkflowRequest;
+import org.nebula.framework.client.request.RecordLocalActivityRequest;
 import org.nebula.framework.client.request.RegisterRequest;
 import org.nebula.framework.client.request.ScheduleTimerRequest;
 import org.nebula.framework.client.request.SignalWorkflowRequest;
 import org.nebula.framework.client.request.StartActivityRequest;
 import org.nebula.framework.client.request.StartWorkflowRequest;
+import org.nebula.framework.client.response.BatchPollActivityResponse;
+import org.nebula.framework.client.response.BatchPollWorkflowResponse;
 import org.nebula.framework.client.response.CancelTimerResponse;
 import org.nebula.framework.client.response.CancelWorkflowResponse;
 import org.nebula.framework.client.response.CompleteActivityResponse;
@@ -39,6 +44,7 @@ import org.nebula.framework.client.response.GetEventsResponse;
 import org.nebula.framework.client.response.HeartbeatResponse;
 import org.nebula.framework.client.response.PollActivityResponse;
 import org.nebula.framework.client.response.PollWorkflowResponse;
+import org.nebula.framework.client.response.RecordLocalActivityResponse;
 import org.nebula.framework.client.response.RegisterResponse;
 import org.nebula.framework.client.response.ScheduleTimerResponse;
 import org.nebula.framework.client.response.SignalWorkflowResponse;
@@ -46,6 +52,7 @@ import org.nebula.framework.client.response.StartActivityResponse;
 import org.nebula.framework.client.response.StartWorkflowResponse;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class RequestMapper {
@@ -81,6 +88,9 @@ public class RequestMapper {
                       contextPath + "/heartbeat");
     requestUriMap.put(CompleteDecisionRequest.class, contextPath + "/decision/complete");
     requestUriMap.put(CancelWorkflowRequest.class, contextPath + "/workflow/cancel");
+    requestUriMap.put(BatchPollActivityRequest.class, contextPath + "/activity/batchPoll");
+    requestUriMap.put(BatchPollWorkflowRequest.class, contextPath + "/workflow/batchPoll");
+    requestUriMap.put(RecordLocalActivityRequest.class, contextPath + "/activity/recordLocal");
 
     requestResponseMap.put(StartActivityRequest.class,
                            StartActivityResponse.class);
@@ -110,6 +120,12 @@ public class RequestMapper {
                            CompleteDecisionResponse.class);
     requestResponseMap.put(CancelWorkflowRequest.class,
                            CancelWorkflowResponse.class);
+    requestResponseMap.put(BatchPollActivityRequest.class,
+                           BatchPollActivityResponse.class);
+    requestResponseMap.put(BatchPollWorkflowRequest.class,
+                           BatchPollWorkflowResponse.class);
+    requestResponseMap.put(RecordLocalActivityRequest.class,
+                           RecordLocalActivityResponse.class);
   }
 
   public void addRequestResponseUri(Class requestClass, Class responseClass, String uri) {
@@ -124,4 +140,11 @@ public class RequestMapper {
   public Class getResponse(Class requestClazz) {
     return requestResponseMap.get(requestClazz);
   }
+
+  /**
+   * @return the request classes mapped to the uris, e.g. for serving them.
+   */
+  public Set<Class> getRequestClasses() {
+    return requestUriMap.keySet();
+  }
 }
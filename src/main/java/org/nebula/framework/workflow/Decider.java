@@ -19,15 +19,19 @@ package org.nebula.framework.workflow;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nebula.framework.core.Promise;
+import org.nebula.framework.event.ActivityCompletedEvent;
 import org.nebula.framework.event.Event;
 import org.nebula.framework.event.WorkflowScheduledEvent;
 import org.nebula.framework.model.ActivityProfile;
 import org.nebula.framework.model.MethodProfile;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This class is thread-unsafe. Only one thread is allowed to execute the method one time.
  */
-public class Decider implements SignalEventListener {
+public class Decider implements SignalEventListener, CompletedEventListener {
 
   private final static Log log = LogFactory.getLog(Decider.class);
 
@@ -36,24 +40,40 @@ public class Decider implements SignalEventListener {
   private WorkflowEventRecords records;
   private EventEmitter eventEmitter;
   private WorkflowInstance workflowInstance;
+  private LocalActivities localActivities;
+
+  //the promises of the replayed activities and timers completed further in the history than the
+  //events loaded when they were replayed, by the id of their scheduled event.
+  private Map<Integer, Promise> deferredPromises = new HashMap<Integer, Promise>();
 
   private WorkflowEventRecords.WorkflowReplayer workflowReplayer;
   private WorkflowEventRecords.ActivityReplayer activityReplayer;
   private WorkflowEventRecords.ScheduleTimerReplayer scheduleTimerReplayer;
   private WorkflowEventRecords.CancelTimerReplayer cancelTimerReplayer;
   private WorkflowEventRecords.SignalReplayer signalReplayer;
+  private WorkflowEventRecords.LocalActivityReplayer localActivityReplayer;
 
   public Decider(WorkflowEventRecords records, EventEmitter eventEmitter,
                  WorkflowInstance workflowInstance) {
+    this(records, eventEmitter, workflowInstance, new LocalActivities());
+  }
+
+  /**
+   * @param localActivities the activities run by the decision rather than scheduled.
+   */
+  public Decider(WorkflowEventRecords records, EventEmitter eventEmitter,
+                 WorkflowInstance workflowInstance, LocalActivities localActivities) {
     this.records = records;
     this.eventEmitter = eventEmitter;
     this.workflowInstance = workflowInstance;
+    this.localActivities = localActivities;
 
     workflowReplayer = records.workflowReplayer();
     activityReplayer = records.activityReplayer();
     scheduleTimerReplayer = records.scheduleTimerReplayer();
     cancelTimerReplayer = records.cancelTimerReplayer();
     signalReplayer = records.signalRelayer();
+    localActivityReplayer = records.localActivityReplayer();
   }
 
   private static boolean isReady(Promise[] inputs, Promise... waitfor) {
@@ -111,6 +131,8 @@ public class Decider implements SignalEventListener {
       if (scheduleTimerReplayer.isTimerCompletedOrCancelledReplayed()) {
         unCompletedMethods--;
         result.set(null);
+      } else if (scheduleTimerReplayer.isTimerCompletionDeferred()) {
+        deferredPromises.put(scheduleTimerReplayer.getTimerScheduledEvent().getEventId(), result);
       }
 
       return scheduleTimerReplayer.getTimerScheduledEvent().getEventId();
@@ -138,6 +160,11 @@ public class Decider implements SignalEventListener {
   public Promise decideActivity(ActivityProfile activityProfile, MethodProfile methodProfile,
                                 Promise[] inputs,
                                 Promise... waitfor) {
+
+    if (localActivities.contains(activityProfile)) {
+      return decideLocalActivity(activityProfile, methodProfile, inputs, waitfor);
+    }
+
     unCompletedMethods++;
 
     activityReplayer.replay();
@@ -148,9 +175,13 @@ public class Decider implements SignalEventListener {
         unCompletedMethods--;
         return workflowInstance
             .handleCompletedActivity(activityReplayer.getActivityCompletedEvent());
-      } else {
-        return new Promise();
       }
+
+      Promise promise = new Promise();
+      if (activityReplayer.isActivityCompletionDeferred()) {
+        deferredPromises.put(records.currentEvent().getEventId(), promise);
+      }
+      return promise;
     }
 
     //Determine the activity is ready for run after the activity replay
@@ -162,6 +193,43 @@ public class Decider implements SignalEventListener {
         .startActivity(activityProfile, methodProfile, inputs, records.currentEvent().getEventId());
   }
 
+  /**
+   * Run the local activity in the current thread once its inputs are ready, and record its result.
+   * The recorded result is replayed rather than running the activity again.
+   */
+  private Promise decideLocalActivity(ActivityProfile activityProfile,
+                                      MethodProfile methodProfile, Promise[] inputs,
+                                      Promise... waitfor) {
+    unCompletedMethods++;
+
+    localActivityReplayer.replay();
+
+    if (localActivityReplayer.isLocalActivityReplayed()) {
+      unCompletedMethods--;
+      return workflowInstance
+          .handleCompletedActivity(localActivityReplayer.getLocalActivityCompletedEvent());
+    }
+
+    if (!isReady(inputs, waitfor)) {
+      return new Promise();
+    }
+
+    Object[] args = new Object[inputs.length];
+    for (int i = 0; i < inputs.length; i++) {
+      args[i] = inputs[i].get();
+    }
+
+    String result = localActivities.execute(activityProfile, methodProfile, args);
+
+    eventEmitter.recordLocalActivity(activityProfile, methodProfile, result,
+                                     records.currentEvent().getEventId());
+
+    unCompletedMethods--;
+
+    //decoded like the replayed result, so the workflow sees the same value in both cases.
+    return new LazyPromise(result, methodProfile.getReturnType(), null);
+  }
+
   public boolean isStartMethodCompleted() {
     return unCompletedMethods == 0;
   }
@@ -174,4 +242,26 @@ public class Decider implements SignalEventListener {
     workflowInstance.signalEvent(event);
   }
 
+  /**
+   * The replay reached the completion of an activity or timer, which is set to its promise. The
+   * promise is only read once the replay has passed the completion, e.g. by the activities taking
+   * it as an input.
+   */
+  public void completedEvent(Event event) {
+
+    Promise promise = deferredPromises.remove(event.getPrecedingId());
+
+    if (promise == null) {
+      return;
+    }
+
+    unCompletedMethods--;
+
+    if (event instanceof ActivityCompletedEvent) {
+      promise.set(workflowInstance.handleCompletedActivity((ActivityCompletedEvent) event).get());
+    } else {
+      promise.set(null);
+    }
+  }
+
 }
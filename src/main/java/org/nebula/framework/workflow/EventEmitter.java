@@ -25,18 +25,25 @@ import org.nebula.framework.client.Request;
 import org.nebula.framework.client.request.CancelTimerRequest;
 import org.nebula.framework.client.request.CompleteDecisionRequest;
 import org.nebula.framework.client.request.CompleteWorkflowRequest;
+import org.nebula.framework.client.request.DecisionCommand;
+import org.nebula.framework.client.request.RecordLocalActivityRequest;
 import org.nebula.framework.client.request.ScheduleTimerRequest;
 import org.nebula.framework.client.request.StartActivityRequest;
 import org.nebula.framework.client.request.StartWorkflowRequest;
 import org.nebula.framework.client.response.CancelTimerResponse;
+import org.nebula.framework.client.response.CompleteDecisionResponse;
+import org.nebula.framework.client.response.RecordLocalActivityResponse;
 import org.nebula.framework.client.response.ScheduleTimerResponse;
 import org.nebula.framework.client.response.StartActivityResponse;
+import org.nebula.framework.core.PayloadOffloader;
 import org.nebula.framework.core.Promise;
 import org.nebula.framework.model.ActivityProfile;
 import org.nebula.framework.model.Input;
 import org.nebula.framework.model.MethodProfile;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class EventEmitter {
 
@@ -51,13 +58,44 @@ public class EventEmitter {
   private String realm;
   private String realmActId;
 
+  //the commands sent along with the CompleteDecisionRequest, null if they are sent one by one.
+  private List<DecisionCommand> commands;
+
+  private PayloadOffloader payloadOffloader;
+
+  private int commandsEmitted = 0;
+
   public EventEmitter(NebulaClient nebulaClient, String registrationId, String instanceId,
                       String realm, String realmActId) {
+    this(nebulaClient, registrationId, instanceId, realm, realmActId, false);
+  }
+
+  /**
+   * @param batchCommands true to send the started activities, the local activity records and the
+   *                      cancelled timers in the CompleteDecisionRequest rather than one request
+   *                      for each.
+   */
+  public EventEmitter(NebulaClient nebulaClient, String registrationId, String instanceId,
+                      String realm, String realmActId, boolean batchCommands) {
+    this(nebulaClient, registrationId, instanceId, realm, realmActId, batchCommands, null);
+  }
+
+  /**
+   * @param payloadOffloader offloads the large inputs of the activities, null to keep them inline.
+   */
+  public EventEmitter(NebulaClient nebulaClient, String registrationId, String instanceId,
+                      String realm, String realmActId, boolean batchCommands,
+                      PayloadOffloader payloadOffloader) {
+    this.payloadOffloader = payloadOffloader;
     this.nebulaClient = nebulaClient;
     this.registrationId = registrationId;
     this.instanceId = instanceId;
     this.realm = realm;
     this.realmActId = realmActId;
+
+    if (batchCommands) {
+      this.commands = new ArrayList<DecisionCommand>();
+    }
   }
 
   public Promise startActivity(ActivityProfile activityProfile, MethodProfile methodProfile,
@@ -66,6 +104,8 @@ public class EventEmitter {
     log.debug("startActivity for instanceId= " + instanceId + ", realm=" + realm + ", activity="
               + activityProfile.getActivity() + ", method=" + methodProfile.getName());
 
+    commandsEmitted++;
+
     StartActivityRequest request = new StartActivityRequest();
     request.setActivityProfile(activityProfile);
     request.setMethodProfile(methodProfile);
@@ -74,11 +114,12 @@ public class EventEmitter {
 
     String[] _inputs = new String[inputs.length];
     for (int i = 0; i < inputs.length; i++) {
-        _inputs[i] = toJson(inputs[i].get());
+      _inputs[i] = inputs[i] instanceof LazyPromise ? ((LazyPromise) inputs[i]).toJsonInput()
+                                                    : toJson(inputs[i].get());
     }
 
     Input input = new Input();
-    input.setInputs(_inputs);
+    input.setInputs(PayloadOffloader.offload(payloadOffloader, _inputs));
     request.setInput(input);
 
     request.setRegistrationId(registrationId);
@@ -88,6 +129,14 @@ public class EventEmitter {
         precedingActivityEventId == Integer.MAX_VALUE ? eventId
                                                       : precedingActivityEventId);
 
+    if (commands != null) {
+      if (!commands.isEmpty()) {
+        request.setEventId(DecisionCommand.PRECEDING_COMMAND);
+      }
+      commands.add(DecisionCommand.startActivity(request));
+      return new Promise();
+    }
+
     StartActivityResponse response = post(request);
     precedingActivityEventId = response.getEventId();
 
@@ -96,11 +145,60 @@ public class EventEmitter {
     return new Promise();
   }
 
+  /**
+   * Record the result of a local activity run by the decision. The record is sent along with the
+   * CompleteDecisionRequest if the commands are batched.
+   *
+   * @param result the result in json.
+   */
+  public void recordLocalActivity(ActivityProfile activityProfile, MethodProfile methodProfile,
+                                  String result, int eventId) {
+
+    log.debug("recordLocalActivity for instanceId= " + instanceId + ", realm=" + realm
+              + ", activity=" + activityProfile.getActivity() + ", method="
+              + methodProfile.getName());
+
+    commandsEmitted++;
+
+    RecordLocalActivityRequest request = new RecordLocalActivityRequest();
+    request.setActivityProfile(activityProfile);
+    request.setMethodProfile(methodProfile);
+
+    Input input = new Input();
+    input.setInputs(PayloadOffloader.offload(payloadOffloader, new String[]{result}));
+    request.setInput(input);
+
+    request.setRegistrationId(registrationId);
+    request.setInstanceId(instanceId);
+
+    request.setEventId(
+        precedingActivityEventId == Integer.MAX_VALUE ? eventId
+                                                      : precedingActivityEventId);
+
+    if (commands != null) {
+      if (!commands.isEmpty()) {
+        request.setEventId(DecisionCommand.PRECEDING_COMMAND);
+      }
+      commands.add(DecisionCommand.recordLocalActivity(request));
+      return;
+    }
+
+    RecordLocalActivityResponse response = post(request);
+    precedingActivityEventId = response.getEventId();
+
+    log.debug("recordLocalActivity eventId=" + precedingActivityEventId);
+  }
+
   public int startTimer(int period, int currentEventId) {
 
     log.debug(
         "startTimer for instanceId= " + instanceId + ", realm=" + realm + ", period=" + period);
 
+    commandsEmitted++;
+
+    //the timer id is needed in the decision, so the commands before the timer go first.
+    sendCommands();
+
     ScheduleTimerRequest request = new ScheduleTimerRequest();
     request.setInstanceId(instanceId);
     request.setRegistrationId(registrationId);
@@ -122,12 +220,19 @@ public class EventEmitter {
     log.debug(
         "cancelTimer for instanceId= " + instanceId + ", realm=" + realm + ",timerId=" + timerId);
 
+    commandsEmitted++;
+
     CancelTimerRequest request = new CancelTimerRequest();
     request.setRegistrationId(registrationId);
     request.setInstanceId(instanceId);
     request.setTimerId(timerId);
     request.setRealms(Arrays.asList(realm));
 
+    if (commands != null) {
+      commands.add(DecisionCommand.cancelTimer(request));
+      return;
+    }
+
     CancelTimerResponse response = post(request);
     precedingActivityEventId = response.getEventId();
 
@@ -146,6 +251,14 @@ public class EventEmitter {
     request.setRealm(realm);
     request.setRealmActId(realmActId);
 
+    if (commands != null && !commands.isEmpty()) {
+      request.setCommands(new ArrayList<DecisionCommand>(commands));
+
+      CompleteDecisionResponse response = post(request);
+      resolveEventIds(response.getEventIds());
+      return;
+    }
+
     post(request);
 
   }
@@ -155,6 +268,10 @@ public class EventEmitter {
     log.debug("completeWorkflow for instanceId= " + instanceId + ", realm=" + realm + ",startMode="
               + startMode);
 
+    commandsEmitted++;
+
+    sendCommands();
+
     CompleteWorkflowRequest request = new CompleteWorkflowRequest();
 
     request.setRegistrationId(registrationId);
@@ -168,6 +285,62 @@ public class EventEmitter {
 
   }
 
+  /**
+   * @return the number of the activities, local activity records, timers and completions emitted
+   * by the decision.
+   */
+  public int getCommandsEmitted() {
+    return commandsEmitted;
+  }
+
+  /**
+   * Send the buffered commands one by one, e.g. before a request which needs their events.
+   */
+  private void sendCommands() {
+
+    if (commands == null || commands.isEmpty()) {
+      return;
+    }
+
+    List<DecisionCommand> buffered = new ArrayList<DecisionCommand>(commands);
+    commands.clear();
+
+    for (DecisionCommand command : buffered) {
+      if (command.getCommandType() == DecisionCommand.CommandType.StartActivity) {
+        StartActivityRequest request = command.getStartActivity();
+        if (request.getEventId() == DecisionCommand.PRECEDING_COMMAND) {
+          request.setEventId(precedingActivityEventId);
+        }
+        StartActivityResponse response = post(request);
+        precedingActivityEventId = response.getEventId();
+      } else if (command.getCommandType()
+                 == DecisionCommand.CommandType.RecordLocalActivity) {
+        RecordLocalActivityRequest request = command.getRecordLocalActivity();
+        if (request.getEventId() == DecisionCommand.PRECEDING_COMMAND) {
+          request.setEventId(precedingActivityEventId);
+        }
+        RecordLocalActivityResponse response = post(request);
+        precedingActivityEventId = response.getEventId();
+      } else {
+        CancelTimerResponse response = post(command.getCancelTimer());
+        precedingActivityEventId = response.getEventId();
+      }
+    }
+  }
+
+  private void resolveEventIds(List<Integer> eventIds) {
+
+    if (eventIds == null || eventIds.size() != commands.size()) {
+      log.warn("The server returned " + (eventIds == null ? 0 : eventIds.size())
+               + " event ids for " + commands.size() + " commands.");
+    } else if (!eventIds.isEmpty()) {
+      precedingActivityEventId = eventIds.get(eventIds.size() - 1);
+      log.debug("completeDecision eventIds=" + eventIds);
+    }
+
+    commands.clear();
+  }
+
   private <T> T post(Request request) throws RuntimeException {
     try {
       return nebulaClient.post(request);
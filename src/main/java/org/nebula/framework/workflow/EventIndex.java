@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.workflow;
+
+import org.nebula.framework.event.Event;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.nebula.framework.event.Event.EVENT_TYPE;
+
+/**
+ * Incremental index over the history events of one workflow instance. Events are added page by
+ * page as they are loaded, so the lookups only see the events loaded so far.
+ *
+ * The index keeps the positions of the events in the cache rather than the events, so the events
+ * spilled out of the memory are not held by the index.
+ *
+ * Not thread safe.
+ */
+public class EventIndex {
+
+  private Map<Long, Integer> precedingEvents = new HashMap<Long, Integer>();
+
+  //bit i is set if an event with EVENT_TYPE.values()[i] has been indexed.
+  private int eventTypes = 0;
+
+  private int size = 0;
+
+  /**
+   * @param firstPosition the position of the first event in the cache.
+   */
+  public void addAll(List<Event> events, int firstPosition) {
+    int position = firstPosition;
+    for (Event event : events) {
+      add(event, position++);
+    }
+  }
+
+  public void add(Event event, int position) {
+    if (event == null) {
+      throw new IllegalArgumentException("The event can't be null.");
+    }
+
+    EVENT_TYPE eventType = event.getEventType();
+
+    if (eventType != null) {
+      Long key = key(event.getPrecedingId(), eventType);
+
+      //keep the first event like the linear scan did.
+      if (!precedingEvents.containsKey(key)) {
+        precedingEvents.put(key, position);
+      }
+
+      eventTypes |= 1 << eventType.ordinal();
+    }
+
+    size++;
+  }
+
+  /**
+   * @return the position of the event, -1 if it's not found.
+   */
+  public int findByPrecedingId(int precedingId, EVENT_TYPE eventType) {
+    Integer position = precedingEvents.get(key(precedingId, eventType));
+    return position == null ? -1 : position;
+  }
+
+  public boolean contains(EVENT_TYPE eventType) {
+    return (eventTypes & (1 << eventType.ordinal())) != 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private static Long key(int precedingId, EVENT_TYPE eventType) {
+    return ((long) precedingId << 8) | eventType.ordinal();
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.workflow;
+
+import org.nebula.framework.core.PayloadOffloader;
+import org.nebula.framework.core.Promise;
+
+import static org.nebula.framework.utils.JsonUtils.constructFromCanonical;
+import static org.nebula.framework.utils.JsonUtils.toJson;
+
+/**
+ * The ready promise of a replayed result, which keeps the json and decodes it on the first
+ * {@link #get()}: most of the results replayed aren't read again by the workflow.
+ *
+ * Not thread safe, like the decision which replays it.
+ */
+class LazyPromise<V> extends Promise<V> {
+
+  //null once it's decoded or set.
+  private String json;
+
+  private final String type;
+
+  private final PayloadOffloader payloadOffloader;
+
+  LazyPromise(String json, String type, PayloadOffloader payloadOffloader) {
+    this.json = json;
+    this.type = type;
+    this.payloadOffloader = payloadOffloader;
+  }
+
+  @Override
+  public void set(V v) {
+    json = null;
+    super.set(v);
+  }
+
+  @Override
+  public V get() {
+    if (json != null) {
+      V v = (V) constructFromCanonical(PayloadOffloader.resolve(payloadOffloader, json), type);
+      json = null;
+      super.set(v);
+    }
+    return super.get();
+  }
+
+  @Override
+  public boolean isReady() {
+    return true;
+  }
+
+  /**
+   * @return the json as it was replayed if it isn't decoded yet, so a result passed on to another
+   * activity isn't decoded and encoded again.
+   */
+  String toJsonInput() {
+    return json != null ? json : toJson(super.get());
+  }
+
+  boolean isDecoded() {
+    return json == null;
+  }
+
+}
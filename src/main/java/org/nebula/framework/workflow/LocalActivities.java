@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.workflow;
+
+import static org.nebula.framework.utils.JsonUtils.toJson;
+
+import org.nebula.framework.activity.ActivityDefinition;
+import org.nebula.framework.activity.ActivityInstanceProvider;
+import org.nebula.framework.core.NebulaException;
+import org.nebula.framework.model.ActivityProfile;
+import org.nebula.framework.model.MethodProfile;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The local activities added to a workflow worker, which are run by the decisions in place of
+ * scheduling the activity tasks.
+ *
+ * Thread safe, the decisions of all the workflows of the worker share it.
+ */
+public class LocalActivities {
+
+  private Map<ActivityProfile, ActivityDefinition>
+      activityDefinitions =
+      new ConcurrentHashMap<ActivityProfile, ActivityDefinition>();
+
+  public void add(Class activityImplementation) {
+
+    ActivityDefinition activityDefinition = new ActivityDefinition(activityImplementation);
+
+    if (!activityDefinition.isLocal()) {
+      throw new IllegalArgumentException(
+          "The activity " + activityImplementation.getName()
+          + " isn't annotated with @Activity(local = true).");
+    }
+
+    activityDefinitions.put(activityDefinition.getActivityProfile(), activityDefinition);
+  }
+
+  public boolean contains(ActivityProfile activityProfile) {
+    //most workers have no local activity, so the profile isn't hashed for them.
+    return !activityDefinitions.isEmpty() && activityDefinitions.containsKey(activityProfile);
+  }
+
+  public int size() {
+    return activityDefinitions.size();
+  }
+
+  /**
+   * Run the activity method in the calling thread.
+   *
+   * @return the result in json, as the ActivityHandler completes an activity.
+   */
+  public String execute(ActivityProfile activityProfile, MethodProfile methodProfile,
+                        Object[] args) {
+
+    ActivityDefinition activityDefinition = activityDefinitions.get(activityProfile);
+
+    Method method = null;
+    if (activityDefinition != null) {
+      method = activityDefinition.getImplementationMethod(methodProfile);
+    }
+
+    if (method == null) {
+      throw new IllegalArgumentException(
+          "There is no local activity method for " + activityProfile.getActivity() + "."
+          + methodProfile.getName());
+    }
+
+    ActivityInstanceProvider instanceProvider = activityDefinition.getInstanceProvider();
+
+    try {
+      Object instance = instanceProvider.acquire();
+      try {
+        return toJson(method.invoke(instance, args));
+      } finally {
+        instanceProvider.release(instance);
+      }
+    } catch (InvocationTargetException e) {
+      throw new NebulaException("The local activity " + activityProfile.getActivity() + "."
+                                + methodProfile.getName() + " failed.", e.getCause());
+    } catch (Exception e) {
+      throw new NebulaException("Failed to run the local activity "
+                                + activityProfile.getActivity() + "." + methodProfile.getName(),
+                                e);
+    }
+  }
+
+}
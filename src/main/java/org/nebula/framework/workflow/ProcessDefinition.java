@@ -16,6 +16,7 @@
 
 package org.nebula.framework.workflow;
 
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.nebula.framework.annotation.Signal;
 import org.nebula.framework.annotation.Start;
 import org.nebula.framework.annotation.Workflow;
@@ -29,6 +30,8 @@ import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.nebula.framework.utils.JsonUtils.readersForCanonical;
+
 public class ProcessDefinition {
 
   private Class workflowImplementation;
@@ -39,6 +42,11 @@ public class ProcessDefinition {
 
   private Map<MethodProfile, Method> signalMethods = new HashMap<MethodProfile, Method>();
 
+  //the readers of the parameters of the start and signal methods.
+  private Map<MethodProfile, ObjectReader[]>
+      parameterReaders =
+      new HashMap<MethodProfile, ObjectReader[]>();
+
   public ProcessDefinition(Class workflowImplementation) {
     if (workflowImplementation == null) {
       throw new IllegalArgumentException("The workflowImplementation can't be null.");
@@ -107,6 +115,8 @@ public class ProcessDefinition {
       ensureTimerStartWithoutArgument(startMethodProfile);
 
       startMethod.put(startMethodProfile, method);
+      parameterReaders.put(startMethodProfile,
+                           readersForCanonical(startMethodProfile.getParameterTypes()));
     }
   }
 
@@ -141,7 +151,10 @@ public class ProcessDefinition {
     Signal signal = (Signal) method.getAnnotation(Signal.class);
 
     if (signal != null) {
-      signalMethods.put(MethodProfileFactory.create(method), method);
+      MethodProfile signalProfile = MethodProfileFactory.create(method);
+
+      signalMethods.put(signalProfile, method);
+      parameterReaders.put(signalProfile, readersForCanonical(signalProfile.getParameterTypes()));
     }
   }
 
@@ -206,6 +219,14 @@ public class ProcessDefinition {
     return signalMethods.get(signalProfile);
   }
 
+  /**
+   * @return the readers of the parameters of the start or signal method, null if the method
+   * profile doesn't belong to the workflow.
+   */
+  public ObjectReader[] getParameterReaders(MethodProfile methodProfile) {
+    return parameterReaders.get(methodProfile);
+  }
+
   public WorkflowProfile getWorkflowProfile() {
     return workflowProfile;
   }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.workflow;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU of the workflows decided by the worker, keyed by instanceId. It keeps the history
+ * events loaded for a workflow instance, so that the next decision task of the instance only
+ * fetches the events appended since. The workflow itself is replayed from the start by every
+ * decision, so the implementation object isn't kept.
+ *
+ * An entry is taken out of the cache while the decision runs, so that two decision tasks of the
+ * same instance never share the records.
+ */
+public class StickyWorkflowCache {
+
+  private final Map<String, StickyWorkflow> workflows;
+
+  private final int maxSize;
+
+  public StickyWorkflowCache(final int maxSize) {
+
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("The maxSize can't be negative.");
+    }
+
+    this.maxSize = maxSize;
+
+    this.workflows = new LinkedHashMap<String, StickyWorkflow>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String, StickyWorkflow> eldest) {
+        if (size() > maxSize) {
+          eldest.getValue().close();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Take the cached workflow out of the cache.
+   *
+   * @return null if the workflow isn't cached or it is evicted.
+   */
+  public synchronized StickyWorkflow remove(String instanceId) {
+    return workflows.remove(instanceId);
+  }
+
+  /**
+   * The workflow replaced by a different one is closed, as an evicted one.
+   *
+   * @return false if the cache is disabled, so the caller still owns the workflow.
+   */
+  public synchronized boolean put(String instanceId, StickyWorkflow workflow) {
+    if (isEnabled()) {
+      StickyWorkflow previous = workflows.put(instanceId, workflow);
+      if (previous != null && previous != workflow) {
+        previous.close();
+      }
+      return true;
+    }
+    return false;
+  }
+
+  public synchronized int size() {
+    return workflows.size();
+  }
+
+  public static class StickyWorkflow {
+
+    private WorkflowEventRecords records;
+
+    public StickyWorkflow(WorkflowEventRecords records) {
+      this.records = records;
+    }
+
+    public WorkflowEventRecords getRecords() {
+      return records;
+    }
+
+    public void close() {
+      if (records != null) {
+        records.close();
+      }
+    }
+  }
+
+}
@@ -24,6 +24,7 @@ import org.nebula.framework.client.request.SignalWorkflowRequest;
 import org.nebula.framework.client.request.StartWorkflowRequest;
 import org.nebula.framework.client.response.StartWorkflowResponse;
 import org.nebula.framework.core.NebulaException;
+import org.nebula.framework.core.PayloadOffloader;
 import org.nebula.framework.core.Promise;
 import org.nebula.framework.model.Input;
 import org.nebula.framework.model.MethodProfile;
@@ -43,14 +44,27 @@ public class WorkflowClientImpl implements WorkflowClient {
 
   private ThreadLocal<String> instanceId = new ThreadLocal<String>();
 
+  private PayloadOffloader payloadOffloader;
+
   public WorkflowClientImpl(NebulaClient nebulaClient,
                             WorkflowProfile workflowVersion, List<String> realms) {
+    this(nebulaClient, workflowVersion, realms, null);
+  }
+
+  /**
+   * @param payloadOffloader offloads the large inputs of the start and signal methods, null to
+   *                         keep them inline.
+   */
+  public WorkflowClientImpl(NebulaClient nebulaClient,
+                            WorkflowProfile workflowVersion, List<String> realms,
+                            PayloadOffloader payloadOffloader) {
 
     validate(nebulaClient, workflowVersion, realms);
 
     this.nebulaClient = nebulaClient;
     this.workflowVersion = workflowVersion;
     this.realms = realms;
+    this.payloadOffloader = payloadOffloader;
   }
 
   protected <T> Promise<T> startWorkflow(String methodName, String[] parameterTypes, Object[] inputs) {
@@ -162,7 +176,7 @@ public class WorkflowClientImpl implements WorkflowClient {
     }
 
     Input input = new Input();
-    input.setInputs(_inputs);
+    input.setInputs(PayloadOffloader.offload(payloadOffloader, _inputs));
 
     return input;
   }
@@ -19,8 +19,10 @@ package org.nebula.framework.workflow;
 import org.nebula.framework.client.NebulaClient;
 import org.nebula.framework.client.Request;
 import org.nebula.framework.client.Response;
+import org.nebula.framework.client.request.BatchPollWorkflowRequest;
 import org.nebula.framework.client.request.PollWorkflowRequest;
 import org.nebula.framework.client.response.PollWorkflowResponse;
+import org.nebula.framework.core.Bulkhead;
 import org.nebula.framework.core.Configuration;
 import org.nebula.framework.core.EventPoller;
 import org.nebula.framework.core.NebulaException;
@@ -29,10 +31,48 @@ import java.util.List;
 
 public class WorkflowEventPoller extends EventPoller<ProcessDefinition, PollWorkflowResponse> {
 
+  private StickyWorkflowCache stickyWorkflowCache;
+
+  private LocalActivities localActivities;
+
+  private final WorkflowMetrics metrics;
+
   public WorkflowEventPoller(NebulaClient nebulaClient,
                              ProcessDefinition processDefinition, List<String> realms,
                              Configuration configuration) {
+    this(nebulaClient, processDefinition, realms, configuration, new StickyWorkflowCache(0));
+  }
+
+  public WorkflowEventPoller(NebulaClient nebulaClient,
+                             ProcessDefinition processDefinition, List<String> realms,
+                             Configuration configuration,
+                             StickyWorkflowCache stickyWorkflowCache) {
     super(nebulaClient, processDefinition, realms, configuration);
+    this.stickyWorkflowCache = stickyWorkflowCache;
+    this.localActivities = new LocalActivities();
+    this.metrics = new WorkflowMetrics(configuration.getMetricsRegistry(),
+                                       processDefinition.getWorkflowProfile());
+  }
+
+  public WorkflowEventPoller(NebulaClient nebulaClient,
+                             ProcessDefinition processDefinition, List<String> realms,
+                             Configuration configuration,
+                             StickyWorkflowCache stickyWorkflowCache,
+                             Bulkhead bulkhead) {
+    this(nebulaClient, processDefinition, realms, configuration, stickyWorkflowCache, bulkhead,
+         new LocalActivities());
+  }
+
+  public WorkflowEventPoller(NebulaClient nebulaClient,
+                             ProcessDefinition processDefinition, List<String> realms,
+                             Configuration configuration,
+                             StickyWorkflowCache stickyWorkflowCache,
+                             Bulkhead bulkhead, LocalActivities localActivities) {
+    super(nebulaClient, processDefinition, realms, configuration, bulkhead);
+    this.stickyWorkflowCache = stickyWorkflowCache;
+    this.localActivities = localActivities;
+    this.metrics = new WorkflowMetrics(configuration.getMetricsRegistry(),
+                                       processDefinition.getWorkflowProfile());
   }
 
   @Override
@@ -42,6 +82,15 @@ public class WorkflowEventPoller extends EventPoller<ProcessDefinition, PollWork
     return request;
   }
 
+  @Override
+  protected Request createBatchPollRequest(ProcessDefinition processDefinition,
+                                           List<String> realms, int maxTasks) {
+    BatchPollWorkflowRequest request = new BatchPollWorkflowRequest();
+    request.setRealms(realms);
+    request.setMaxTasks(maxTasks);
+    return request;
+  }
+
   @Override
   protected PollWorkflowResponse processResponse(PollWorkflowResponse response) {
     if (Response.Status.SUCCESS == response.getStatus()) {
@@ -55,7 +104,8 @@ public class WorkflowEventPoller extends EventPoller<ProcessDefinition, PollWork
   protected Runnable createNodeHandler(NebulaClient nebulaClient,
                                        ProcessDefinition processDefinition,
                                        Configuration configuration, PollWorkflowResponse response) {
-    return new WorkflowHandler(nebulaClient, processDefinition, configuration, response);
+    return new WorkflowHandler(nebulaClient, processDefinition, configuration, response,
+                               stickyWorkflowCache, localActivities, metrics);
   }
 
 }
@@ -18,21 +18,31 @@ package org.nebula.framework.workflow;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nebula.framework.client.AsyncNebulaClient;
 import org.nebula.framework.client.NebulaClient;
 import org.nebula.framework.client.request.GetEventsRequest;
 import org.nebula.framework.client.request.StartWorkflowRequest.StartMode;
 import org.nebula.framework.client.response.GetEventsResponse;
 import org.nebula.framework.core.Cache;
 import org.nebula.framework.core.CacheLoader;
+import org.nebula.framework.core.CacheSpill;
+import org.nebula.framework.core.MappedFileSpill;
 import org.nebula.framework.core.Configuration;
+import org.nebula.framework.core.NebulaException;
 import org.nebula.framework.event.ActivityCompletedEvent;
 import org.nebula.framework.event.Event;
+import org.nebula.framework.event.LocalActivityCompletedEvent;
+import org.nebula.framework.event.BinaryEventCodec;
 import org.nebula.framework.event.TimerCancelledEvent;
 import org.nebula.framework.event.TimerCompletedEvent;
 import org.nebula.framework.event.WorkflowScheduledEvent;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import static org.nebula.framework.event.Event.EVENT_TYPE;
 
@@ -42,74 +52,89 @@ public class WorkflowEventRecords {
 
   private Cache<Event> cache;
 
+  private EventIndex eventIndex = new EventIndex();
+
   private String instanceId;
 
+  private EventsLoader eventsLoader;
+
   private Cache<Event>.CacheIterator eventIterator;
 
   private SignalEventListener signalEventListener;
 
+  private CompletedEventListener completedEventListener;
+
+  //the type of the replayed scheduled events whose completion is told once the replay reaches it,
+  //by their event id.
+  private Map<Integer, EVENT_TYPE> deferredEvents = new HashMap<Integer, EVENT_TYPE>();
+
   private Event currentEvent;
 
   public WorkflowEventRecords(final NebulaClient nebulaClient,
                               final String instanceId, final Configuration configuration) {
     this(nebulaClient, instanceId, configuration.getEventsPageSize(),
-         configuration.getMaxEventsCache());
+         configuration.getMaxEventsCache(), configuration.getEventsPrefetchPages(),
+         createSpill(configuration));
   }
 
   public WorkflowEventRecords(final NebulaClient nebulaClient, final String instanceId,
                               final int pageSize, final int maxCacheSize) {
+    this(nebulaClient, instanceId, pageSize, maxCacheSize, 0, null);
+  }
 
-    checkRange(pageSize, maxCacheSize);
-
-    this.instanceId = instanceId;
-
-    this.cache = new Cache<Event>(new CacheLoader<Event>() {
-
-      private int totalPages = 1;
-      private int pageNo = 0;
-
-      public List<Event> load() {
-
-        try {
-
-          if (pageNo < totalPages) {
+  public WorkflowEventRecords(final NebulaClient nebulaClient, final String instanceId,
+                              final int pageSize, final int maxCacheSize,
+                              final int prefetchPages) {
+    this(nebulaClient, instanceId, pageSize, maxCacheSize, prefetchPages, null);
+  }
 
-            GetEventsResponse response = getEvents();
+  /**
+   * @param prefetchPages the max number of the pages fetched ahead of the replay. The pages are
+   *                      only fetched ahead by an {@link AsyncNebulaClient}.
+   * @param spill         the spill of the events beyond the maxCacheSize, null if the history
+   *                      can't be larger than the maxCacheSize.
+   */
+  public WorkflowEventRecords(final NebulaClient nebulaClient, final String instanceId,
+                              final int pageSize, final int maxCacheSize,
+                              final int prefetchPages, final CacheSpill<Event> spill) {
 
-            pageNo = response.getPageNo();
-            totalPages = totalPages(response.getTotal());
+    checkRange(pageSize, maxCacheSize);
 
-            log.debug("pageNo=" + pageNo + ", totalPages=" + totalPages);
+    if (prefetchPages < 0) {
+      throw new IllegalArgumentException("The prefetchPages can't be negative.");
+    }
 
-            for (Event e : response.getEvents()) {
-              log.debug("event.id=" + e.getEventId() + ",type=" + e.getEventType());
-            }
+    this.instanceId = instanceId;
 
-            return response.getEvents();
-          }
-        } catch (Exception e) {
-          log.error("failed to pull history events", e);
-        }
+    //the pages beyond the cache can't be loaded anyway.
+    this.eventsLoader =
+        new EventsLoader(nebulaClient, pageSize, Math.min(prefetchPages, maxCacheSize / pageSize));
 
-        return new ArrayList<Event>();
-      }
+    this.cache = new Cache<Event>(eventsLoader, maxCacheSize, spill);
 
-      private int totalPages(int total) {
-        return (int) Math.ceil(1.0 * total / pageSize);
-      }
+    eventIterator = cache.iterator();
+  }
 
-      private GetEventsResponse getEvents() throws Exception {
-        GetEventsRequest request = new GetEventsRequest();
-        request.setInstanceId(instanceId);
-        request.setPageSize(pageSize);
-        request.setPageNo(pageNo + 1);
+  private static CacheSpill<Event> createSpill(Configuration configuration) {
+    if (!configuration.isSpillEvents()) {
+      return null;
+    }
 
-        return nebulaClient.get(request);
+    String directory = configuration.getEventsSpillDirectory();
 
-      }
-    }, maxCacheSize);
+    //the file is only created once the events are spilled.
+    return new MappedFileSpill<Event>(new BinaryEventCodec(),
+                                      directory == null ? null : new File(directory),
+                                      MappedFileSpill.DEFAULT_SEGMENT_SIZE);
+  }
 
-    eventIterator = cache.iterator();
+  /**
+   * Release the events spilled to the file if any.
+   */
+  public void close() {
+    eventsLoader.cancelPrefetch();
+    eventsLoader.clearTail();
+    cache.close();
   }
 
   private void checkRange(int pageSize, int maxCacheSize) {
@@ -140,6 +165,11 @@ public class WorkflowEventRecords {
     return new ActivityReplayer();
   }
 
+  public LocalActivityReplayer localActivityReplayer() {
+
+    return new LocalActivityReplayer();
+  }
+
   public WorkflowReplayer workflowReplayer() {
     return new WorkflowReplayer();
   }
@@ -148,10 +178,55 @@ public class WorkflowEventRecords {
     this.signalEventListener = signalEventListener;
   }
 
+  public void setCompletedEventListener(CompletedEventListener completedEventListener) {
+    this.completedEventListener = completedEventListener;
+  }
+
   public String getInstanceId() {
     return instanceId;
   }
 
+  /**
+   * @return the number of the pages of events fetched from the server.
+   */
+  public int getPagesFetched() {
+    return eventsLoader.pagesFetched;
+  }
+
+  /**
+   * @return the time the replay waited for the pages of events.
+   */
+  public long getPageWaitMillis() {
+    return eventsLoader.pageWaitNanos / 1000000;
+  }
+
+  public long getPageWaitNanos() {
+    return eventsLoader.pageWaitNanos;
+  }
+
+  /**
+   * Prepare the records kept from the previous decision for a new decision: the cursor is rewound
+   * to the first event and only the events appended since the last loaded one are fetched.
+   *
+   * @return false if the loaded events are stale and the records should be discarded.
+   */
+  public boolean refresh() {
+
+    eventIterator = cache.iterator();
+    currentEvent = null;
+    signalEventListener = null;
+    completedEventListener = null;
+    deferredEvents.clear();
+
+    try {
+      return eventsLoader.loadAppended();
+    } catch (Exception e) {
+      log.warn("failed to refresh history events for instanceId " + instanceId, e);
+    }
+
+    return false;
+  }
+
   private ActivityCompletedEvent findActivityCompletedEventWithPrecedingEvent(
       int eventId) {
     return findEventWithPrecedingId(eventId,
@@ -168,15 +243,75 @@ public class WorkflowEventRecords {
     return findEventWithPrecedingId(eventId, EVENT_TYPE.TimerCancelledEvent);
   }
 
+  /**
+   * Look up the index of the loaded events, then the last pages of the history. The pages between
+   * them are left to the replay, see {@link #deferCompletion(Event)}.
+   */
   private <E> E findEventWithPrecedingId(int eventId, EVENT_TYPE eventType) {
 
-    for (Event event : cache) {
-      if (event.getPrecedingId() == eventId && event.getEventType() == eventType) {
-        return (E) event;
-      }
+    int position = eventIndex.findByPrecedingId(eventId, eventType);
+    if (position >= 0) {
+      return (E) cache.get(position);
     }
 
-    return null;
+    eventsLoader.loadTail();
+
+    position = eventsLoader.tailIndex.findByPrecedingId(eventId, eventType);
+    return position >= 0 ? (E) eventsLoader.tailEvents.get(position) : null;
+  }
+
+  /**
+   * The workflow completion is the last event, and the cancellation is only followed by the events
+   * arrived before the decision it schedules, so both are looked up in the last pages rather than
+   * loading the whole history.
+   */
+  private boolean hasEvent(EVENT_TYPE eventType) {
+
+    if (eventIndex.contains(eventType)) {
+      return true;
+    }
+
+    eventsLoader.loadTail();
+
+    return eventsLoader.tailIndex.contains(eventType);
+  }
+
+  /**
+   * The completion of the scheduled event isn't found, but it may be in the pages not loaded yet.
+   * It's told to the {@link CompletedEventListener} once the replay reaches it.
+   *
+   * @return true if the completion is deferred, false if the scheduled event isn't completed.
+   */
+  private boolean deferCompletion(Event scheduledEvent) {
+
+    if (eventsLoader.isIndexed()) {
+      return false;
+    }
+
+    deferredEvents.put(scheduledEvent.getEventId(), scheduledEvent.getEventType());
+    return true;
+  }
+
+  private void completeDeferred(Event event) {
+
+    EVENT_TYPE scheduledType = deferredEvents.get(event.getPrecedingId());
+
+    if (scheduledType == null) {
+      return;
+    }
+
+    boolean completed = scheduledType == EVENT_TYPE.ActivityScheduledEvent
+                        ? event.isEventType(EVENT_TYPE.ActivityCompletedEvent)
+                        : event.isEventType(EVENT_TYPE.TimerCompletedEvent)
+                          || event.isEventType(EVENT_TYPE.TimerCancelledEvent);
+
+    if (completed) {
+      deferredEvents.remove(event.getPrecedingId());
+
+      if (completedEventListener != null) {
+        completedEventListener.completedEvent(event);
+      }
+    }
   }
 
   public Event currentEvent() {
@@ -199,6 +334,261 @@ public class WorkflowEventRecords {
     return eventIterator.current();
   }
 
+  private class EventsLoader extends CacheLoader<Event> {
+
+    private NebulaClient nebulaClient;
+
+    private int pageSize;
+
+    private int totalPages = 1;
+    private int pageNo = 0;
+
+    //the number of the events in the history.
+    private int total = 0;
+
+    private int prefetchPages;
+
+    //the pages fetched ahead by pageNo, which are consumed in order.
+    private Map<Integer, Future<GetEventsResponse>>
+        prefetched =
+        new HashMap<Integer, Future<GetEventsResponse>>();
+
+    //the last pages fetched for the lookups by pageNo, which are consumed when the replay reaches
+    //them.
+    private Map<Integer, GetEventsResponse>
+        tailPages =
+        new HashMap<Integer, GetEventsResponse>();
+
+    private List<Event> tailEvents = new ArrayList<Event>();
+
+    //the positions in the tailEvents.
+    private EventIndex tailIndex = new EventIndex();
+
+    private boolean tailLoaded = false;
+
+    //the first page of the tail, the pages before it are only loaded by the replay.
+    private int tailPageNo = 0;
+
+    private int pagesFetched = 0;
+
+    private long pageWaitNanos = 0;
+
+    private EventsLoader(NebulaClient nebulaClient, int pageSize, int prefetchPages) {
+      this.nebulaClient = nebulaClient;
+      this.pageSize = pageSize;
+      this.prefetchPages = nebulaClient instanceof AsyncNebulaClient ? prefetchPages : 0;
+    }
+
+    public List<Event> load() {
+
+      try {
+
+        if (pageNo < totalPages) {
+
+          GetEventsResponse response = nextPage(pageNo + 1);
+
+          pageNo = response.getPageNo();
+          total = response.getTotal();
+          totalPages = totalPages(total);
+
+          prefetch();
+
+          log.debug("pageNo=" + pageNo + ", totalPages=" + totalPages);
+
+          for (Event e : response.getEvents()) {
+            log.debug("event.id=" + e.getEventId() + ",type=" + e.getEventType());
+          }
+
+          //the events are added to the cache after the loaded ones.
+          eventIndex.addAll(response.getEvents(), cache.size());
+
+          return response.getEvents();
+        }
+      } catch (Exception e) {
+        log.error("failed to pull history events", e);
+        cancelPrefetch();
+      }
+
+      return new ArrayList<Event>();
+    }
+
+    /**
+     * @return the page fetched ahead if any, otherwise fetch the page now.
+     */
+    private GetEventsResponse nextPage(int pageNo) throws Exception {
+
+      long start = System.nanoTime();
+
+      GetEventsResponse tailPage = tailPages.remove(pageNo);
+      if (tailPage != null) {
+        return tailPage;
+      }
+
+      try {
+        Future<GetEventsResponse> future = prefetched.remove(pageNo);
+        return future != null ? future.get() : getEvents(pageNo);
+      } finally {
+        pagesFetched++;
+        pageWaitNanos += System.nanoTime() - start;
+      }
+    }
+
+    /**
+     * Fetch the last pages not loaded yet once, at least a page of the latest events, so that the
+     * lookups see them without loading the pages between.
+     */
+    private void loadTail() {
+
+      if (tailLoaded || pageNo >= totalPages) {
+        return;
+      }
+
+      if (pageNo == 0) {
+        throw new IllegalStateException("The history of instanceId " + instanceId
+                                        + " isn't replayed yet.");
+      }
+
+      tailLoaded = true;
+
+      //the last page may hold a few events only.
+      int firstPage = total % pageSize == 0 ? totalPages : totalPages - 1;
+      tailPageNo = Math.max(pageNo + 1, firstPage);
+
+      long start = System.nanoTime();
+
+      try {
+        for (int page = tailPageNo; page <= totalPages; page++) {
+          Future<GetEventsResponse> future = prefetched.remove(page);
+          GetEventsResponse response = future != null ? future.get() : getEvents(page);
+
+          pagesFetched++;
+
+          tailPages.put(page, response);
+          tailIndex.addAll(response.getEvents(), tailEvents.size());
+          tailEvents.addAll(response.getEvents());
+        }
+      } catch (Exception e) {
+        throw new NebulaException("Failed to fetch the last history events of instanceId "
+                                  + instanceId, e);
+      } finally {
+        pageWaitNanos += System.nanoTime() - start;
+      }
+
+      log.debug("instanceId=" + instanceId + ", fetched the tail from pageNo=" + tailPageNo
+                + ", totalPages=" + totalPages);
+    }
+
+    /**
+     * @return true if the loaded pages and the tail hold the whole history.
+     */
+    private boolean isIndexed() {
+      return pageNo >= totalPages || (tailLoaded && pageNo + 1 >= tailPageNo);
+    }
+
+    private void clearTail() {
+      tailPages.clear();
+      tailEvents = new ArrayList<Event>();
+      tailIndex = new EventIndex();
+      tailLoaded = false;
+      tailPageNo = 0;
+    }
+
+    /**
+     * Fetch the pages following the current one, up to prefetchPages pages in flight.
+     */
+    private void prefetch() {
+
+      int lastPage = Math.min(totalPages, pageNo + prefetchPages);
+
+      for (int page = pageNo + 1; page <= lastPage; page++) {
+        if (!prefetched.containsKey(page) && !tailPages.containsKey(page)) {
+          Future<GetEventsResponse> future =
+              ((AsyncNebulaClient) nebulaClient).getAsync(createRequest(page), null);
+          prefetched.put(page, future);
+        }
+      }
+    }
+
+    private void cancelPrefetch() {
+      for (Future<GetEventsResponse> future : prefetched.values()) {
+        future.cancel(true);
+      }
+      prefetched.clear();
+    }
+
+    /**
+     * Re-fetch the page holding the last loaded event and append the events after it. The page is
+     * checked against the loaded events so that a history changed on the server is detected.
+     */
+    private boolean loadAppended() throws Exception {
+
+      cancelPrefetch();
+      clearTail();
+
+      int loaded = cache.size();
+
+      if (loaded == 0) {
+        pageNo = 0;
+        totalPages = 1;
+        total = 0;
+        return true;
+      }
+
+      int offset = loaded % pageSize;
+
+      GetEventsResponse response = getEvents(loaded / pageSize + 1);
+
+      List<Event> events = response.getEvents();
+
+      if (response.getTotal() < loaded || events == null || events.size() < offset) {
+        return false;
+      }
+
+      if (offset > 0
+          && events.get(offset - 1).getEventId() != cache.get(loaded - 1).getEventId()) {
+        return false;
+      }
+
+      List<Event> appended = events.subList(offset, events.size());
+
+      if (appended.size() > 0
+          && appended.get(0).getEventId() <= cache.get(loaded - 1).getEventId()) {
+        return false;
+      }
+
+      for (Event event : appended) {
+        cache.add(event);
+      }
+      eventIndex.addAll(appended, loaded);
+
+      pageNo = response.getPageNo();
+      total = response.getTotal();
+      totalPages = totalPages(total);
+
+      log.debug("instanceId=" + instanceId + ", appended " + appended.size() + " events, pageNo="
+                + pageNo + ", totalPages=" + totalPages);
+
+      return true;
+    }
+
+    private int totalPages(int total) {
+      return (int) Math.ceil(1.0 * total / pageSize);
+    }
+
+    private GetEventsResponse getEvents(int pageNo) throws Exception {
+      return nebulaClient.get(createRequest(pageNo));
+    }
+
+    private GetEventsRequest createRequest(int pageNo) {
+      GetEventsRequest request = new GetEventsRequest();
+      request.setInstanceId(instanceId);
+      request.setPageSize(pageSize);
+      request.setPageNo(pageNo);
+
+      return request;
+    }
+  }
+
   public abstract class Replayer {
 
     protected void replay() {
@@ -207,6 +597,10 @@ public class WorkflowEventRecords {
 
         currentEvent = current();
 
+        if (!deferredEvents.isEmpty()) {
+          completeDeferred(currentEvent);
+        }
+
         if (interestedEvent()) {
           replayInternal();
           next();
@@ -235,7 +629,8 @@ public class WorkflowEventRecords {
           EVENT_TYPE.ActivityScheduledEvent) || currentEvent
                  .isEventType(EVENT_TYPE.TimerScheduledEvent) || currentEvent
                  .isEventType(EVENT_TYPE.TimerCancelledEvent) || currentEvent
-                 .isEventType(EVENT_TYPE.WorkflowScheduledEvent);
+                 .isEventType(EVENT_TYPE.WorkflowScheduledEvent) || currentEvent
+                 .isEventType(EVENT_TYPE.LocalActivityCompletedEvent);
     }
 
     private boolean isSignalEvent() {
@@ -271,6 +666,8 @@ public class WorkflowEventRecords {
 
     private boolean isTimerCompletedOrCancelledReplayed;
 
+    private boolean isTimerCompletionDeferred;
+
     private Event timerScheduledEvent;
 
     protected boolean interestedEvent() {
@@ -293,6 +690,9 @@ public class WorkflowEventRecords {
           findTimerCancelledEventWithPrecedingEvent(timerScheduledEvent
                                                         .getEventId());
       isTimerCompletedOrCancelledReplayed = completedEvent != null || cancelledEvent != null;
+
+      isTimerCompletionDeferred =
+          !isTimerCompletedOrCancelledReplayed && deferCompletion(timerScheduledEvent);
     }
 
     public boolean isTimerScheduledReplayed() {
@@ -304,6 +704,13 @@ public class WorkflowEventRecords {
       return isTimerCompletedOrCancelledReplayed;
     }
 
+    /**
+     * @return true if the completion or cancellation is told once the replay reaches it.
+     */
+    public boolean isTimerCompletionDeferred() {
+      return isTimerCompletionDeferred;
+    }
+
     public Event getTimerScheduledEvent() {
       return timerScheduledEvent;
     }
@@ -337,6 +744,8 @@ public class WorkflowEventRecords {
 
     private boolean isActivityCompletedReplayed;
 
+    private boolean isActivityCompletionDeferred;
+
     private ActivityCompletedEvent activityCompletedEvent;
 
     protected boolean interestedEvent() {
@@ -352,6 +761,8 @@ public class WorkflowEventRecords {
                                                            .getEventId());
 
       isActivityCompletedReplayed = activityCompletedEvent != null;
+
+      isActivityCompletionDeferred = !isActivityCompletedReplayed && deferCompletion(currentEvent);
     }
 
     public boolean isActivityScheduledReplayed() {
@@ -362,12 +773,56 @@ public class WorkflowEventRecords {
       return isActivityCompletedReplayed;
     }
 
+    /**
+     * @return true if the completion is told once the replay reaches it.
+     */
+    public boolean isActivityCompletionDeferred() {
+      return isActivityCompletionDeferred;
+    }
+
     public ActivityCompletedEvent getActivityCompletedEvent() {
       return activityCompletedEvent;
     }
 
   }
 
+  /**
+   * Replays the marker recorded for a local activity, in the order the local activity ran.
+   */
+  public class LocalActivityReplayer extends Replayer {
+
+    private boolean isLocalActivityReplayed;
+
+    private LocalActivityCompletedEvent localActivityCompletedEvent;
+
+    @Override
+    protected void replay() {
+      //the flag of the previous local activity must not be seen once the events run out.
+      isLocalActivityReplayed = false;
+      super.replay();
+    }
+
+    protected boolean interestedEvent() {
+
+      isLocalActivityReplayed = currentEvent.isEventType(EVENT_TYPE.LocalActivityCompletedEvent);
+
+      return isLocalActivityReplayed;
+    }
+
+    protected void replayInternal() {
+      localActivityCompletedEvent = (LocalActivityCompletedEvent) currentEvent;
+    }
+
+    public boolean isLocalActivityReplayed() {
+      return isLocalActivityReplayed;
+    }
+
+    public LocalActivityCompletedEvent getLocalActivityCompletedEvent() {
+      return localActivityCompletedEvent;
+    }
+
+  }
+
   public class WorkflowReplayer extends Replayer {
 
     private boolean isActivityScheduledReplayed;
@@ -397,16 +852,6 @@ public class WorkflowEventRecords {
       return workflowScheduledEvent.getStartMode();
     }
 
-    private boolean hasEvent(EVENT_TYPE eventType) {
-      for (Event event : cache) {
-        if (event.getEventType() == eventType) {
-          return true;
-        }
-      }
-
-      return false;
-    }
-
     public boolean isWorkflowScheduledReplayed() {
       return isActivityScheduledReplayed;
     }
@@ -35,13 +35,48 @@ public class WorkflowHandler implements Runnable {
 
   private PollWorkflowResponse pollWorkflowResponse;
 
+  private StickyWorkflowCache stickyWorkflowCache;
+
+  private LocalActivities localActivities;
+
+  private WorkflowMetrics metrics;
+
   public WorkflowHandler(NebulaClient nebulaClient,
                          ProcessDefinition processDefinition, Configuration configuration,
                          PollWorkflowResponse response) {
+    this(nebulaClient, processDefinition, configuration, response, new StickyWorkflowCache(0));
+  }
+
+  public WorkflowHandler(NebulaClient nebulaClient,
+                         ProcessDefinition processDefinition, Configuration configuration,
+                         PollWorkflowResponse response, StickyWorkflowCache stickyWorkflowCache) {
+    this(nebulaClient, processDefinition, configuration, response, stickyWorkflowCache,
+         new LocalActivities());
+  }
+
+  public WorkflowHandler(NebulaClient nebulaClient,
+                         ProcessDefinition processDefinition, Configuration configuration,
+                         PollWorkflowResponse response, StickyWorkflowCache stickyWorkflowCache,
+                         LocalActivities localActivities) {
+    this(nebulaClient, processDefinition, configuration, response, stickyWorkflowCache,
+         localActivities, new WorkflowMetrics(configuration.getMetricsRegistry(),
+                                              processDefinition.getWorkflowProfile()));
+  }
+
+  /**
+   * @param metrics the metrics of the workflow, shared by the decisions of the workflow.
+   */
+  public WorkflowHandler(NebulaClient nebulaClient,
+                         ProcessDefinition processDefinition, Configuration configuration,
+                         PollWorkflowResponse response, StickyWorkflowCache stickyWorkflowCache,
+                         LocalActivities localActivities, WorkflowMetrics metrics) {
     this.nebulaClient = nebulaClient;
     this.processDefinition = processDefinition;
     this.configuration = configuration;
     this.pollWorkflowResponse = response;
+    this.stickyWorkflowCache = stickyWorkflowCache;
+    this.localActivities = localActivities;
+    this.metrics = metrics;
   }
 
   public void run() {
@@ -52,29 +87,88 @@ public class WorkflowHandler implements Runnable {
     String realmActId = pollWorkflowResponse.getRealmActId();
 
     log.debug("Workflow for instanceId " + instanceId + " start to run.");
+
+    StickyWorkflowCache.StickyWorkflow stickyWorkflow = null;
+
     try {
 
       EventEmitter
           eventEmitter =
-          new EventEmitter(nebulaClient, registrationId, instanceId, realm, realmActId);
+          new EventEmitter(nebulaClient, registrationId, instanceId, realm, realmActId,
+                           configuration.isBatchDecisionCommands(),
+                           configuration.getPayloadOffloader());
+
+      long start = System.nanoTime();
+
+      stickyWorkflow = checkoutStickyWorkflow(instanceId);
+
+      //the refresh of the sticky records is counted as the history fetch.
+      long checkoutNanos = System.nanoTime() - start;
 
-      WorkflowEventRecords
-          records = new WorkflowEventRecords(nebulaClient, instanceId, configuration);
+      WorkflowEventRecords records = stickyWorkflow.getRecords();
 
-      WorkflowInstance workflowInstance = new WorkflowInstance(processDefinition);
+      long pageWaitNanos = records.getPageWaitNanos();
 
-      Decider decider = new Decider(records, eventEmitter, workflowInstance);
+      WorkflowInstance workflowInstance =
+          new WorkflowInstance(processDefinition, configuration.getPayloadOffloader());
+
+      Decider decider = new Decider(records, eventEmitter, workflowInstance, localActivities);
 
       records.setSignalEventListener(decider);
+      records.setCompletedEventListener(decider);
 
       Context.getContext().setDecider(decider);
       decider.decide();
 
+      recordDecision(System.nanoTime() - start,
+                     checkoutNanos + records.getPageWaitNanos() - pageWaitNanos,
+                     eventEmitter.getCommandsEmitted());
+
+      //the completed or cancelled workflow won't be decided again.
+      if (!decider.isStartMethodCompleted()
+          && stickyWorkflowCache.put(instanceId, stickyWorkflow)) {
+        stickyWorkflow = null;
+      }
+
 
     } catch (Exception e) {
       log.error("Failed to run handler with registrationId=" + registrationId + ", instanceId="
                 + instanceId, e);
+    } finally {
+      //release the spilled events unless the records are kept by the sticky cache.
+      if (stickyWorkflow != null) {
+        stickyWorkflow.close();
+      }
+    }
+  }
+
+  private void recordDecision(long decisionNanos, long fetchNanos, int commands) {
+    metrics.getHistoryFetch().record(fetchNanos);
+    metrics.getReplay().record(decisionNanos - fetchNanos);
+    metrics.getCommands().increment(commands);
+    metrics.getDecision().record(decisionNanos);
+  }
+
+  /**
+   * Reuse the records of the previous decision if the workflow is still cached and its history is
+   * not stale, otherwise the full history is replayed.
+   */
+  private StickyWorkflowCache.StickyWorkflow checkoutStickyWorkflow(String instanceId) {
+
+    StickyWorkflowCache.StickyWorkflow stickyWorkflow = stickyWorkflowCache.remove(instanceId);
+
+    if (stickyWorkflow != null) {
+      if (stickyWorkflow.getRecords().refresh()) {
+        log.debug("Workflow for instanceId " + instanceId + " is decided with sticky records.");
+        return stickyWorkflow;
+      }
+
+      log.info("The sticky records of instanceId " + instanceId + " are stale, replay fully.");
+      stickyWorkflow.close();
     }
+
+    return new StickyWorkflowCache.StickyWorkflow(
+        new WorkflowEventRecords(nebulaClient, instanceId, configuration));
   }
 
 }
@@ -16,10 +16,13 @@
 
 package org.nebula.framework.workflow;
 
-import static org.nebula.framework.utils.JsonUtils.constructFromCanonical;
+import static org.nebula.framework.utils.JsonUtils.readValue;
+import static org.nebula.framework.utils.JsonUtils.readersForCanonical;
 
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nebula.framework.core.PayloadOffloader;
 import org.nebula.framework.core.Promise;
 import org.nebula.framework.core.WorkflowContext;
 import org.nebula.framework.event.ActivityCompletedEvent;
@@ -30,8 +33,6 @@ import org.nebula.framework.model.MethodProfile;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.List;
 
 public class WorkflowInstance {
 
@@ -41,20 +42,36 @@ public class WorkflowInstance {
 
   private Object instance;
 
+  private PayloadOffloader payloadOffloader;
+
   public WorkflowInstance(ProcessDefinition processDefinition) {
-    this.processDefinition = processDefinition;
+    this(processDefinition, null);
   }
 
-  private static Object[] castByProfile(String[] inputs, String... types) {
-    return castByProfile(inputs, Arrays.asList(types));
+  /**
+   * @param payloadOffloader resolves the offloaded inputs, null if the payloads are inline.
+   */
+  public WorkflowInstance(ProcessDefinition processDefinition,
+                          PayloadOffloader payloadOffloader) {
+    this.processDefinition = processDefinition;
+    this.payloadOffloader = payloadOffloader;
   }
 
-  private static Object[] castByProfile(String[] inputs, List<String> types) {
+  /**
+   * Cast the inputs by the readers prepared by the process definition for the method profile.
+   */
+  private Object[] castByProfile(String[] inputs, MethodProfile profile) {
+    ObjectReader[] readers = processDefinition.getParameterReaders(profile);
+
+    if (readers == null) {
+      readers = readersForCanonical(profile.getParameterTypes());
+    }
+
     Object[] args = new Object[inputs.length];
 
     for (int i = 0; i < inputs.length; i++) {
 
-      args[i] = constructFromCanonical(inputs[i], types.get(i));
+      args[i] = readValue(resolve(inputs[i]), readers[i]);
 
     }
     return args;
@@ -68,7 +85,7 @@ public class WorkflowInstance {
 
     Method startMethod = processDefinition.getStartMethod(profile);
 
-    Object[] args = castByProfile(inputs, profile.getParameterTypes());
+    Object[] args = castByProfile(inputs, profile);
 
     log.debug("processDefinition: "
               + startMethod.getName() + ", class="
@@ -96,7 +113,7 @@ public class WorkflowInstance {
 
     String[] inputs = event.getInput().getInputs();
 
-    Object[] args = castByProfile(inputs, event.getSignalProfile().getParameterTypes());
+    Object[] args = castByProfile(inputs, event.getSignalProfile());
 
     try {
       signalMethod.invoke(instance, args);
@@ -109,11 +126,13 @@ public class WorkflowInstance {
   public Promise handleCompletedActivity(
       ActivityCompletedEvent completedEvent) {
 
-    Object[]
-        args =
-        castByProfile(completedEvent.getInput().getInputs(),
-                      completedEvent.getMethodProfile().getReturnType());
-    return new Promise(args[0]);
+    //the result is decoded only if the workflow reads it.
+    return new LazyPromise(completedEvent.getInput().getInputs()[0],
+                           completedEvent.getMethodProfile().getReturnType(), payloadOffloader);
+  }
+
+  private String resolve(String input) {
+    return PayloadOffloader.resolve(payloadOffloader, input);
   }
 
   private void createInstance(String registrationId, String instanceId) {
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.workflow;
+
+import org.nebula.framework.metrics.Counter;
+import org.nebula.framework.metrics.Histogram;
+import org.nebula.framework.metrics.MetricNames;
+import org.nebula.framework.metrics.MetricsRegistry;
+import org.nebula.framework.metrics.Timer;
+import org.nebula.framework.model.WorkflowProfile;
+
+/**
+ * The metrics of the decisions of a workflow, resolved once per workflow so that the decisions
+ * don't look up the registry.
+ */
+public class WorkflowMetrics {
+
+  private final Timer historyFetch;
+
+  private final Timer replay;
+
+  private final Counter commands;
+
+  private final Histogram decision;
+
+  public WorkflowMetrics(MetricsRegistry metricsRegistry, WorkflowProfile workflowProfile) {
+    this.historyFetch = metricsRegistry.timer(MetricNames.DECISION_HISTORY_FETCH);
+    this.replay = metricsRegistry.timer(MetricNames.DECISION_REPLAY);
+    this.commands = metricsRegistry.counter(MetricNames.DECISION_COMMANDS);
+    this.decision = metricsRegistry.histogram(
+        MetricNames.WORKFLOW_DECISION
+        + MetricNames.profile(workflowProfile.getName(), workflowProfile.getVersion()));
+  }
+
+  public Timer getHistoryFetch() {
+    return historyFetch;
+  }
+
+  public Timer getReplay() {
+    return replay;
+  }
+
+  public Counter getCommands() {
+    return commands;
+  }
+
+  public Histogram getDecision() {
+    return decision;
+  }
+}
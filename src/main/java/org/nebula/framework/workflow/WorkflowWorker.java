@@ -18,11 +18,15 @@ package org.nebula.framework.workflow;
 
 import org.nebula.framework.annotation.Activity;
 import org.nebula.framework.client.NebulaClient;
+import org.nebula.framework.core.Bulkhead;
 import org.nebula.framework.core.Configuration;
+import org.nebula.framework.core.EventPoller;
+import org.nebula.framework.core.MappedFileSpill;
 import org.nebula.framework.core.NodeRegistry;
 import org.nebula.framework.core.NodeWorker;
 import org.nebula.framework.core.WorkflowNodeRegistry;
 
+import java.io.File;
 import java.util.List;
 
 /**
@@ -35,12 +39,41 @@ import java.util.List;
  */
 public class WorkflowWorker extends NodeWorker<ProcessDefinition> {
 
+  private StickyWorkflowCache stickyWorkflowCache;
+
+  private Configuration configuration;
+
+  private LocalActivities localActivities = new LocalActivities();
+
   public WorkflowWorker(NebulaClient nebulaClient) {
     this(nebulaClient, new Configuration());
   }
 
   public WorkflowWorker(NebulaClient nebulaClient, Configuration configuration) {
     super(nebulaClient, configuration);
+    this.configuration = configuration;
+    this.stickyWorkflowCache = new StickyWorkflowCache(configuration.getMaxStickyWorkflows());
+  }
+
+  /**
+   * Delete the spill files left by a crashed worker before the decisions spill again.
+   */
+  @Override
+  public synchronized void start() {
+    if (!isStarted() && configuration.isSpillEvents()) {
+      String directory = configuration.getEventsSpillDirectory();
+      MappedFileSpill.deleteStaleFiles(directory == null ? null : new File(directory),
+                                       MappedFileSpill.STALE_FILE_MILLIS);
+    }
+    super.start();
+  }
+
+  /**
+   * Add an activity annotated with <code>@Activity(local = true)</code>, which is run by the
+   * decisions of the workflows of this worker rather than by an ActivityWorker.
+   */
+  public void addLocalActivity(Class activityImplementation) {
+    localActivities.add(activityImplementation);
   }
 
   protected ProcessDefinition createNodeDefinition(Class nodeImplementation) {
@@ -52,13 +85,16 @@ public class WorkflowWorker extends NodeWorker<ProcessDefinition> {
     return new ProcessDefinitionRealm(processDefinition, realms);
   }
 
-  protected Runnable createEvenPoller(NebulaClient nebulaClient,
-                                      ProcessDefinition processDefinition, List<String> realms,
-                                      Configuration configuration) {
+  protected EventPoller createEvenPoller(NebulaClient nebulaClient,
+                                         ProcessDefinition processDefinition, List<String> realms,
+                                         Configuration configuration, Bulkhead bulkhead) {
     return new WorkflowEventPoller(nebulaClient,
                                    processDefinition,
                                    realms,
-                                   configuration);
+                                   configuration,
+                                   stickyWorkflowCache,
+                                   bulkhead,
+                                   localActivities);
   }
 
   protected NodeRegistry createNodeRegistry(NebulaClient nebulaClient) {
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.activity;
+
+import org.junit.Test;
+import org.nebula.framework.annotation.Activity;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ActivityInstanceProviderTest {
+
+  @Test
+  public void testPerTask() throws Exception {
+    ActivityInstanceProvider provider =
+        ActivityInstanceProvider.create(ActivityImpl.class, Activity.Lifecycle.PER_TASK);
+
+    Object instance = provider.acquire();
+    provider.release(instance);
+
+    assertNotSame(instance, provider.acquire());
+  }
+
+  @Test
+  public void testSingleton() throws Exception {
+    ActivityInstanceProvider provider =
+        ActivityInstanceProvider.create(ActivityImpl.class, Activity.Lifecycle.SINGLETON);
+
+    assertSame(provider.acquire(), provider.acquire());
+  }
+
+  @Test
+  public void testPooled() throws Exception {
+    ActivityInstanceProvider provider =
+        ActivityInstanceProvider.create(ActivityImpl.class, Activity.Lifecycle.POOLED);
+
+    Object first = provider.acquire();
+    Object second = provider.acquire();
+
+    //an instance is never shared by the tasks running at the same time.
+    assertNotSame(first, second);
+
+    provider.release(first);
+
+    assertSame(first, provider.acquire());
+  }
+
+  public static class ActivityImpl {
+  }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.client;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.request.StartWorkflowRequest;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.model.Input;
+import org.nebula.framework.model.WorkflowProfile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractNebulaRestClientTest {
+
+  private TestClient client;
+
+  @Before
+  public void setUp() {
+    client = new TestClient();
+    client.setCompressionThreshold(1024);
+  }
+
+  @Test
+  public void testBodyBelowTheThreshold() throws Exception {
+    HttpPost post = client.createPost(startWorkflow(10));
+
+    HttpEntity entity = post.getEntity();
+    byte[] wire = EntityUtils.toByteArray(entity);
+
+    assertEquals("UTF-8", entity.getContentEncoding().getValue());
+    assertTrue(wire.length < 1024);
+
+    ContentCounters.Counter counter = counter("StartWorkflowRequest");
+    assertEquals(wire.length, counter.getSentBytes());
+    assertEquals(wire.length, counter.getSentWireBytes());
+  }
+
+  @Test
+  public void testBodyAboveTheThreshold() throws Exception {
+    HttpPost post = client.createPost(startWorkflow(4096));
+
+    HttpEntity entity = post.getEntity();
+    byte[] wire = EntityUtils.toByteArray(entity);
+    byte[] body = toByteArray(new GZIPInputStream(new ByteArrayInputStream(wire)));
+
+    assertEquals("gzip", entity.getContentEncoding().getValue());
+    assertTrue(body.length > 4096);
+    assertTrue(wire.length < body.length);
+
+    ContentCounters.Counter counter = counter("StartWorkflowRequest");
+    assertEquals(body.length, counter.getSentBytes());
+    assertEquals(wire.length, counter.getSentWireBytes());
+  }
+
+  @Test
+  public void testCompressionDisabled() throws Exception {
+    client.setCompressionThreshold(0);
+
+    HttpPost post = client.createPost(startWorkflow(4096));
+
+    assertEquals("UTF-8", post.getEntity().getContentEncoding().getValue());
+  }
+
+  @Test
+  public void testGzipResponse() throws Exception {
+    byte[] body = "{\"total\":3}".getBytes("UTF-8");
+    byte[] wire = compress(body, true);
+
+    GetEventsResponse response = client.toResponse(response(wire, "gzip"), new GetEventsRequest());
+
+    assertEquals(3, response.getTotal());
+
+    ContentCounters.Counter counter = counter("GetEventsRequest");
+    assertEquals(body.length, counter.getReceivedBytes());
+    assertEquals(wire.length, counter.getReceivedWireBytes());
+  }
+
+  @Test
+  public void testDeflateResponse() throws Exception {
+    byte[] body = "{\"total\":5}".getBytes("UTF-8");
+    byte[] wire = compress(body, false);
+
+    GetEventsResponse response =
+        client.toResponse(response(wire, "deflate"), new GetEventsRequest());
+
+    assertEquals(5, response.getTotal());
+
+    ContentCounters.Counter counter = counter("GetEventsRequest");
+    assertEquals(body.length, counter.getReceivedBytes());
+    assertEquals(wire.length, counter.getReceivedWireBytes());
+  }
+
+  @Test
+  public void testCountersPerRequestType() throws Exception {
+    byte[] body = "{\"total\":1}".getBytes("UTF-8");
+
+    client.createPost(startWorkflow(4096));
+    client.toResponse(response(body, null), new GetEventsRequest());
+    client.toResponse(response(body, null), new GetEventsRequest());
+
+    ContentCounters.Counter start = counter("StartWorkflowRequest");
+    assertTrue(start.getSentBytes() > start.getSentWireBytes());
+    assertEquals(0, start.getReceivedBytes());
+
+    ContentCounters.Counter events = counter("GetEventsRequest");
+    assertEquals(0, events.getSentBytes());
+    assertEquals(2 * body.length, events.getReceivedBytes());
+    assertEquals(2 * body.length, events.getReceivedWireBytes());
+
+    assertEquals(2, client.getContentCounters().getCounters().size());
+    assertNull(client.getContentCounters().getCounters().get("CancelWorkflowRequest"));
+  }
+
+  private ContentCounters.Counter counter(String requestType) {
+    return client.getContentCounters().getCounter(requestType);
+  }
+
+  private static StartWorkflowRequest startWorkflow(int inputLength) {
+    char[] message = new char[inputLength];
+    Arrays.fill(message, 'a');
+
+    Input input = new Input();
+    input.setInputs(new String[]{"\"" + new String(message) + "\""});
+
+    WorkflowProfile profile = new WorkflowProfile();
+    profile.setName("CompressedWorkflow");
+    profile.setVersion("1.0");
+
+    StartWorkflowRequest request = new StartWorkflowRequest();
+    request.setWorkflowProfile(profile);
+    request.setRealms(Arrays.asList("realm"));
+    request.setInput(input);
+    return request;
+  }
+
+  private static HttpResponse response(byte[] wire, String contentEncoding) {
+    ByteArrayEntity entity = new ByteArrayEntity(wire, ContentType.APPLICATION_JSON);
+    if (contentEncoding != null) {
+      entity.setContentEncoding(contentEncoding);
+    }
+
+    HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    response.setEntity(entity);
+    return response;
+  }
+
+  private static byte[] compress(byte[] body, boolean gzip) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OutputStream compressed = gzip ? new GZIPOutputStream(out) : new DeflaterOutputStream(out);
+    compressed.write(body);
+    compressed.close();
+    return out.toByteArray();
+  }
+
+  private static byte[] toByteArray(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Builds the requests and reads the responses without the http transport.
+   */
+  private static class TestClient extends AbstractNebulaRestClient {
+
+    private TestClient() {
+      super("accessId", "secretKey", "localhost", 8080, "/nebula", 5, 5);
+    }
+
+    public <T> T post(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> T get(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> T delete(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.request.PollWorkflowRequest;
+import org.nebula.framework.client.request.StartWorkflowRequest;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.client.response.StartWorkflowResponse;
+import org.nebula.framework.embedded.EmbeddedHttpServer;
+import org.nebula.framework.embedded.EmbeddedNebulaServer;
+import org.nebula.framework.model.Input;
+import org.nebula.framework.model.WorkflowProfile;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NebulaAsyncRestClientTest {
+
+  private EmbeddedNebulaServer server;
+
+  private EmbeddedHttpServer httpServer;
+
+  private NebulaAsyncRestClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new EmbeddedNebulaServer();
+    server.start();
+
+    httpServer = new EmbeddedHttpServer(server, 0, "/nebula");
+    httpServer.start();
+
+    //a single connection, so a request holding it blocks the next ones.
+    client = new NebulaAsyncRestClient("accessId", "secretKey", "localhost", httpServer.getPort(),
+                                       "/nebula", 5, 30, 1);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+    httpServer.stop();
+    server.stop();
+  }
+
+  @Test
+  public void testCompleted() throws Exception {
+    String instanceId = startWorkflow();
+
+    Callback<GetEventsResponse> callback = new Callback<GetEventsResponse>();
+    Future<GetEventsResponse> future = client.getAsync(getEvents(instanceId), callback);
+
+    assertEquals(1, future.get(5, TimeUnit.SECONDS).getTotal());
+    assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+    assertEquals(1, callback.response.get().getTotal());
+  }
+
+  @Test
+  public void testFailed() throws Exception {
+    Callback<GetEventsResponse> callback = new Callback<GetEventsResponse>();
+    Future<GetEventsResponse> future = client.getAsync(getEvents("unknown"), callback);
+
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("The request of an unknown instance should fail.");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+
+    assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+    assertTrue(callback.failure.get() instanceof IllegalArgumentException);
+  }
+
+  @Test
+  public void testCancelReleasesTheConnection() throws Exception {
+    PollWorkflowRequest poll = new PollWorkflowRequest();
+    poll.setRealms(Arrays.asList("empty"));
+    poll.setWaitSecs(20);
+
+    Callback<Object> callback = new Callback<Object>();
+    Future<Object> future = client.getAsync(poll, callback);
+
+    //the long poll holds the only connection.
+    Thread.sleep(200);
+    assertTrue(future.cancel(true));
+
+    assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+    assertTrue(callback.failure.get() instanceof IllegalStateException);
+
+    //served long before the long poll would return.
+    assertEquals(1, client.<GetEventsResponse>getAsync(getEvents(startWorkflow()), null)
+        .get(5, TimeUnit.SECONDS).getTotal());
+  }
+
+  private String startWorkflow() throws Exception {
+    Input input = new Input();
+    input.setInputs(new String[]{"\"message\""});
+
+    WorkflowProfile profile = new WorkflowProfile();
+    profile.setName("AsyncWorkflow");
+    profile.setVersion("1.0");
+
+    StartWorkflowRequest start = new StartWorkflowRequest();
+    start.setWorkflowProfile(profile);
+    start.setRealms(Arrays.asList("async"));
+    start.setInput(input);
+
+    return client.<StartWorkflowResponse>postAsync(start, null).get(5, TimeUnit.SECONDS)
+        .getInstanceId();
+  }
+
+  private static GetEventsRequest getEvents(String instanceId) {
+    GetEventsRequest request = new GetEventsRequest();
+    request.setInstanceId(instanceId);
+    request.setPageNo(1);
+    request.setPageSize(10);
+    return request;
+  }
+
+  private static class Callback<T> implements ResponseCallback<T> {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private final AtomicReference<T> response = new AtomicReference<T>();
+
+    private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+    public void completed(T response) {
+      this.response.set(response);
+      done.countDown();
+    }
+
+    public void failed(Exception e) {
+      failure.set(e);
+      done.countDown();
+    }
+  }
+
+}
@@ -20,6 +20,17 @@ import org.junit.Before;
 import org.junit.Test;
 import org.nebula.framework.utils.HashUtils;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -65,6 +76,94 @@ public class AuthorizationTest {
 
   }
 
+  @Test
+  public void testHmacSha256Signature() throws Exception {
+    String actualSignature = authorization.setSignatureMethod(Authorization.SignatureMethod.HMAC_SHA256)
+        .toSignedSignature(secretKey);
+
+    String stringToSign =
+        String.format("accessId=%s&instanceId=%s&registrationId=%s&signatureMethod=HMAC_SHA256&timestamp=%s&",
+                      accessId, instanceId, registrationId, authorization.getTimestamp());
+
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(secretKey.getBytes("UTF-8"), "HmacSHA256"));
+    byte[] digest = mac.doFinal(stringToSign.getBytes("UTF-8"));
+
+    assertEquals(stringToSign + "signature=" + String.format("%064x", new BigInteger(1, digest)),
+                 actualSignature);
+
+    Authorization actualAuthorization = Authorization.build(actualSignature);
+    assertEquals(Authorization.SignatureMethod.HMAC_SHA256,
+                 actualAuthorization.getSignatureMethod());
+    assertTrue(actualAuthorization.authenticate(secretKey));
+  }
+
+  @Test(expected = SecurityException.class)
+  public void testWrongKey() {
+    String actualSignature = authorization.setSignatureMethod(Authorization.SignatureMethod.HMAC_SHA256)
+        .toSignedSignature(secretKey);
+
+    Authorization.build(actualSignature).authenticate("another-secret-key");
+  }
+
+  @Test
+  public void testNonAsciiFields() {
+    String workflowName = "\u8ba2\u5355";
+    authorization.addField("workflowName", workflowName);
+
+    String stringToSign =
+        String.format("accessId=%s&instanceId=%s&registrationId=%s&timestamp=%s&workflowName=%s&",
+                      accessId, instanceId, registrationId, authorization.getTimestamp(),
+                      workflowName);
+
+    assertEquals(stringToSign + "signature=" + HashUtils.md5(stringToSign + "salt=" + secretKey),
+                 authorization.toSignedSignature(secretKey));
+
+    authorization.setSignatureMethod(Authorization.SignatureMethod.HMAC_SHA256);
+    assertTrue(Authorization.build(authorization.toSignedSignature(secretKey))
+                   .authenticate(secretKey));
+  }
+
+  @Test
+  public void testMd5IsCompatible() {
+    assertEquals("900150983cd24fb0d6963f7d28e17f72", HashUtils.md5("abc"));
+    assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", HashUtils.sha1("abc"));
+  }
+
+  @Test
+  public void testConcurrentSignatures() throws Exception {
+    final String md5Signature = authorization.toSignedSignature(secretKey);
+    final Authorization hmac = Authorization.build(md5Signature)
+        .setSignatureMethod(Authorization.SignatureMethod.HMAC_SHA256);
+    final String hmacSignature = hmac.toSignedSignature(secretKey);
+
+    //the threads share the pooled digests, macs and buffers.
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+      for (int i = 0; i < 64; i++) {
+        futures.add(executor.submit(new Callable<Boolean>() {
+          public Boolean call() {
+            for (int j = 0; j < 100; j++) {
+              if (!md5Signature.equals(authorization.toSignedSignature(secretKey))
+                  || !hmacSignature.equals(hmac.toSignedSignature(secretKey))
+                  || !Authorization.build(hmacSignature).authenticate(secretKey)) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   private String getSignedSignature() {
 
     String
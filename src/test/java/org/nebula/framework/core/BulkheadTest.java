@@ -0,0 +1,130 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.core;
+
+import org.junit.Test;
+import org.nebula.framework.metrics.DefaultMetricsRegistry;
+import org.nebula.framework.metrics.MetricNames;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BulkheadTest {
+
+  @Test
+  public void testAcquireUpToTheLimit() throws Exception {
+    Bulkhead bulkhead = new Bulkhead(Executors.newSingleThreadExecutor(), 3);
+
+    assertEquals(2, bulkhead.acquire(2, 10, TimeUnit.MILLISECONDS));
+    assertEquals(1, bulkhead.acquire(5, 10, TimeUnit.MILLISECONDS));
+    assertEquals(0, bulkhead.acquire(1, 10, TimeUnit.MILLISECONDS));
+    assertEquals(3, bulkhead.getInFlightTasks());
+
+    bulkhead.release(3);
+    assertEquals(0, bulkhead.getInFlightTasks());
+  }
+
+  @Test
+  public void testSharedExecutor() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    Bulkhead first = new Bulkhead(executor, 1);
+    Bulkhead second = new Bulkhead(executor, 1);
+
+    final CountDownLatch done = new CountDownLatch(1);
+
+    assertEquals(1, first.acquire(1, 10, TimeUnit.MILLISECONDS));
+    first.execute(new Runnable() {
+      public void run() {
+        try {
+          done.await();
+        } catch (InterruptedException e) {
+          //ignore the exception
+        }
+      }
+    });
+
+    //the busy definition doesn't take the permit of the other one.
+    assertEquals(0, first.acquire(1, 10, TimeUnit.MILLISECONDS));
+    assertEquals(1, second.acquire(1, 10, TimeUnit.MILLISECONDS));
+    second.release(1);
+
+    done.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+    assertEquals(0, first.getInFlightTasks());
+  }
+
+  @Test
+  public void testWorkerPermits() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    Semaphore workerPermits = new Semaphore(3);
+
+    Bulkhead first = new Bulkhead(executor, 2, null, workerPermits);
+    Bulkhead second = new Bulkhead(executor, 2, null, workerPermits);
+
+    assertEquals(2, first.acquire(2, 10, TimeUnit.MILLISECONDS));
+    //the definition has permits left, but the worker has only one.
+    assertEquals(1, second.acquire(2, 10, TimeUnit.MILLISECONDS));
+    assertEquals(0, second.acquire(1, 10, TimeUnit.MILLISECONDS));
+    assertEquals(1, second.getInFlightTasks());
+
+    first.release(2);
+    assertEquals(1, second.acquire(2, 10, TimeUnit.MILLISECONDS));
+
+    second.release(2);
+    assertEquals(3, workerPermits.availablePermits());
+
+    executor.shutdown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidLimit() {
+    new Bulkhead(Executors.newSingleThreadExecutor(), 0);
+  }
+
+  @Test
+  public void testRecordQueueWait() throws Exception {
+    DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    Bulkhead bulkhead = new Bulkhead(executor, 2, registry.timer(MetricNames.QUEUE_WAIT));
+
+    final CountDownLatch done = new CountDownLatch(2);
+
+    assertEquals(2, bulkhead.acquire(2, 10, TimeUnit.MILLISECONDS));
+    for (int i = 0; i < 2; i++) {
+      bulkhead.execute(new Runnable() {
+        public void run() {
+          done.countDown();
+        }
+      });
+    }
+
+    assertTrue(done.await(1, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    assertEquals(2, registry.timer(MetricNames.QUEUE_WAIT).getCount());
+  }
+
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nebula.framework.client.NebulaClient;
+import org.nebula.framework.client.Request;
+import org.nebula.framework.client.Response;
+import org.nebula.framework.client.request.BatchPollActivityRequest;
+import org.nebula.framework.client.request.PollActivityRequest;
+import org.nebula.framework.client.response.BatchPollActivityResponse;
+import org.nebula.framework.client.response.PollActivityResponse;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventPollerTest {
+
+  private ExecutorService executor;
+
+  private Configuration configuration;
+
+  private List<String> handled;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+
+    configuration = new Configuration();
+    //an empty poll doesn't back off.
+    configuration.setPollWaitSecs(1);
+
+    handled = Collections.synchronizedList(new ArrayList<String>());
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test(timeout = 10000)
+  public void testBatchPollSizedToTheFreePermits() throws Exception {
+    configuration.setMaxPollTasks(3);
+
+    Bulkhead bulkhead = new Bulkhead(executor, 4);
+    StubClient client = new StubClient() {
+      protected Object respond(Request request, int count) {
+        return null;
+      }
+    };
+
+    //two of the four slots are busy.
+    assertEquals(2, bulkhead.acquire(2, 10, TimeUnit.MILLISECONDS));
+
+    createPoller(client, bulkhead).run();
+
+    assertEquals(1, client.requests.size());
+    assertEquals(2, ((BatchPollActivityRequest) client.requests.get(0)).getMaxTasks());
+    assertEquals(2, bulkhead.getInFlightTasks());
+
+    //a single free slot is polled by the single-task poll.
+    assertEquals(1, bulkhead.acquire(1, 10, TimeUnit.MILLISECONDS));
+
+    client.requests.clear();
+    createPoller(client, bulkhead).run();
+
+    assertEquals(1, client.requests.size());
+    assertEquals(PollActivityRequest.class, client.requests.get(0).getClass());
+    assertEquals(3, bulkhead.getInFlightTasks());
+  }
+
+  @Test(timeout = 10000)
+  public void testFallBackToTheSingleTaskPoll() throws Exception {
+    configuration.setMaxPollTasks(2);
+
+    final TestPoller[] poller = new TestPoller[1];
+    final long[] disabledUntil = new long[1];
+
+    StubClient client = new StubClient() {
+      protected Object respond(Request request, int count) throws Exception {
+        switch (count) {
+          case 1:
+            throw new IllegalStateException("The batch poll is not supported.");
+          case 2:
+            disabledUntil[0] = getBatchPollDisabledUntil(poller[0]);
+            return task("1");
+          case 3:
+            //the 60s of the single-task polls are over.
+            setBatchPollDisabledUntil(poller[0], System.currentTimeMillis() - 1);
+            return task("2");
+          default:
+            return null;
+        }
+      }
+    };
+
+    //the slots of the running tasks leave room for a batch.
+    poller[0] = createPoller(client, new Bulkhead(executor, 4));
+
+    long start = System.currentTimeMillis();
+    poller[0].run();
+
+    assertTrue(disabledUntil[0] >= start + 60 * 1000);
+    assertTrue(disabledUntil[0] <= System.currentTimeMillis() + 60 * 1000);
+
+    assertEquals(4, client.requests.size());
+    assertEquals(BatchPollActivityRequest.class, client.requests.get(0).getClass());
+    assertEquals(PollActivityRequest.class, client.requests.get(1).getClass());
+    assertEquals(PollActivityRequest.class, client.requests.get(2).getClass());
+    assertEquals(BatchPollActivityRequest.class, client.requests.get(3).getClass());
+
+    awaitHandlers();
+    assertEquals(2, handled.size());
+  }
+
+  @Test(timeout = 10000)
+  public void testSurplusTasksAreDropped() throws Exception {
+    configuration.setMaxPollTasks(2);
+
+    Bulkhead bulkhead = new Bulkhead(executor, 2);
+    StubClient client = new StubClient() {
+      protected Object respond(Request request, int count) {
+        if (count == 1) {
+          //the server ignores the maxTasks.
+          return batch(task("1"), task("2"), task("3"));
+        }
+        return null;
+      }
+    };
+
+    createPoller(client, bulkhead).run();
+
+    awaitHandlers();
+
+    assertEquals(2, handled.size());
+    assertTrue(handled.contains("1"));
+    assertTrue(handled.contains("2"));
+    assertEquals(0, bulkhead.getInFlightTasks());
+  }
+
+  @Test(timeout = 10000)
+  public void testNoPollWhileAllPermitsAreHeld() throws Exception {
+    final Bulkhead bulkhead = new Bulkhead(executor, 1);
+    StubClient client = new StubClient() {
+      protected Object respond(Request request, int count) {
+        return null;
+      }
+    };
+
+    assertEquals(1, bulkhead.acquire(1, 10, TimeUnit.MILLISECONDS));
+
+    Thread thread = new Thread(createPoller(client, bulkhead));
+    thread.start();
+
+    //longer than the poller waits for a permit at once.
+    Thread.sleep(1500);
+    assertEquals(0, client.requests.size());
+
+    bulkhead.release(1);
+
+    thread.join(5000);
+    assertEquals(1, client.requests.size());
+    assertEquals(0, bulkhead.getInFlightTasks());
+  }
+
+  @Test(timeout = 10000)
+  public void testPermitsReturnedAfterAnEmptyOrFailedPoll() throws Exception {
+    configuration.setMaxPollTasks(3);
+
+    final Bulkhead bulkhead = new Bulkhead(executor, 3);
+    final List<Integer> inFlightTasks = new ArrayList<Integer>();
+
+    StubClient client = new StubClient() {
+      protected Object respond(Request request, int count) {
+        inFlightTasks.add(bulkhead.getInFlightTasks());
+        switch (count) {
+          case 1:
+            return batch();
+          case 2:
+            throw new IllegalStateException("The batch poll failed.");
+          case 3:
+            throw new IllegalStateException("The poll failed.");
+          default:
+            return null;
+        }
+      }
+    };
+
+    TestPoller poller = createPoller(client, bulkhead);
+    poller.run();
+
+    //every poll got all the permits, so the previous poll returned them.
+    assertEquals(Arrays.asList(3, 3, 3, 3), inFlightTasks);
+    assertEquals(0, bulkhead.getInFlightTasks());
+
+    assertEquals(2, poller.getEmptyPollCount());
+    assertEquals(2, poller.getFailedPollCount());
+  }
+
+  private TestPoller createPoller(StubClient client, Bulkhead bulkhead) {
+    TestPoller poller = new TestPoller(client, bulkhead);
+    client.poller = poller;
+    return poller;
+  }
+
+  private void awaitHandlers() throws InterruptedException {
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+  }
+
+  private static PollActivityResponse task(String instanceId) {
+    PollActivityResponse response = new PollActivityResponse();
+    response.setInstanceId(instanceId);
+    response.setStatus(Response.Status.SUCCESS);
+    return response;
+  }
+
+  private static BatchPollActivityResponse batch(PollActivityResponse... tasks) {
+    BatchPollActivityResponse response = new BatchPollActivityResponse();
+    response.setStatus(Response.Status.SUCCESS);
+    for (PollActivityResponse task : tasks) {
+      response.getTasks().add(task);
+    }
+    return response;
+  }
+
+  private static long getBatchPollDisabledUntil(EventPoller poller) throws Exception {
+    return batchPollDisabledUntil().getLong(poller);
+  }
+
+  private static void setBatchPollDisabledUntil(EventPoller poller, long millis) throws Exception {
+    batchPollDisabledUntil().setLong(poller, millis);
+  }
+
+  private static Field batchPollDisabledUntil() throws Exception {
+    Field field = EventPoller.class.getDeclaredField("batchPollDisabledUntil");
+    field.setAccessible(true);
+    return field;
+  }
+
+  /**
+   * Records the requests and stops the poller once there is nothing more to respond.
+   */
+  private abstract static class StubClient implements NebulaClient {
+
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+
+    private EventPoller poller;
+
+    /**
+     * @param count the number of the requests including this one.
+     * @return null to stop the poller.
+     */
+    protected abstract Object respond(Request request, int count) throws Exception;
+
+    public String getUser() {
+      return "accessId";
+    }
+
+    public <T> T post(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> T get(Request request) throws Exception {
+      requests.add(request);
+
+      Object response = respond(request, requests.size());
+
+      if (response == null) {
+        poller.stop();
+        response = request instanceof BatchPollActivityRequest
+                   ? batch() : new PollActivityResponse();
+      }
+
+      return (T) response;
+    }
+
+    public <T> T delete(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private class TestPoller extends EventPoller<String, PollActivityResponse> {
+
+    private TestPoller(NebulaClient nebulaClient, Bulkhead bulkhead) {
+      super(nebulaClient, "activity", Collections.singletonList("realm"), configuration, bulkhead);
+    }
+
+    @Override
+    protected Request createPollRequest(String activity, List<String> realms) {
+      PollActivityRequest request = new PollActivityRequest();
+      request.setActivity(activity);
+      request.setRealms(realms);
+      return request;
+    }
+
+    @Override
+    protected Request createBatchPollRequest(String activity, List<String> realms, int maxTasks) {
+      BatchPollActivityRequest request = new BatchPollActivityRequest();
+      request.setActivity(activity);
+      request.setRealms(realms);
+      request.setMaxTasks(maxTasks);
+      return request;
+    }
+
+    @Override
+    protected PollActivityResponse processResponse(PollActivityResponse response) {
+      if (Response.Status.SUCCESS == response.getStatus()) {
+        return response;
+      }
+      throw new NebulaException("The response is not success.");
+    }
+
+    @Override
+    protected Runnable createNodeHandler(NebulaClient nebulaClient, String activity,
+                                         Configuration configuration,
+                                         final PollActivityResponse response) {
+      return new Runnable() {
+        public void run() {
+          handled.add(response.getInstanceId());
+        }
+      };
+    }
+  }
+
+}
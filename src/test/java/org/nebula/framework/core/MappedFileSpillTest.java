@@ -0,0 +1,155 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFileSpillTest {
+
+  private final static Codec<String> CODEC = new Codec<String>() {
+    public byte[] encode(String s) {
+      try {
+        return s.getBytes("UTF-8");
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    public String decode(byte[] bytes) {
+      try {
+        return new String(bytes, "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  };
+
+  @Test
+  public void testAppendAcrossSegments() {
+    File directory = new File(System.getProperty("java.io.tmpdir"));
+    int files = countSpillFiles(directory);
+
+    MappedFileSpill<String> spill = new MappedFileSpill<String>(CODEC, directory, 64);
+
+    for (int i = 0; i < 100; i++) {
+      spill.append("element-" + i);
+    }
+
+    assertEquals(100, spill.size());
+    assertEquals("element-0", spill.read(0));
+    assertEquals("element-57", spill.read(57));
+    assertEquals("element-99", spill.read(99));
+    assertEquals(files + 1, countSpillFiles(directory));
+
+    spill.close();
+
+    assertEquals(0, spill.size());
+    assertEquals(files, countSpillFiles(directory));
+  }
+
+  @Test
+  public void testDeleteStaleFiles() throws Exception {
+    File directory = new File(System.getProperty("java.io.tmpdir"), "nebula-spill-test");
+    directory.mkdirs();
+
+    File stale = File.createTempFile("nebula-spill-", ".bin", directory);
+    stale.setLastModified(System.currentTimeMillis() - 2 * MappedFileSpill.STALE_FILE_MILLIS);
+
+    File recent = File.createTempFile("nebula-spill-", ".bin", directory);
+
+    File other = File.createTempFile("other-", ".bin", directory);
+    other.setLastModified(stale.lastModified());
+
+    try {
+      assertEquals(1, MappedFileSpill.deleteStaleFiles(directory,
+                                                       MappedFileSpill.STALE_FILE_MILLIS));
+      assertFalse(stale.exists());
+      assertTrue(recent.exists());
+      assertTrue(other.exists());
+    } finally {
+      recent.delete();
+      other.delete();
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void testCacheSpillsTheOldestElements() {
+    Cache<String> cache = new Cache<String>(new CacheLoader<String>() {
+
+      private int page = 0;
+
+      @Override
+      public List<String> load() {
+        List<String> elements = new ArrayList<String>();
+        if (page < 5) {
+          for (int i = 0; i < 4; i++) {
+            elements.add(page * 4 + i + "");
+          }
+          page++;
+        }
+        return elements;
+      }
+    }, 8, new MappedFileSpill<String>(CODEC));
+
+    int expected = 0;
+    for (String s : cache) {
+      assertEquals(expected++ + "", s);
+    }
+
+    assertEquals(20, expected);
+    assertEquals(20, cache.size());
+    assertTrue(cache.getSpilled() > 0);
+    assertEquals("3", cache.get(3));
+    assertEquals("19", cache.get(19));
+
+    cache.close();
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testCacheWithoutSpillIsBounded() {
+    Cache<String> cache = new Cache<String>(2);
+
+    cache.add("a");
+    cache.add("b");
+    assertFalse(cache.isEmpty());
+    cache.add("c");
+  }
+
+  private static int countSpillFiles(File directory) {
+    int count = 0;
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().startsWith("nebula-spill-")) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadOffloaderTest {
+
+  private File directory;
+
+  private AtomicInteger gets;
+
+  private PayloadStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile("nebula-payloads", "");
+    directory.delete();
+
+    final FilePayloadStore fileStore = new FilePayloadStore(directory);
+    gets = new AtomicInteger();
+
+    store = new PayloadStore() {
+      public String put(String payload) {
+        return fileStore.put(payload);
+      }
+
+      public String get(String key) {
+        gets.incrementAndGet();
+        return fileStore.get(key);
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testOffloadAboveThreshold() {
+    PayloadOffloader offloader = new PayloadOffloader(store, 100, 1000);
+
+    String small = "\"small\"";
+    String large = json(500);
+
+    String[] offloaded = offloader.offload(new String[]{small, large, null});
+
+    assertSame(small, offloaded[0]);
+    assertTrue(PayloadOffloader.isReference(offloaded[1]));
+    assertEquals(null, offloaded[2]);
+
+    //the same payload is stored once.
+    assertEquals(offloaded[1], offloader.offload(large));
+    assertEquals(1, directory.listFiles().length);
+
+    assertEquals(small, offloader.resolve(small));
+    assertEquals(large, offloader.resolve(offloaded[1]));
+    assertEquals(large, offloader.resolve(offloaded[1]));
+    assertEquals(1, gets.get());
+  }
+
+  @Test
+  public void testCacheEvictsLeastRecentlyUsed() {
+    PayloadOffloader offloader = new PayloadOffloader(store, 100, 1000);
+
+    String first = offloader.offload(json(400));
+    String second = offloader.offload(json(401));
+    String third = offloader.offload(json(402));
+
+    offloader.resolve(first);
+    offloader.resolve(second);
+    offloader.resolve(first);
+    offloader.resolve(third);
+
+    assertEquals(3, gets.get());
+    assertTrue(offloader.getCacheSize() <= 1000);
+
+    offloader.resolve(first);
+    assertEquals(3, gets.get());
+
+    offloader.resolve(second);
+    assertEquals(4, gets.get());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testResolveWithoutOffloader() {
+    String reference = new PayloadOffloader(store, 100, 0).offload(json(200));
+
+    assertFalse(PayloadOffloader.isReference(PayloadOffloader.resolve(null, "1")));
+    PayloadOffloader.resolve(null, reference);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnknownKey() {
+    new FilePayloadStore(directory).get("../unknown");
+  }
+
+  private static String json(int length) {
+    StringBuilder builder = new StringBuilder("\"");
+    while (builder.length() < length - 1) {
+      builder.append('x');
+    }
+    return builder.append('"').toString();
+  }
+
+}
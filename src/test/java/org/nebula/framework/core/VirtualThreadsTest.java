@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.core;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VirtualThreadsTest {
+
+  //the warnings of the EventPoller, which logs through java.util.logging in the tests.
+  private final List<LogRecord> warnings = Collections.synchronizedList(new ArrayList<LogRecord>());
+
+  private final Handler handler = new Handler() {
+    public void publish(LogRecord record) {
+      if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+        warnings.add(record);
+      }
+    }
+
+    public void flush() {
+    }
+
+    public void close() {
+    }
+  };
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    Logger.getLogger(EventPoller.class.getName()).addHandler(handler);
+  }
+
+  @After
+  public void tearDown() {
+    Logger.getLogger(EventPoller.class.getName()).removeHandler(handler);
+
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testLookup() throws Exception {
+    boolean supported = false;
+    for (Method method : Executors.class.getMethods()) {
+      supported |= method.getName().equals("newVirtualThreadPerTaskExecutor");
+    }
+
+    assertEquals(supported, VirtualThreads.isSupported());
+    assertEquals(supported, VirtualThreads.findNewExecutor(Executors.class) != null);
+
+    if (supported) {
+      executor = VirtualThreads.newExecutor();
+
+      Thread thread = executor.submit(new Callable<Thread>() {
+        public Thread call() {
+          return Thread.currentThread();
+        }
+      }).get(5, TimeUnit.SECONDS);
+
+      assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+    }
+  }
+
+  @Test
+  public void testMissingFactory() {
+    assertNull(VirtualThreads.findNewExecutor(Object.class));
+  }
+
+  @Test
+  public void testNewExecutorWithoutSupport() {
+    Assume.assumeFalse(VirtualThreads.isSupported());
+
+    try {
+      VirtualThreads.newExecutor();
+      fail("The virtual threads are not supported by the JVM.");
+    } catch (IllegalStateException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testFallBackToThePlatformThreads() {
+    Configuration configuration = new Configuration();
+    configuration.setVirtualThreads(true);
+
+    executor = EventPoller.createNodeExecutor(configuration, 3);
+
+    if (VirtualThreads.isSupported()) {
+      assertFalse(executor instanceof ThreadPoolExecutor);
+      assertTrue(warnings.isEmpty());
+    } else {
+      assertEquals(3, ((ThreadPoolExecutor) executor).getCorePoolSize());
+      assertEquals(1, warnings.size());
+    }
+  }
+
+  @Test
+  public void testPlatformThreads() {
+    Configuration configuration = new Configuration();
+
+    executor = EventPoller.createNodeExecutor(configuration, 3);
+
+    assertEquals(3, ((ThreadPoolExecutor) executor).getCorePoolSize());
+    assertTrue(warnings.isEmpty());
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nebula.framework.client.NebulaRestClient;
+import org.nebula.framework.client.Response;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.request.PollWorkflowRequest;
+import org.nebula.framework.client.request.StartWorkflowRequest;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.client.response.PollWorkflowResponse;
+import org.nebula.framework.client.response.StartWorkflowResponse;
+import org.nebula.framework.event.WorkflowScheduledEvent;
+import org.nebula.framework.model.Input;
+import org.nebula.framework.model.WorkflowProfile;
+import org.nebula.framework.utils.JacksonContentCodec;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EmbeddedHttpServerTest {
+
+  private final static List<String> REALMS = Arrays.asList("http realm", "other");
+
+  private EmbeddedNebulaServer server;
+
+  private EmbeddedHttpServer httpServer;
+
+  private NebulaRestClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new EmbeddedNebulaServer();
+    server.start();
+
+    httpServer = new EmbeddedHttpServer(server, 0, "/nebula");
+    httpServer.start();
+
+    client = new NebulaRestClient("accessId", "secretKey", "localhost", httpServer.getPort(),
+                                  "/nebula");
+  }
+
+  @After
+  public void tearDown() {
+    httpServer.stop();
+    server.stop();
+  }
+
+  @Test
+  public void testStartAndPollWorkflow() throws Exception {
+    startAndPoll();
+  }
+
+  @Test
+  public void testStartAndPollWorkflowWithGzipSmile() throws Exception {
+    client.setContentCodec(JacksonContentCodec.SMILE);
+    client.setCompressionThreshold(1);
+
+    startAndPoll();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadRequest() throws Exception {
+    GetEventsRequest request = new GetEventsRequest();
+    request.setInstanceId("unknown");
+    client.get(request);
+  }
+
+  @Test
+  public void testReadQuery() throws Exception {
+    Map<String, Object> parameters =
+        EmbeddedHttpServer.readQuery("realms%5B1%5D=b+c&realms%5B0%5D=a&waitSecs=5");
+
+    assertEquals(Arrays.asList("a", "b c"), parameters.get("realms"));
+    assertEquals("5", parameters.get("waitSecs"));
+  }
+
+  private void startAndPoll() throws Exception {
+    char[] chars = new char[4096];
+    Arrays.fill(chars, 'x');
+    String[] inputs = new String[]{"\"" + new String(chars) + "\""};
+
+    Input input = new Input();
+    input.setInputs(inputs);
+
+    WorkflowProfile profile = new WorkflowProfile();
+    profile.setName("HttpWorkflow");
+    profile.setVersion("1.0");
+
+    StartWorkflowRequest start = new StartWorkflowRequest();
+    start.setWorkflowProfile(profile);
+    start.setRealms(REALMS);
+    start.setInput(input);
+
+    String instanceId = ((StartWorkflowResponse) client.post(start)).getInstanceId();
+
+    PollWorkflowRequest poll = new PollWorkflowRequest();
+    poll.setRealms(REALMS);
+
+    PollWorkflowResponse task = client.get(poll);
+    assertEquals(Response.Status.SUCCESS, task.getStatus());
+    assertEquals(instanceId, task.getInstanceId());
+    assertEquals("http realm", task.getRealm());
+
+    GetEventsRequest getEvents = new GetEventsRequest();
+    getEvents.setInstanceId(instanceId);
+    getEvents.setPageNo(1);
+    getEvents.setPageSize(10);
+
+    GetEventsResponse events = client.get(getEvents);
+    assertEquals(1, events.getTotal());
+
+    WorkflowScheduledEvent scheduled = (WorkflowScheduledEvent) events.getEvents().get(0);
+    assertArrayEquals(inputs, scheduled.getInput().getInputs());
+    assertEquals(REALMS, scheduled.getRealms());
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nebula.framework.activity.ActivityWorker;
+import org.nebula.framework.client.NebulaClient;
+import org.nebula.framework.core.Configuration;
+import org.nebula.framework.embedded.data.EchoActivityImpl;
+import org.nebula.framework.embedded.data.EchoWorkflowClient;
+import org.nebula.framework.embedded.data.EchoWorkflowImpl;
+import org.nebula.framework.embedded.data.ValidateActivityImpl;
+import org.nebula.framework.embedded.data.ValidatedEchoWorkflowImpl;
+import org.nebula.framework.event.Event;
+import org.nebula.framework.workflow.WorkflowWorker;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.nebula.framework.event.Event.EVENT_TYPE;
+
+public class EmbeddedNebulaClientTest {
+
+  private final static List<String> REALMS = Arrays.asList("embedded");
+
+  private EmbeddedNebulaServer server;
+
+  private WorkflowWorker workflowWorker;
+
+  private ActivityWorker activityWorker;
+
+  @Before
+  public void setUp() {
+    server = new EmbeddedNebulaServer();
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    if (workflowWorker != null) {
+      workflowWorker.stop();
+    }
+    if (activityWorker != null) {
+      activityWorker.stop();
+    }
+    server.stop();
+  }
+
+  @Test
+  public void testRunWorkflows() throws Exception {
+    NebulaClient nebulaClient = new EmbeddedNebulaClient(server);
+
+    startWorkers(nebulaClient);
+
+    EchoWorkflowClient workflowClient = new EchoWorkflowClient(nebulaClient, REALMS);
+    for (int i = 0; i < 20; i++) {
+      workflowClient.echo("message-" + i);
+    }
+
+    awaitCompleted(server, 20);
+
+    assertEquals(20, server.getCompletedWorkflows());
+    assertEquals(0, server.getQueuedTasks());
+  }
+
+  @Test
+  public void testRunWorkflowsWithLocalActivity() throws Exception {
+    NebulaClient nebulaClient = new EmbeddedNebulaClient(server);
+
+    Configuration configuration = createConfiguration();
+    configuration.setBatchDecisionCommands(true);
+
+    ValidateActivityImpl.VALIDATIONS.set(0);
+
+    startWorkers(nebulaClient, configuration, ValidatedEchoWorkflowImpl.class,
+                 ValidateActivityImpl.class);
+
+    EchoWorkflowClient workflowClient = new EchoWorkflowClient(nebulaClient, REALMS);
+    for (int i = 0; i < 10; i++) {
+      workflowClient.echo(" message-" + i + " ");
+    }
+
+    awaitCompleted(server, 10);
+
+    assertEquals(10, server.getCompletedWorkflows());
+    //two validations per workflow, the first one is replayed by the second decision.
+    assertEquals(20, ValidateActivityImpl.VALIDATIONS.get());
+
+    List<Event> events = server.getHistory(workflowClient.getInstanceId());
+    assertEquals(6, events.size());
+    assertEquals(EVENT_TYPE.LocalActivityCompletedEvent, events.get(1).getEventType());
+    assertEquals(EVENT_TYPE.ActivityScheduledEvent, events.get(2).getEventType());
+    assertEquals(EVENT_TYPE.ActivityCompletedEvent, events.get(3).getEventType());
+    assertEquals(EVENT_TYPE.LocalActivityCompletedEvent, events.get(4).getEventType());
+    assertEquals(EVENT_TYPE.WorkflowCompletedEvent, events.get(5).getEventType());
+  }
+
+  void startWorkers(NebulaClient nebulaClient) {
+    startWorkers(nebulaClient, createConfiguration(), EchoWorkflowImpl.class);
+  }
+
+  private void startWorkers(NebulaClient nebulaClient, Configuration configuration,
+                            Class workflowImplementation, Class... localActivities) {
+
+    workflowWorker = new WorkflowWorker(nebulaClient, configuration);
+    workflowWorker.add(workflowImplementation, REALMS);
+    for (Class localActivity : localActivities) {
+      workflowWorker.addLocalActivity(localActivity);
+    }
+    workflowWorker.start();
+
+    activityWorker = new ActivityWorker(nebulaClient, configuration);
+    activityWorker.add(EchoActivityImpl.class, REALMS);
+    activityWorker.start();
+  }
+
+  private static Configuration createConfiguration() {
+    Configuration configuration = new Configuration();
+    configuration.setPollWaitSecs(1);
+    return configuration;
+  }
+
+  static void awaitCompleted(EmbeddedNebulaServer server, long workflows)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30000;
+    while (server.getCompletedWorkflows() < workflows && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+  }
+
+}
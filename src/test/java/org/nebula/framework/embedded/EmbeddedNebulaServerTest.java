@@ -0,0 +1,360 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nebula.framework.client.Response;
+import org.nebula.framework.client.request.CancelTimerRequest;
+import org.nebula.framework.client.request.CompleteActivityRequest;
+import org.nebula.framework.client.request.CompleteDecisionRequest;
+import org.nebula.framework.client.request.CompleteWorkflowRequest;
+import org.nebula.framework.client.request.DecisionCommand;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.request.PollActivityRequest;
+import org.nebula.framework.client.request.PollWorkflowRequest;
+import org.nebula.framework.client.request.ScheduleTimerRequest;
+import org.nebula.framework.client.request.SignalWorkflowRequest;
+import org.nebula.framework.client.request.StartActivityRequest;
+import org.nebula.framework.client.request.StartWorkflowRequest;
+import org.nebula.framework.client.response.CompleteDecisionResponse;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.client.response.PollActivityResponse;
+import org.nebula.framework.client.response.PollWorkflowResponse;
+import org.nebula.framework.client.response.ScheduleTimerResponse;
+import org.nebula.framework.client.response.StartActivityResponse;
+import org.nebula.framework.client.response.StartWorkflowResponse;
+import org.nebula.framework.event.Event;
+import org.nebula.framework.model.ActivityProfile;
+import org.nebula.framework.model.Input;
+import org.nebula.framework.model.MethodProfile;
+import org.nebula.framework.model.WorkflowProfile;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.nebula.framework.event.Event.EVENT_TYPE;
+
+public class EmbeddedNebulaServerTest {
+
+  private final static List<String> REALMS = Arrays.asList("test");
+
+  private EmbeddedNebulaServer server;
+
+  @Before
+  public void setUp() {
+    server = new EmbeddedNebulaServer();
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  @Test
+  public void testActivityRoundTrip() {
+    String instanceId = startWorkflow();
+
+    PollWorkflowResponse decision = pollWorkflow(0);
+    assertEquals(instanceId, decision.getInstanceId());
+
+    int scheduledId = startActivity(instanceId, 1).getEventId();
+    completeDecision(decision, null);
+
+    assertEquals(Response.Status.POLL_TIMEOUT, pollWorkflow(0).getStatus());
+
+    PollActivityResponse task = pollActivity();
+    assertEquals(Response.Status.SUCCESS, task.getStatus());
+    assertEquals(scheduledId, task.getEventId());
+
+    completeActivity(task);
+
+    decision = pollWorkflow(0);
+    assertEquals(instanceId, decision.getInstanceId());
+
+    CompleteWorkflowRequest complete = new CompleteWorkflowRequest();
+    complete.setInstanceId(instanceId);
+    complete.setRealmActId(decision.getRealmActId());
+    complete.setEventId(scheduledId + 1);
+    server.handle(complete);
+
+    assertEquals(1, server.getCompletedWorkflows());
+    assertEquals(0, server.getRunningWorkflows());
+
+    List<Event> events = server.getHistory(instanceId);
+    assertEquals(4, events.size());
+    assertEquals(EVENT_TYPE.ActivityScheduledEvent, events.get(1).getEventType());
+    assertEquals(EVENT_TYPE.ActivityCompletedEvent, events.get(2).getEventType());
+    assertEquals(scheduledId, events.get(2).getPrecedingId());
+    assertEquals(EVENT_TYPE.WorkflowCompletedEvent, events.get(3).getEventType());
+  }
+
+  @Test
+  public void testOneDecisionAtATime() {
+    String instanceId = startWorkflow();
+
+    PollWorkflowResponse decision = pollWorkflow(0);
+
+    SignalWorkflowRequest signal = new SignalWorkflowRequest();
+    signal.setInstanceId(instanceId);
+    signal.setRealms(REALMS);
+    server.handle(signal);
+
+    //the signal waits for the running decision.
+    assertEquals(Response.Status.POLL_TIMEOUT, pollWorkflow(0).getStatus());
+
+    completeDecision(decision, null);
+
+    assertEquals(instanceId, pollWorkflow(0).getInstanceId());
+  }
+
+  @Test
+  public void testBatchedCommands() {
+    String instanceId = startWorkflow();
+
+    PollWorkflowResponse decision = pollWorkflow(0);
+
+    ScheduleTimerRequest timer = new ScheduleTimerRequest();
+    timer.setInstanceId(instanceId);
+    timer.setPeriod(60);
+    timer.setRealms(REALMS);
+    timer.setEventId(1);
+    int timerId = ((ScheduleTimerResponse) server.handle(timer)).getEventId();
+
+    CancelTimerRequest cancel = new CancelTimerRequest();
+    cancel.setInstanceId(instanceId);
+    cancel.setTimerId(timerId);
+
+    CompleteDecisionResponse response = completeDecision(decision, Arrays.asList(
+        DecisionCommand.cancelTimer(cancel),
+        DecisionCommand.startActivity(startActivityRequest(instanceId,
+                                                           DecisionCommand.PRECEDING_COMMAND))));
+
+    List<Event> events = server.getHistory(instanceId);
+    assertEquals(4, events.size());
+
+    Event cancelled = events.get(2);
+    Event scheduled = events.get(3);
+    assertEquals(EVENT_TYPE.TimerCancelledEvent, cancelled.getEventType());
+    assertEquals(timerId, cancelled.getPrecedingId());
+    assertEquals(cancelled.getEventId(), scheduled.getPrecedingId());
+
+    assertEquals(Arrays.asList(cancelled.getEventId(), scheduled.getEventId()),
+                 response.getEventIds());
+  }
+
+  @Test
+  public void testTimerSchedulesDecision() {
+    String instanceId = startWorkflow();
+
+    PollWorkflowResponse decision = pollWorkflow(0);
+
+    ScheduleTimerRequest timer = new ScheduleTimerRequest();
+    timer.setInstanceId(instanceId);
+    timer.setPeriod(0);
+    timer.setRealms(REALMS);
+    timer.setEventId(1);
+    int timerId = ((ScheduleTimerResponse) server.handle(timer)).getEventId();
+
+    completeDecision(decision, null);
+
+    assertEquals(instanceId, pollWorkflow(5).getInstanceId());
+
+    Event completed = server.getHistory(instanceId).get(2);
+    assertEquals(EVENT_TYPE.TimerCompletedEvent, completed.getEventType());
+    assertEquals(timerId, completed.getPrecedingId());
+  }
+
+  @Test
+  public void testGetEventsByPage() {
+    String instanceId = startWorkflow();
+
+    PollWorkflowResponse decision = pollWorkflow(0);
+    for (int i = 0; i < 4; i++) {
+      startActivity(instanceId, 1);
+    }
+    completeDecision(decision, null);
+
+    GetEventsRequest request = new GetEventsRequest();
+    request.setInstanceId(instanceId);
+    request.setPageSize(2);
+    request.setPageNo(3);
+
+    GetEventsResponse response = (GetEventsResponse) server.handle(request);
+
+    assertEquals(5, response.getTotal());
+    assertEquals(3, response.getPageNo());
+    assertEquals(1, response.getEvents().size());
+    assertEquals(server.getHistory(instanceId).get(4).getEventId(),
+                 response.getEvents().get(0).getEventId());
+  }
+
+  @Test
+  public void testTimedOutActivityIsDeliveredAgain() {
+    server.stop();
+    server.setTaskTimeoutMillis(100);
+    server.start();
+
+    String instanceId = startWorkflow();
+    PollWorkflowResponse decision = pollWorkflow(0);
+    startActivity(instanceId, 1);
+    completeDecision(decision, null);
+
+    PollActivityResponse first = pollActivity();
+    PollActivityResponse second = pollActivity();
+
+    assertEquals(first.getEventId(), second.getEventId());
+
+    //the late completion of the timed out task is ignored.
+    completeActivity(first);
+    assertEquals(Response.Status.POLL_TIMEOUT, pollWorkflow(0).getStatus());
+
+    completeActivity(second);
+    assertEquals(instanceId, pollWorkflow(0).getInstanceId());
+  }
+
+  @Test
+  public void testTimedOutDecisionIsIgnored() {
+    server.stop();
+    server.setTaskTimeoutMillis(100);
+    server.start();
+
+    String instanceId = startWorkflow();
+    PollWorkflowResponse first = pollWorkflow(0);
+    PollWorkflowResponse second = pollWorkflow(5);
+
+    assertEquals(instanceId, second.getInstanceId());
+
+    //the late completions of the timed out decision don't change the history.
+    CompleteDecisionResponse response = completeDecision(first, Arrays.asList(
+        DecisionCommand.startActivity(startActivityRequest(instanceId, 1))));
+    assertTrue(response.getEventIds().isEmpty());
+
+    CompleteWorkflowRequest complete = new CompleteWorkflowRequest();
+    complete.setInstanceId(instanceId);
+    complete.setRealmActId(first.getRealmActId());
+    server.handle(complete);
+
+    assertEquals(1, server.getHistory(instanceId).size());
+    assertEquals(0, server.getCompletedWorkflows());
+    assertEquals(0, server.getQueuedTasks());
+
+    response = completeDecision(second, Arrays.asList(
+        DecisionCommand.startActivity(startActivityRequest(instanceId, 1))));
+    assertEquals(1, response.getEventIds().size());
+    assertEquals(2, server.getHistory(instanceId).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownInstance() {
+    GetEventsRequest request = new GetEventsRequest();
+    request.setInstanceId("unknown");
+    server.handle(request);
+  }
+
+  @Test
+  public void testDropCompletedHistories() {
+    server.setRetainCompletedHistories(false);
+
+    String instanceId = startWorkflow();
+    PollWorkflowResponse decision = pollWorkflow(0);
+
+    CompleteWorkflowRequest complete = new CompleteWorkflowRequest();
+    complete.setInstanceId(instanceId);
+    complete.setRealmActId(decision.getRealmActId());
+    server.handle(complete);
+
+    assertNull(server.getHistory(instanceId));
+  }
+
+  private String startWorkflow() {
+    WorkflowProfile profile = new WorkflowProfile();
+    profile.setName("TestWorkflow");
+    profile.setVersion("1.0");
+
+    StartWorkflowRequest request = new StartWorkflowRequest();
+    request.setWorkflowProfile(profile);
+    request.setRealms(REALMS);
+    request.setInput(new Input());
+
+    return ((StartWorkflowResponse) server.handle(request)).getInstanceId();
+  }
+
+  private PollWorkflowResponse pollWorkflow(int waitSecs) {
+    PollWorkflowRequest request = new PollWorkflowRequest();
+    request.setRealms(REALMS);
+    request.setWaitSecs(waitSecs);
+    return (PollWorkflowResponse) server.handle(request);
+  }
+
+  private PollActivityResponse pollActivity() {
+    PollActivityRequest request = new PollActivityRequest();
+    request.setActivity("TestActivity");
+    request.setVersion("1.0");
+    request.setRealms(REALMS);
+    request.setWaitSecs(5);
+    return (PollActivityResponse) server.handle(request);
+  }
+
+  private StartActivityResponse startActivity(String instanceId, int eventId) {
+    return (StartActivityResponse) server.handle(startActivityRequest(instanceId, eventId));
+  }
+
+  private StartActivityRequest startActivityRequest(String instanceId, int eventId) {
+    ActivityProfile profile = new ActivityProfile();
+    profile.setActivity("TestActivity");
+    profile.setVersion("1.0");
+
+    MethodProfile methodProfile = new MethodProfile();
+    methodProfile.setName("test");
+
+    StartActivityRequest request = new StartActivityRequest();
+    request.setInstanceId(instanceId);
+    request.setActivityProfile(profile);
+    request.setMethodProfile(methodProfile);
+    request.setRealms(REALMS);
+    request.setInput(new Input());
+    request.setEventId(eventId);
+    return request;
+  }
+
+  private void completeActivity(PollActivityResponse task) {
+    CompleteActivityRequest request = new CompleteActivityRequest();
+    request.setInstanceId(task.getInstanceId());
+    request.setActivityProfile(task.getActivityProfile());
+    request.setMethodProfile(task.getMethodProfile());
+    request.setRealmActId(task.getRealmActId());
+    request.setEventId(task.getEventId());
+    request.setInput(new Input());
+    server.handle(request);
+  }
+
+  private CompleteDecisionResponse completeDecision(PollWorkflowResponse decision,
+                                                    List<DecisionCommand> commands) {
+    CompleteDecisionRequest request = new CompleteDecisionRequest();
+    request.setInstanceId(decision.getInstanceId());
+    request.setRealmActId(decision.getRealmActId());
+    request.setCommands(commands);
+    return (CompleteDecisionResponse) server.handle(request);
+  }
+
+}
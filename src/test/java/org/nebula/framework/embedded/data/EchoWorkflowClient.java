@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded.data;
+
+import org.nebula.framework.client.NebulaClient;
+import org.nebula.framework.model.WorkflowProfile;
+import org.nebula.framework.workflow.WorkflowClientImpl;
+
+import java.util.List;
+
+public class EchoWorkflowClient extends WorkflowClientImpl implements EchoWorkflow {
+
+  public EchoWorkflowClient(NebulaClient nebulaClient, List<String> realms) {
+    super(nebulaClient, profile(), realms);
+  }
+
+  public void echo(String message) {
+    startWorkflow("echo", new String[]{"java.lang.String"}, new Object[]{message});
+  }
+
+  private static WorkflowProfile profile() {
+    WorkflowProfile profile = new WorkflowProfile();
+    profile.setName("EchoWorkflow");
+    profile.setVersion("1.0");
+    return profile;
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded.data;
+
+import org.nebula.framework.activity.ActivityClientImpl;
+import org.nebula.framework.core.Promise;
+import org.nebula.framework.model.ActivityProfile;
+import org.nebula.framework.model.MethodProfile;
+
+import java.util.Arrays;
+
+public class ValidateActivityClient extends ActivityClientImpl {
+
+  public Promise<String> validate(Promise<String> message) {
+
+    ActivityProfile profile = new ActivityProfile();
+    profile.setActivity("ValidateActivity");
+    profile.setVersion("1.0");
+
+    MethodProfile methodProfile = new MethodProfile();
+    methodProfile.setName("validate");
+    methodProfile.setParameterTypes(Arrays.asList("java.lang.String"));
+    methodProfile.setReturnType("java.lang.String");
+
+    return scheduleActivity(profile, methodProfile, new Promise[]{message});
+  }
+}
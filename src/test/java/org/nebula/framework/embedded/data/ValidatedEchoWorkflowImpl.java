@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.embedded.data;
+
+import org.nebula.framework.core.Promise;
+
+/**
+ * Validates the message locally before and after echoing it, so the first validation is replayed
+ * by the decision which runs the second.
+ */
+public class ValidatedEchoWorkflowImpl implements EchoWorkflow {
+
+  private ValidateActivityClient validateClient = new ValidateActivityClient();
+
+  private EchoActivityClient echoClient = new EchoActivityClient();
+
+  public void echo(String message) {
+    Promise<String> validated = validateClient.validate(new Promise<String>(message));
+
+    Promise<String> echoed = echoClient.echo(validated);
+
+    validateClient.validate(echoed);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.event;
+
+import org.junit.Test;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.model.Input;
+import org.nebula.framework.model.MethodProfile;
+import org.nebula.framework.utils.EventUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.nebula.framework.event.Event.EVENT_TYPE;
+import static org.nebula.framework.utils.JsonUtils.toJson;
+
+public class BinaryEventCodecTest {
+
+  @Test
+  public void testPageRoundTrip() throws Exception {
+    GetEventsResponse page = EventUtil.loadEvent("CustomerOrderWorkflow.events");
+    page.setPageNo(2);
+    page.setTotal(41);
+
+    byte[] bytes = page.toBinary();
+
+    GetEventsResponse decoded = GetEventsResponse.fromBinary(bytes);
+
+    assertEquals(2, decoded.getPageNo());
+    assertEquals(41, decoded.getTotal());
+    assertEquals(toJson(page), toJson(decoded));
+
+    //the class names and the ids of the instance aren't repeated.
+    assertTrue(bytes.length * 3 < toJson(page).getBytes("UTF-8").length);
+  }
+
+  @Test
+  public void testSignalAndTimerEvents() {
+    WorkflowSignaledEvent signaled = new WorkflowSignaledEvent(5, 1);
+    signaled.setInstanceId("instance-1");
+    signaled.setRealms(Arrays.asList("realm", "realm"));
+    Input input = new Input();
+    input.setInputs(new String[]{"\"\u4e2d\u6587\"", null});
+    signaled.setInput(input);
+    MethodProfile signalProfile = new MethodProfile();
+    signalProfile.setName("signal");
+    signalProfile.setParameterTypes(null);
+    signaled.setSignalProfile(signalProfile);
+
+    TimerScheduledEvent timer = new TimerScheduledEvent(6, 5);
+    timer.setInstanceId("instance-1");
+    timer.setName("timer");
+    timer.setPeriod(Integer.MAX_VALUE);
+
+    WorkflowScheduledEvent scheduled = new WorkflowScheduledEvent(7, 6);
+    scheduled.setStartMode(null);
+
+    List<Event> events = Arrays.<Event>asList(signaled, timer, scheduled, new TimerCancelledEvent());
+
+    BinaryEventCodec codec = new BinaryEventCodec();
+
+    assertEquals(toJson(events), toJson(codec.decodeAll(codec.encodeAll(events))));
+
+    for (Event event : events) {
+      assertEquals(toJson(event), toJson(codec.decode(codec.encode(event))));
+    }
+  }
+
+  @Test
+  public void testNulls() {
+    ActivityCompletedEvent event = new ActivityCompletedEvent(3, -1);
+    event.setTimestamp(-5);
+
+    BinaryEventCodec codec = new BinaryEventCodec();
+
+    ActivityCompletedEvent decoded = (ActivityCompletedEvent) codec.decode(codec.encode(event));
+
+    assertEquals(3, decoded.getEventId());
+    assertEquals(-1, decoded.getPrecedingId());
+    assertEquals(-5, decoded.getTimestamp());
+    assertNull(decoded.getInstanceId());
+    assertNull(decoded.getMethodProfile());
+    assertNull(decoded.getInput());
+  }
+
+  @Test
+  public void testLocalActivityCompletedEvent() {
+    LocalActivityCompletedEvent event = new LocalActivityCompletedEvent(4, 2);
+    Input input = new Input();
+    input.setInputs(new String[]{"\"validated\""});
+    event.setInput(input);
+
+    BinaryEventCodec codec = new BinaryEventCodec();
+
+    Event decoded = codec.decode(codec.encode(event));
+
+    assertTrue(decoded instanceof LocalActivityCompletedEvent);
+    assertEquals(EVENT_TYPE.LocalActivityCompletedEvent, decoded.getEventType());
+    assertEquals(toJson(event), toJson(decoded));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncated() throws Exception {
+    byte[] bytes = EventUtil.loadEvent("CustomerOrderWorkflow.events").toBinary();
+
+    byte[] truncated = new byte[bytes.length / 2];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+    GetEventsResponse.fromBinary(truncated);
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.metrics;
+
+import org.junit.Test;
+import org.nebula.framework.metrics.DefaultMetricsRegistry.DefaultTimer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DefaultMetricsRegistryTest {
+
+  @Test
+  public void testSameMetricForTheSameName() {
+    DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+
+    assertSame(registry.counter("a"), registry.counter("a"));
+    assertSame(registry.timer("a"), registry.timer("a"));
+
+    registry.counter("a").increment(2);
+    registry.counter("a").increment(3);
+
+    assertEquals(5, registry.getCounters().get("a").getCount());
+    assertEquals(0, registry.getTimers().get("a").getCount());
+  }
+
+  @Test
+  public void testTimer() {
+    DefaultTimer timer = new DefaultMetricsRegistry().timer("t");
+
+    assertEquals(0, timer.getMeanMillis(), 0);
+
+    timer.record(1000000);
+    timer.record(3000000);
+
+    assertEquals(2, timer.getCount());
+    assertEquals(4000000, timer.getTotalNanos());
+    assertEquals(3000000, timer.getMaxNanos());
+    assertEquals(2.0, timer.getMeanMillis(), 0.0001);
+  }
+
+  @Test
+  public void testConcurrentRecords() throws Exception {
+    final DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        public void run() {
+          for (int j = 0; j < 10000; j++) {
+            registry.counter("c").increment(1);
+            registry.timer("t").record(j);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(40000, registry.counter("c").getCount());
+    assertEquals(40000, registry.timer("t").getCount());
+    assertEquals(9999, registry.timer("t").getMaxNanos());
+  }
+
+}
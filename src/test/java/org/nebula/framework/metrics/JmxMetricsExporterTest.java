@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.metrics;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JmxMetricsExporterTest {
+
+  @Test
+  public void testExportTheMetricsCreatedLater() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    DefaultMetricsRegistry registry = new DefaultMetricsRegistry();
+    JmxMetricsExporter exporter = new JmxMetricsExporter(registry, "test", server);
+
+    exporter.register();
+    try {
+      registry.counter(MetricNames.DECISION_COMMANDS).increment(3);
+      registry.timer(MetricNames.DECISION_REPLAY).record(2000000);
+
+      assertEquals(3L, server.getAttribute(exporter.getObjectName(),
+                                           MetricNames.DECISION_COMMANDS));
+      assertEquals(1L, server.getAttribute(exporter.getObjectName(),
+                                           MetricNames.DECISION_REPLAY + ".count"));
+      assertEquals(2.0, (Double) server.getAttribute(exporter.getObjectName(),
+                                                     MetricNames.DECISION_REPLAY + ".maxMillis"),
+                   0.0001);
+
+      MBeanAttributeInfo[] attributes =
+          server.getMBeanInfo(exporter.getObjectName()).getAttributes();
+      assertEquals(4, attributes.length);
+    } finally {
+      exporter.unregister();
+    }
+
+    assertFalse(server.isRegistered(exporter.getObjectName()));
+  }
+
+  @Test
+  public void testQuoteTheName() {
+    JmxMetricsExporter exporter = new JmxMetricsExporter(new DefaultMetricsRegistry(), "a,b=c");
+
+    assertTrue(exporter.getObjectName().getKeyProperty("name").startsWith("\""));
+  }
+
+}
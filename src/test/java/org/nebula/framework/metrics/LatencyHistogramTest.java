@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    for (long micros = 0; micros < 1 << 20; micros += 7) {
+      int bucket = LatencyHistogram.bucketOf(micros);
+      long highest = LatencyHistogram.highestValueOf(bucket);
+
+      assertTrue(micros <= highest);
+      assertTrue(bucket == 0 || micros > LatencyHistogram.highestValueOf(bucket - 1));
+      //the error of the bucket is within 1/32.
+      assertTrue(highest - micros <= micros / 32);
+    }
+
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    for (int i = 1; i <= 1000; i++) {
+      histogram.recordMicros(i * 1000);
+    }
+
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+    assertEquals(1000, snapshot.getCount());
+    assertEquals(500500, snapshot.getMeanMicros(), 0.1);
+    assertWithin(500000, snapshot.getPercentileMicros(50));
+    assertWithin(990000, snapshot.getPercentileMicros(99));
+    assertWithin(1000000, snapshot.getMaxMicros());
+    assertEquals(0, new LatencyHistogram().snapshot().getPercentileMicros(99));
+  }
+
+  @Test
+  public void testIntervalSnapshot() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    histogram.record(5000000);
+    histogram.record(5000000);
+
+    assertEquals(2, histogram.intervalSnapshot().getCount());
+
+    histogram.record(31000);
+
+    LatencyHistogram.Snapshot interval = histogram.intervalSnapshot();
+    assertEquals(1, interval.getCount());
+    assertEquals(31, interval.getMaxMicros());
+
+    assertEquals(0, histogram.intervalSnapshot().getCount());
+    assertEquals(3, histogram.snapshot().getCount());
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(actual + " isn't about " + expected,
+               actual >= expected && actual - expected <= expected / 32);
+  }
+
+}
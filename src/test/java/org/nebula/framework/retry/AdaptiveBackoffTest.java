@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.retry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBackoffTest {
+
+  @Test
+  public void testBackoffDoublesUpToMaxInterval() {
+    AdaptiveBackoff backoff = new AdaptiveBackoff(1, 4);
+
+    backoff.backoff();
+    assertEquals(1, backoff.getIntervalMillis());
+
+    backoff.backoff();
+    assertEquals(2, backoff.getIntervalMillis());
+
+    backoff.backoff();
+    backoff.backoff();
+    assertEquals(4, backoff.getIntervalMillis());
+  }
+
+  @Test
+  public void testResetOnSuccess() {
+    AdaptiveBackoff backoff = new AdaptiveBackoff(1, 4);
+
+    backoff.backoff();
+    backoff.backoff();
+    backoff.reset();
+
+    assertEquals(0, backoff.getIntervalMillis());
+
+    backoff.backoff();
+    assertEquals(1, backoff.getIntervalMillis());
+  }
+
+  @Test
+  public void testCancelWakesUpWaiting() throws Exception {
+    final AdaptiveBackoff backoff = new AdaptiveBackoff(60000, 60000);
+
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        backoff.backoff();
+      }
+    });
+    thread.start();
+
+    Thread.sleep(100);
+    backoff.cancel();
+    thread.join(1000);
+
+    assertTrue(backoff.isCanceled());
+    assertTrue(!thread.isAlive());
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.utils;
+
+import org.junit.Test;
+import org.nebula.framework.client.response.GetEventsResponse;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.nebula.framework.utils.JsonUtils.toJson;
+
+public class JacksonContentCodecTest {
+
+  @Test
+  public void testSmileRoundTrip() throws Exception {
+    GetEventsResponse response = EventUtil.loadEvent("CustomerOrderWorkflow.events");
+
+    byte[] smile = JacksonContentCodec.SMILE.write(response);
+    byte[] json = JacksonContentCodec.JSON.write(response);
+
+    GetEventsResponse fromSmile =
+        JacksonContentCodec.SMILE.read(new ByteArrayInputStream(smile), GetEventsResponse.class);
+    GetEventsResponse fromJson =
+        JacksonContentCodec.JSON.read(new ByteArrayInputStream(json), GetEventsResponse.class);
+
+    assertEquals(toJson(response), toJson(fromSmile));
+    assertEquals(toJson(response), toJson(fromJson));
+    assertTrue(smile.length < json.length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadMalformed() {
+    JacksonContentCodec.JSON.read(new ByteArrayInputStream("{".getBytes()), GetEventsResponse.class);
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.nebula.framework.utils.JsonUtils.constructFromCanonical;
+import static org.nebula.framework.utils.JsonUtils.readerForCanonical;
+
+public class JsonUtilsTest {
+
+  @Test
+  public void testReaderIsCached() {
+    String canonical = "java.util.Map<java.lang.String,java.lang.Integer>";
+
+    assertSame(readerForCanonical(canonical), readerForCanonical(canonical));
+  }
+
+  @Test
+  public void testConstructFromCanonical() {
+    Map<String, Integer>
+        map =
+        (Map<String, Integer>) constructFromCanonical("{\"a\":1}",
+                                                      "java.util.Map<java.lang.String,java.lang.Integer>");
+    assertEquals(Integer.valueOf(1), map.get("a"));
+
+    List<Long> list = (List<Long>) constructFromCanonical("[1,2]", "java.util.List<java.lang.Long>");
+    assertEquals(Arrays.asList(1L, 2L), list);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidJson() {
+    constructFromCanonical("{", "java.lang.String");
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.utils;
+
+import org.apache.http.client.utils.URIBuilder;
+import org.junit.Test;
+import org.nebula.framework.client.request.BatchPollActivityRequest;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.request.PollActivityRequest;
+import org.nebula.framework.client.request.PollWorkflowRequest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryStringWriterTest {
+
+  @Test
+  public void testGetEvents() throws Exception {
+    GetEventsRequest request = new GetEventsRequest();
+    request.setAccessId("access");
+    request.setInstanceId("1234");
+    request.setPageNo(2);
+    request.setPageSize(100);
+
+    assertSameAsMap(request);
+  }
+
+  @Test
+  public void testPollSkipsNullsAndIndexesLists() throws Exception {
+    PollActivityRequest request = new PollActivityRequest();
+    request.setActivity("Greeting Activity");
+    request.setRealms(Arrays.asList("realm-1", "realm 2"));
+    request.setWaitSecs(30);
+
+    assertSameAsMap(request);
+
+    BatchPollActivityRequest batch = new BatchPollActivityRequest();
+    batch.setActivity("a&b=c");
+    batch.setVersion("1.0");
+    batch.setMaxTasks(10);
+
+    assertSameAsMap(batch);
+  }
+
+  @Test
+  public void testEncoding() throws Exception {
+    PollWorkflowRequest request = new PollWorkflowRequest();
+    request.setAccessId("中文/~!'()+%");
+    request.setRealms(Arrays.asList("😀", "aéb"));
+
+    assertSameAsMap(request);
+  }
+
+  @Test
+  public void testNoParameter() {
+    assertEquals("/uri", QueryStringWriter.write("/uri", new NullableRequest()));
+  }
+
+  public static class NullableRequest {
+
+    public String getInstanceId() {
+      return null;
+    }
+  }
+
+  /**
+   * The query string built from the map the request converts to.
+   */
+  private static void assertSameAsMap(Object request) throws Exception {
+    Map<String, Object> map = JsonUtils.convertValue(request, Map.class);
+
+    URIBuilder builder = new URIBuilder();
+    for (String key : map.keySet()) {
+      Object value = map.get(key);
+      if (value == null) {
+        continue;
+      } else if (value instanceof List) {
+        List v = (List) value;
+        for (int i = 0; i < v.size(); i++) {
+          builder.addParameter(key + "[" + i + "]", v.get(i).toString());
+        }
+      } else {
+        builder.addParameter(key, value.toString());
+      }
+    }
+
+    assertEquals("/uri" + builder.build().toString(), QueryStringWriter.write("/uri", request));
+  }
+
+}
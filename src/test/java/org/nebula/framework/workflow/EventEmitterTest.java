@@ -0,0 +1,136 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.workflow;
+
+import org.junit.Test;
+import org.nebula.framework.client.NebulaClient;
+import org.nebula.framework.client.Request;
+import org.nebula.framework.client.request.CompleteDecisionRequest;
+import org.nebula.framework.client.request.DecisionCommand;
+import org.nebula.framework.client.request.ScheduleTimerRequest;
+import org.nebula.framework.client.request.StartActivityRequest;
+import org.nebula.framework.client.response.CompleteDecisionResponse;
+import org.nebula.framework.client.response.ScheduleTimerResponse;
+import org.nebula.framework.client.response.StartActivityResponse;
+import org.nebula.framework.core.Promise;
+import org.nebula.framework.model.ActivityProfile;
+import org.nebula.framework.model.MethodProfile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventEmitterTest {
+
+  private RecordingClient client = new RecordingClient();
+
+  @Test
+  public void testSendCommandsOneByOne() {
+    EventEmitter eventEmitter = new EventEmitter(client, "r", "i", "realm", "a");
+
+    startActivity(eventEmitter, 10);
+    startActivity(eventEmitter, 10);
+    eventEmitter.completeDecision();
+
+    assertEquals(3, client.requests.size());
+    assertEquals(10, ((StartActivityRequest) client.requests.get(0)).getEventId());
+    assertEquals(100, ((StartActivityRequest) client.requests.get(1)).getEventId());
+    assertNull(((CompleteDecisionRequest) client.requests.get(2)).getCommands());
+  }
+
+  @Test
+  public void testBatchCommands() {
+    EventEmitter eventEmitter = new EventEmitter(client, "r", "i", "realm", "a", true);
+
+    startActivity(eventEmitter, 10);
+    startActivity(eventEmitter, 10);
+    eventEmitter.completeDecision();
+
+    assertEquals(1, client.requests.size());
+
+    List<DecisionCommand> commands =
+        ((CompleteDecisionRequest) client.requests.get(0)).getCommands();
+
+    assertEquals(2, commands.size());
+    assertEquals(10, commands.get(0).getStartActivity().getEventId());
+    assertEquals(DecisionCommand.PRECEDING_COMMAND, commands.get(1).getStartActivity().getEventId());
+  }
+
+  @Test
+  public void testTimerSendsTheBufferedCommandsFirst() {
+    EventEmitter eventEmitter = new EventEmitter(client, "r", "i", "realm", "a", true);
+
+    startActivity(eventEmitter, 10);
+    startActivity(eventEmitter, 10);
+
+    assertEquals(200, eventEmitter.startTimer(5, 10));
+
+    eventEmitter.completeDecision();
+
+    assertEquals(4, client.requests.size());
+    assertEquals(10, ((StartActivityRequest) client.requests.get(0)).getEventId());
+    assertEquals(100, ((StartActivityRequest) client.requests.get(1)).getEventId());
+    assertTrue(client.requests.get(2) instanceof ScheduleTimerRequest);
+    assertNull(((CompleteDecisionRequest) client.requests.get(3)).getCommands());
+  }
+
+  private void startActivity(EventEmitter eventEmitter, int eventId) {
+    eventEmitter.startActivity(new ActivityProfile(), new MethodProfile(),
+                               new Promise[]{new Promise<String>("input")}, eventId);
+  }
+
+  private static class RecordingClient implements NebulaClient {
+
+    private List<Request> requests = new ArrayList<Request>();
+
+    public String getUser() {
+      return "user";
+    }
+
+    public <T> T post(Request request) throws Exception {
+      requests.add(request);
+
+      if (request instanceof StartActivityRequest) {
+        StartActivityResponse response = new StartActivityResponse();
+        response.setEventId(100);
+        return (T) response;
+      } else if (request instanceof ScheduleTimerRequest) {
+        ScheduleTimerResponse response = new ScheduleTimerResponse();
+        response.setEventId(200);
+        return (T) response;
+      }
+
+      CompleteDecisionResponse response = new CompleteDecisionResponse();
+      if (((CompleteDecisionRequest) request).getCommands() != null) {
+        response.setEventIds(Arrays.asList(100, 101));
+      }
+      return (T) response;
+    }
+
+    public <T> T get(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> T delete(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.workflow;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nebula.framework.event.Event;
+import org.nebula.framework.utils.EventUtil;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.nebula.framework.event.Event.EVENT_TYPE;
+
+public class EventIndexTest {
+
+  private List<Event> events;
+
+  private EventIndex eventIndex;
+
+  @Before
+  public void setUp() throws Exception {
+    events = EventUtil.loadEvent("CustomerOrderWorkflow.events").getEvents();
+
+    eventIndex = new EventIndex();
+    eventIndex.addAll(events, 0);
+  }
+
+  @Test
+  public void testFindByPrecedingId() {
+
+    for (int i = 0; i < events.size(); i++) {
+      Event event = events.get(i);
+      if (event.isEventType(EVENT_TYPE.ActivityCompletedEvent)) {
+        assertEquals(i, eventIndex.findByPrecedingId(event.getPrecedingId(),
+                                                     EVENT_TYPE.ActivityCompletedEvent));
+      }
+    }
+
+    assertEquals(-1, eventIndex.findByPrecedingId(-2, EVENT_TYPE.ActivityCompletedEvent));
+  }
+
+  @Test
+  public void testContains() {
+    assertTrue(eventIndex.contains(EVENT_TYPE.WorkflowScheduledEvent));
+    assertTrue(eventIndex.contains(EVENT_TYPE.WorkflowCompletedEvent));
+    assertFalse(eventIndex.contains(EVENT_TYPE.WorkflowCancelledEvent));
+
+    assertEquals(events.size(), eventIndex.size());
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.workflow;
+
+import org.junit.Test;
+import org.nebula.framework.core.PayloadOffloader;
+import org.nebula.framework.core.PayloadStore;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LazyPromiseTest {
+
+  @Test
+  public void testDecodeOnFirstGet() {
+    LazyPromise<List<String>> promise =
+        new LazyPromise<List<String>>("[\"a\",\"b\"]", "java.util.List<java.lang.String>", null);
+
+    assertTrue(promise.isReady());
+    assertFalse(promise.isDecoded());
+
+    List<String> value = promise.get();
+
+    assertTrue(promise.isDecoded());
+    assertEquals(2, value.size());
+    assertSame(value, promise.get());
+  }
+
+  @Test
+  public void testPassedOnWithoutDecoding() {
+    LazyPromise<String> promise =
+        new LazyPromise<String>(PayloadOffloader.REFERENCE_PREFIX + "key", "java.lang.String", null);
+
+    assertEquals(PayloadOffloader.REFERENCE_PREFIX + "key", promise.toJsonInput());
+    assertFalse(promise.isDecoded());
+
+    promise.set("value");
+    assertEquals("\"value\"", promise.toJsonInput());
+  }
+
+  @Test
+  public void testSetReplacesTheJson() {
+    LazyPromise<String> promise = new LazyPromise<String>("not json", "java.lang.String", null);
+
+    promise.set("value");
+
+    assertEquals("value", promise.get());
+  }
+
+  @Test
+  public void testPayloadIsFetchedOnlyWhenRead() {
+    final int[] gets = new int[1];
+
+    PayloadOffloader offloader = new PayloadOffloader(new PayloadStore() {
+      public String put(String payload) {
+        return "key";
+      }
+
+      public String get(String key) {
+        gets[0]++;
+        return "\"large\"";
+      }
+    }, 100, 0);
+
+    LazyPromise<String> promise =
+        new LazyPromise<String>(PayloadOffloader.REFERENCE_PREFIX + "key", "java.lang.String",
+                                offloader);
+
+    assertEquals(0, gets[0]);
+    assertEquals("large", promise.get());
+    assertEquals("large", promise.get());
+    assertEquals(1, gets[0]);
+  }
+
+  @Test
+  public void testFailedDecodeIsRetried() {
+    LazyPromise<Integer> promise = new LazyPromise<Integer>("x", "java.lang.Integer", null);
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        promise.get();
+      } catch (IllegalArgumentException e) {
+        assertFalse(promise.isDecoded());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.workflow;
+
+import org.junit.Test;
+import org.nebula.framework.embedded.data.EchoActivityImpl;
+import org.nebula.framework.embedded.data.ValidateActivityImpl;
+import org.nebula.framework.model.ActivityProfile;
+import org.nebula.framework.model.MethodProfile;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocalActivitiesTest {
+
+  @Test
+  public void testExecute() {
+    LocalActivities localActivities = new LocalActivities();
+    localActivities.add(ValidateActivityImpl.class);
+
+    ActivityProfile profile = profile("ValidateActivity");
+
+    assertTrue(localActivities.contains(profile));
+    assertFalse(localActivities.contains(profile("EchoActivity")));
+
+    MethodProfile methodProfile = new MethodProfile();
+    methodProfile.setName("validate");
+    methodProfile.setParameterTypes(Arrays.asList("java.lang.String"));
+    methodProfile.setReturnType("java.lang.String");
+
+    assertEquals("\"message\"",
+                 localActivities.execute(profile, methodProfile, new Object[]{" message "}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddRemoteActivity() {
+    new LocalActivities().add(EchoActivityImpl.class);
+  }
+
+  private static ActivityProfile profile(String activity) {
+    ActivityProfile profile = new ActivityProfile();
+    profile.setActivity(activity);
+    profile.setVersion("1.0");
+    return profile;
+  }
+
+}
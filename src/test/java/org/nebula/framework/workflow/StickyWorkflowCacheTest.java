@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nebula.framework.workflow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StickyWorkflowCacheTest {
+
+  @Test
+  public void testEvictLeastRecentlyUsed() {
+    StickyWorkflowCache cache = new StickyWorkflowCache(2);
+
+    StickyWorkflowCache.StickyWorkflow first = new StickyWorkflowCache.StickyWorkflow(null);
+
+    cache.put("1", first);
+    cache.put("2", new StickyWorkflowCache.StickyWorkflow(null));
+    cache.put("3", new StickyWorkflowCache.StickyWorkflow(null));
+
+    assertEquals(2, cache.size());
+    assertNull(cache.remove("1"));
+    assertNotNull(cache.remove("2"));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testRemoveTakesTheWorkflowOut() {
+    StickyWorkflowCache cache = new StickyWorkflowCache(2);
+
+    StickyWorkflowCache.StickyWorkflow workflow = new StickyWorkflowCache.StickyWorkflow(null);
+
+    cache.put("1", workflow);
+
+    assertSame(workflow, cache.remove("1"));
+    assertNull(cache.remove("1"));
+  }
+
+  @Test
+  public void testEvictedWorkflowIsClosed() {
+    StickyWorkflowCache cache = new StickyWorkflowCache(1);
+
+    ClosingWorkflow first = new ClosingWorkflow();
+    ClosingWorkflow second = new ClosingWorkflow();
+
+    cache.put("1", first);
+    cache.put("2", second);
+
+    assertEquals(1, first.closed);
+    assertEquals(0, second.closed);
+  }
+
+  @Test
+  public void testReplacedWorkflowIsClosed() {
+    StickyWorkflowCache cache = new StickyWorkflowCache(2);
+
+    ClosingWorkflow first = new ClosingWorkflow();
+    ClosingWorkflow second = new ClosingWorkflow();
+
+    cache.put("1", first);
+    cache.put("1", second);
+
+    assertEquals(1, first.closed);
+    assertEquals(0, second.closed);
+
+    //putting back the same workflow keeps it open.
+    cache.put("1", second);
+
+    assertEquals(0, second.closed);
+    assertEquals(1, cache.size());
+    assertSame(second, cache.remove("1"));
+  }
+
+  @Test
+  public void testDisabled() {
+    StickyWorkflowCache cache = new StickyWorkflowCache(0);
+
+    cache.put("1", new StickyWorkflowCache.StickyWorkflow(null));
+
+    assertFalse(cache.isEnabled());
+    assertEquals(0, cache.size());
+  }
+
+  private static class ClosingWorkflow extends StickyWorkflowCache.StickyWorkflow {
+
+    private int closed;
+
+    private ClosingWorkflow() {
+      super(null);
+    }
+
+    @Override
+    public void close() {
+      closed++;
+    }
+  }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.nebula.framework.workflow;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.nebula.framework.client.AsyncNebulaClient;
+import org.nebula.framework.client.Request;
+import org.nebula.framework.client.ResponseCallback;
+import org.nebula.framework.client.request.GetEventsRequest;
+import org.nebula.framework.client.response.GetEventsResponse;
+import org.nebula.framework.event.ActivityCompletedEvent;
+import org.nebula.framework.event.ActivityScheduledEvent;
+import org.nebula.framework.event.Event;
+import org.nebula.framework.event.WorkflowScheduledEvent;
+import org.nebula.framework.event.WorkflowSignaledEvent;
+import org.nebula.framework.utils.EventUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WorkflowEventRecordsPrefetchTest {
+
+  private final static int PAGE_SIZE = 2;
+
+  private List<Event> events;
+
+  private PagingClient client = new PagingClient();
+
+  @Before
+  public void setUp() throws Exception {
+    events = EventUtil.loadEvent("CustomerOrderWorkflow.events").getEvents();
+  }
+
+  @Test
+  public void testReplayInOrderWithPrefetch() {
+    WorkflowEventRecords records =
+        new WorkflowEventRecords(client, "1", PAGE_SIZE, events.size(), 3);
+
+    assertAllEventsInOrder(records);
+
+    int pages = (events.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+
+    assertEquals(pages, records.getPagesFetched());
+    //only the first page is fetched synchronously.
+    assertEquals(1, client.syncRequests);
+    assertEquals(pages - 1, client.asyncRequests);
+  }
+
+  @Test
+  public void testWithoutPrefetch() {
+    WorkflowEventRecords records =
+        new WorkflowEventRecords(client, "1", PAGE_SIZE, events.size());
+
+    assertAllEventsInOrder(records);
+
+    assertEquals(0, client.asyncRequests);
+  }
+
+  @Test
+  public void testTerminalEventsFromTheTail() {
+    //without the WorkflowCompletedEvent, so the history is 5 full pages.
+    assertEquals(Event.EVENT_TYPE.WorkflowCompletedEvent,
+                 events.get(events.size() - 1).getEventType());
+    events = events.subList(0, events.size() - 1);
+
+    WorkflowEventRecords records =
+        new WorkflowEventRecords(client, "1", PAGE_SIZE, events.size());
+
+    WorkflowEventRecords.WorkflowReplayer replayer = records.workflowReplayer();
+    replayer.replay();
+
+    assertFalse(replayer.isWorkflowCompleted());
+    assertFalse(replayer.isWorkflowCancelled());
+    //the first page and the last one.
+    assertEquals(2, client.syncRequests);
+
+    while (records.hasNext()) {
+      records.next();
+    }
+    //the last page isn't fetched again.
+    assertEquals(events.size() / PAGE_SIZE, client.syncRequests);
+  }
+
+  @Test
+  public void testWorkflowCompletedInTheTail() {
+    WorkflowEventRecords records =
+        new WorkflowEventRecords(client, "1", PAGE_SIZE, events.size());
+
+    WorkflowEventRecords.WorkflowReplayer replayer = records.workflowReplayer();
+    replayer.replay();
+
+    assertTrue(replayer.isWorkflowCompleted());
+    //the first page and the last two, as the last one holds a single event.
+    assertEquals(3, client.syncRequests);
+  }
+
+  @Test
+  public void testDeferredActivityCompletion() {
+    events = new ArrayList<Event>();
+    events.add(event(new WorkflowScheduledEvent(), 1, -1));
+    events.add(event(new ActivityScheduledEvent(), 2, 1));
+    events.add(event(new ActivityScheduledEvent(), 3, 2));
+    events.add(event(new ActivityCompletedEvent(), 4, 3));
+    //the completion of the first activity is neither in the loaded pages nor in the last one.
+    events.add(event(new ActivityCompletedEvent(), 5, 2));
+    for (int i = 6; i <= 10; i++) {
+      events.add(event(new WorkflowSignaledEvent(), i, i - 1));
+    }
+
+    WorkflowEventRecords records =
+        new WorkflowEventRecords(client, "1", PAGE_SIZE, events.size());
+
+    final List<Event> completed = new ArrayList<Event>();
+    records.setCompletedEventListener(new CompletedEventListener() {
+      public void completedEvent(Event event) {
+        completed.add(event);
+      }
+    });
+
+    records.workflowReplayer().replay();
+
+    WorkflowEventRecords.ActivityReplayer replayer = records.activityReplayer();
+    replayer.replay();
+    assertFalse(replayer.isActivityCompletedReplayed());
+    assertTrue(replayer.isActivityCompletionDeferred());
+
+    replayer.replay();
+    assertTrue(replayer.isActivityCompletedReplayed());
+    assertEquals(4, replayer.getActivityCompletedEvent().getEventId());
+
+    assertTrue(completed.isEmpty());
+    int requests = client.syncRequests;
+
+    records.signalRelayer().replay();
+
+    assertEquals(1, completed.size());
+    assertEquals(5, completed.get(0).getEventId());
+    //the lookup didn't load the pages, the replay did.
+    assertTrue(requests < events.size() / PAGE_SIZE);
+    assertEquals(events.size() / PAGE_SIZE, client.syncRequests);
+  }
+
+  private static Event event(Event event, int eventId, int precedingId) {
+    event.setEventId(eventId);
+    event.setPrecedingId(precedingId);
+    return event;
+  }
+
+  private void assertAllEventsInOrder(WorkflowEventRecords records) {
+    List<Event> replayed = new ArrayList<Event>();
+    while (records.hasNext()) {
+      replayed.add(records.next());
+    }
+
+    assertTrue(events.size() > PAGE_SIZE * 2);
+    assertEquals(events.size(), replayed.size());
+    for (int i = 0; i < events.size(); i++) {
+      assertEquals(events.get(i).getEventId(), replayed.get(i).getEventId());
+    }
+  }
+
+  private class PagingClient implements AsyncNebulaClient {
+
+    private int syncRequests;
+
+    private int asyncRequests;
+
+    private GetEventsResponse page(Request request) {
+      int pageNo = ((GetEventsRequest) request).getPageNo();
+
+      int from = (pageNo - 1) * PAGE_SIZE;
+
+      GetEventsResponse response = new GetEventsResponse();
+      response.setPageNo(pageNo);
+      response.setTotal(events.size());
+      response.setEvents(
+          new ArrayList<Event>(events.subList(from, Math.min(from + PAGE_SIZE, events.size()))));
+      return response;
+    }
+
+    public <T> Future<T> getAsync(Request request, ResponseCallback<T> callback) {
+      asyncRequests++;
+      BasicFuture<T> future = new BasicFuture<T>(null);
+      future.completed((T) page(request));
+      return future;
+    }
+
+    public <T> T get(Request request) throws Exception {
+      syncRequests++;
+      return (T) page(request);
+    }
+
+    public <T> Future<T> postAsync(Request request, ResponseCallback<T> callback) {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> Future<T> deleteAsync(Request request, ResponseCallback<T> callback) {
+      throw new UnsupportedOperationException();
+    }
+
+    public String getUser() {
+      return "user";
+    }
+
+    public <T> T post(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> T delete(Request request) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
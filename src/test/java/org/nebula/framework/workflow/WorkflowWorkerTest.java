@@ -107,8 +107,9 @@ public class WorkflowWorkerTest {
       {
         registry.cancelRegister();
         times = 1;
+        //the heartbeat, poller and handler executors.
         executor.shutdown();
-        times = 2;
+        times = 3;
       }
     };
 